@@ -0,0 +1,41 @@
+package project.simulation.universe;
+
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Wektorowa procedura odrastania jedzenia korzystająca z modułu {@code jdk.incubator.vector}.
+ * <p>Klasa leży w osobnym katalogu źródeł ({@code src-vector}), kompilowanym po głównym z opcją
+ * {@code --add-modules jdk.incubator.vector}, aby główne źródła kompilowały się bez tego modułu. Jeśli klasa nie
+ * została skompilowana lub program uruchomiono bez tej opcji, plansza użyje procedury skalarnej.</p>
+ *
+ * @author Katarzyna Mielnik
+ * @see RegrowthKernel#best()
+ */
+class VectorRegrowth implements RegrowthKernel {
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public boolean isSupported() {
+        // Przy jednym elemencie w wektorze sprzęt nie wspiera operacji wektorowych.
+        return SPECIES.length() > 1;
+    }
+
+    @Override
+    public int regrow(int[] foodRipeness, int ripeningTime) {
+        IntVector ripe = IntVector.broadcast(SPECIES, ripeningTime);
+        int ripened = 0;
+        int i = 0;
+        for (int upperBound = SPECIES.loopBound(foodRipeness.length); i < upperBound; i += SPECIES.length()) {
+            IntVector ripeness = IntVector.fromArray(SPECIES, foodRipeness, i);
+            VectorMask<Integer> growing = ripeness.compare(VectorOperators.LT, ripe)
+                    .and(ripeness.compare(VectorOperators.GE, 0));
+            ripeness = ripeness.add(1, growing);
+            ripeness.intoArray(foodRipeness, i);
+            ripened += ripeness.compare(VectorOperators.EQ, ripe).and(growing).trueCount();
+        }
+        return ripened + ScalarRegrowth.regrow(foodRipeness, i, foodRipeness.length, ripeningTime);
+    }
+}
@@ -0,0 +1,244 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+import project.verification.Fixture;
+import project.verification.Report;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Sprawdza, że tura symulacji w stanie ustalonym nie alokuje pamięci poza nowymi robami i ich programami.
+ * <p>Dla każdego stałego przypadku (konfiguracji i planszy) i każdego sposobu prowadzenia symulacji w wątku
+ * symulacji przeprowadzane jest najpierw {@value #WARMUP_ROUNDS} tur rozgrzewki, a potem mierzona jest liczba bajtów
+ * zaalokowanych przez wątek ({@link com.sun.management.ThreadMXBean#getCurrentThreadAllocatedBytes()}) w każdej
+ * z kolejnych tur. Od sumy odejmowany jest przydział na każdego nowego roba, {@value #BIRTH_BYTES} bajtów
+ * i {@value #INSTRUCTION_BYTES} bajtów na każdą instrukcję jego programu. Reszta, w przeliczeniu na turę, nie może
+ * przekroczyć budżetu tury {@link BudgetedFixture#roundBytes}. Budżet jest średnią, a nie ograniczeniem każdej tury,
+ * ponieważ obejmuje rzadkie, jednorazowe alokacje: powiększanie list robów, gdy populacja przekracza dotychczasowe
+ * maksimum, i kompilację często wykonywanego genomu ({@code ProgramCompiler}).</p>
+ * <p>Przydział na nowego roba został zmierzony w przypadku {@code steady population} dla ośmiu ziaren, przy
+ * średnich długościach programów od 7,6 do 16,5 instrukcji, w 64-bitowej maszynie wirtualnej ze skompresowanymi
+ * referencjami (4 bajty). Obejmuje obiekt roba (96 bajtów) i kopię programu (40 bajtów i 4 bajty na instrukcję)
+ * w turze narodzin, a dla dziecka o zmienionym programie także analizę genomu ({@code GenomeAnalysis})
+ * w pierwszej turze dziecka; analiza jest przyczyną większej części przydziału na instrukcję. Przydział jest
+ * dopasowaniem metodą najmniejszych kwadratów do tych pomiarów, w których reszta wynosiła potem od -125 do 135
+ * bajtów na turę, stąd budżet tury {@value #STEADY_ROUND_BYTES} bajtów.</p>
+ * <p>Przed rozgrzewką symulacji procedura odrastania jedzenia jest wywoływana na kopii planszy, dopóki przez
+ * {@value #QUIET_REGROWTH_CALLS} kolejnych wywołań nie alokuje pamięci. Procedura wektorowa
+ * ({@code VectorRegrowth}) alokuje obiekty wektorów, dopóki nie zostanie skompilowana przez kompilator
+ * optymalizujący, co w samej rozgrzewce symulacji nie zawsze następowało przed pomiarem.</p>
+ * <p>Uruchomienie: {@code java project.simulation.AllocationVerification [liczba_tur [ziarno]]}. Program kończy się
+ * kodem 1, jeśli któryś przypadek przekroczył budżet.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class AllocationVerification {
+    private static final int DEFAULT_ROUNDS = 200;
+    /**
+     * Liczba tur przed pomiarem, w których populacja się stabilizuje, a klasy są ładowane i kompilowane.
+     */
+    private static final int WARMUP_ROUNDS = 3000;
+    private static final int BOARD_SIZE = 60;
+    /**
+     * Przydział na nowego roba niezależny od długości jego programu.
+     */
+    private static final int BIRTH_BYTES = 246;
+    /**
+     * Przydział na nowego roba na każdą instrukcję jego programu.
+     */
+    private static final int INSTRUCTION_BYTES = 16;
+    /**
+     * Budżet tury w przypadku z rodzącymi się robami.
+     */
+    private static final int STEADY_ROUND_BYTES = 256;
+    /**
+     * Liczba kolejnych wywołań odrastania jedzenia bez alokacji, po której procedura odrastania uznawana jest za
+     * skompilowaną, oraz największa liczba wywołań w jej rozgrzewce.
+     */
+    private static final int QUIET_REGROWTH_CALLS = 1000;
+    private static final int MAX_REGROWTH_CALLS = 1_000_000;
+
+    /**
+     * Sposoby prowadzenia symulacji w jednym wątku.
+     */
+    private enum Engine {
+        DENSE("dense board"),
+        SPARSE("sparse board");
+
+        private final String name;
+
+        Engine(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Stały przypadek z budżetem alokacji.
+     */
+    private static final class BudgetedFixture {
+        private final Fixture fixture;
+        /**
+         * Dopuszczalna średnia liczba bajtów zaalokowanych w turze poza przydziałem na nowe roby.
+         */
+        private final long roundBytes;
+
+        BudgetedFixture(Fixture fixture, long roundBytes) {
+            this.fixture = fixture;
+            this.roundBytes = roundBytes;
+        }
+    }
+
+    private final com.sun.management.ThreadMXBean threads;
+    /**
+     * Liczba bajtów, którą pokazuje sam pomiar pustego odcinka kodu.
+     */
+    private final long measurementBytes;
+    private final long seed;
+    private final String board;
+
+    private AllocationVerification(long seed) {
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.threads.setThreadAllocatedMemoryEnabled(true);
+        long before = allocatedBytes();
+        this.measurementBytes = allocatedBytes() - before;
+        this.seed = seed;
+        this.board = Fixture.board(new Random(seed), BOARD_SIZE, BOARD_SIZE, 0.5);
+    }
+
+    public static void main(String[] args) {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) ||
+                !((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean())
+                        .isThreadAllocatedMemorySupported()) {
+            System.out.println("Thread allocation measurement is not supported by this JVM.");
+            return;
+        }
+
+        Report.run(args, "AllocationVerification [rounds [seed]]", DEFAULT_ROUNDS, 0,
+                (roundsNumber, seed) -> new AllocationVerification(seed).verify(roundsNumber));
+    }
+
+    /**
+     * Sprawdza wszystkie przypadki wszystkimi sposobami prowadzenia symulacji, wypisując wyniki.
+     *
+     * @return prawda, wtedy i tylko wtedy, gdy żadna tura nie przekroczyła budżetu
+     */
+    private boolean verify(int roundsNumber) {
+        Report report = new Report("%-18s %-13s %7s %8s %12s %12s %8s %7s", "%-18s %-13s %7d %8d %12d %12d %8d %7s",
+                "fixture", "engine", "rounds", "births", "bytes/round", "excess/round", "budget", "result");
+        boolean passed = true;
+        for (BudgetedFixture fixture : fixtures()) {
+            for (Engine engine : Engine.values()) {
+                passed &= verify(report, fixture, engine, roundsNumber);
+            }
+        }
+        return passed;
+    }
+
+    private boolean verify(Report report, BudgetedFixture budgetedFixture, Engine engine, int roundsNumber) {
+        Fixture fixture = budgetedFixture.fixture;
+        Configuration configuration = fixture.configuration();
+        Board board = fixture.board(configuration).copy(engine == Engine.SPARSE);
+        if (!warmUpRegrowth(board)) {
+            System.out.println(String.format("%-18s %-13s food regrowth still allocates after warm-up",
+                    fixture.name(), engine.name));
+            return false;
+        }
+        ActualSimulation simulation = new ActualSimulation(configuration, board, configuration.initialRobsNumber(),
+                new Random(this.seed));
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            if (!simulation.simulateRound()) {
+                System.out.println(String.format("%-18s %-13s robs died out during warm-up", fixture.name(),
+                        engine.name));
+                return false;
+            }
+        }
+
+        long totalBytes = 0;
+        long allowance = 0;
+        long births = 0;
+        int rounds = 0;
+        while (rounds < roundsNumber) {
+            long before = allocatedBytes();
+            boolean alive = simulation.simulateRound();
+            totalBytes += allocatedBytes() - before - this.measurementBytes;
+            rounds++;
+            // Roby urodzone w tej turze są jedynymi, które mają po turze wiek 0.
+            List<Rob> robs = simulation.robs();
+            for (int i = 0; i < robs.size(); i++) {
+                if (robs.get(i).getAge() == 0) {
+                    births++;
+                    allowance += BIRTH_BYTES + (long) INSTRUCTION_BYTES * robs.get(i).getProgramLength();
+                }
+            }
+            if (!alive)
+                break;
+        }
+        long excess = (totalBytes - allowance) / Math.max(1, rounds);
+        boolean passed = excess <= budgetedFixture.roundBytes;
+        report.row(fixture.name(), engine.name, rounds, births, totalBytes / Math.max(1, rounds), excess,
+                budgetedFixture.roundBytes, Report.result(passed));
+        return passed;
+    }
+
+    /**
+     * Wywołuje odrastanie jedzenia na kopii planszy {@code board}, dopóki przez {@value #QUIET_REGROWTH_CALLS}
+     * kolejnych wywołań nie alokuje ono pamięci.
+     *
+     * @return prawda, jeśli odrastanie przestało alokować przed wykonaniem {@value #MAX_REGROWTH_CALLS} wywołań
+     */
+    private boolean warmUpRegrowth(Board board) {
+        Board copy = board.copy();
+        int quietCalls = 0;
+        for (int i = 0; i < MAX_REGROWTH_CALLS && quietCalls < QUIET_REGROWTH_CALLS; i++) {
+            long before = allocatedBytes();
+            copy.nextRound();
+            quietCalls = allocatedBytes() - before == this.measurementBytes ? quietCalls + 1 : 0;
+        }
+        return quietCalls == QUIET_REGROWTH_CALLS;
+    }
+
+    /**
+     * Liczba bajtów zaalokowanych dotąd przez bieżący wątek. Wersja z identyfikatorem wątku
+     * ({@code getThreadAllocatedBytes(long)}) sama czasem alokuje pamięć, pojedynczo w środku pomiaru.
+     */
+    private long allocatedBytes() {
+        return this.threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Parametry przypadku o populacji, która po rozgrzewce ma mniej więcej stałą liczebność.
+     */
+    private static Map<String, Object> steadyParameters() {
+        Map<String, Object> parameters = Fixture.defaultParameters();
+        parameters.put("ile_tur", WARMUP_ROUNDS + DEFAULT_ROUNDS);
+        parameters.put("pocz_ile_robów", 200);
+        parameters.put("pocz_energia", 100);
+        parameters.put("koszt_tury", 2);
+        parameters.put("co_ile_wypisz", 100);
+        return parameters;
+    }
+
+    /**
+     * Przypadki: populacja bez powielania, w której tura nie może niczego alokować, oraz populacja, w której roby
+     * rodzą się i giną w każdej turze. Oba na tej samej planszy.
+     */
+    private List<BudgetedFixture> fixtures() {
+        List<BudgetedFixture> fixtures = new ArrayList<>();
+
+        Map<String, Object> noOffspring = steadyParameters();
+        noOffspring.put("pr_powielenia", 0.0);
+        noOffspring.put("pocz_energia", 100000);
+        noOffspring.put("koszt_tury", 1);
+        fixtures.add(new BudgetedFixture(new Fixture("no offspring", noOffspring, this.board), 0));
+
+        fixtures.add(new BudgetedFixture(new Fixture("steady population", steadyParameters(), this.board),
+                STEADY_ROUND_BYTES));
+        return fixtures;
+    }
+}
@@ -0,0 +1,527 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+import project.verification.Fixture;
+import project.verification.Report;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Porównuje sposoby prowadzenia symulacji (kandydatów) z symulacją wzorcową na losowych i brzegowych konfiguracjach
+ * i planszach oraz mierzy przepustowość każdego z nich.
+ * <p>Symulacja wzorcowa to {@link ActualSimulation} na planszy przechowującej stany wszystkich pól, w której każdy
+ * rob wykonuje swój program sam. Kandydat deterministyczny musi przy tym samym ziarnie dawać po każdej turze takie
+ * same statystyki ({@link Data#formatStatistics}), a na końcu taki sam stan robów i planszy. Kandydaci, których
+ * przebieg z założenia różni się od wzorcowego (wątki), są uruchamiani {@value #REPLICAS} razy z różnymi
+ * ziarnami, podobnie jak symulacja wzorcowa, a średnie liczby robów i pól z jedzeniem muszą być zgodne
+ * z wzorcowymi z zadeklarowaną tolerancją względną albo w teście permutacyjnym.
+ * Test permutacyjny nie zakłada rozkładu wyników, co ma znaczenie w małych przypadkach, w których wiele
+ * uruchomień kończy się wyginięciem robów lub bez jedzenia na planszy. Po każdej turze każdej symulacji
+ * sprawdzane są też niezmienniki planszy: licznik pól z jedzeniem i liczba robów na planszy.</p>
+ * <p>Przepustowość to liczba tur robów na sekundę, liczona z czasu samych tur, bez zbierania statystyk
+ * i sprawdzania.</p>
+ * <p>Uruchomienie: {@code java project.simulation.EngineVerification [liczba_przypadków [ziarno]]}. Program kończy
+ * się kodem 1, jeśli któryś kandydat nie przeszedł sprawdzenia.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class EngineVerification {
+    private static final int DEFAULT_CASES = 40;
+    /**
+     * Liczba uruchomień symulacji wzorcowej i kandydata niedeterministycznego w każdym przypadku.
+     */
+    private static final int REPLICAS = 10;
+    /**
+     * Liczba losowych permutacji w teście permutacyjnym zgodności średnich.
+     */
+    private static final int PERMUTATIONS = 20000;
+    /**
+     * Poziom istotności jednego porównania średnich. Przy około stu porównaniach w uruchomieniu prawdopodobieństwo
+     * fałszywego błędu w całym uruchomieniu wynosi około 1%.
+     */
+    private static final double SIGNIFICANCE = 1e-4;
+    private static final int MAX_SIZE = 30;
+
+    /**
+     * Sposoby prowadzenia symulacji. Pierwszy jest symulacją wzorcową.
+     */
+    private enum Engine {
+        REFERENCE("reference", "", -1) {
+            @Override
+            Run start(Configuration configuration, Board board, long seed) {
+                return new SequentialRun(configuration, board.copy(false), seed);
+            }
+        },
+        SPARSE_BOARD("sparse board", "", -1) {
+            @Override
+            Run start(Configuration configuration, Board board, long seed) {
+                return new SequentialRun(configuration, board.copy(true), seed);
+            }
+        },
+        /**
+         * Roby różnych wątków konkurują o jedzenie w kolejności zależnej od przeplotu wątków, a nie od kolejności
+         * z listy robów, więc przebieg różni się od wzorcowego, ale rozkład wyników jest ten sam.
+         */
+        CONCURRENT("concurrent", "wątki_współbieżne 2", 0.1) {
+            @Override
+            Run start(Configuration configuration, Board board, long seed) {
+                return new ConcurrentRun(new ConcurrentSimulation(configuration, board.copy(false)));
+            }
+        };
+
+        private final String name;
+        /**
+         * Parametr dopisywany do konfiguracji przypadku, który włącza ten sposób prowadzenia symulacji.
+         */
+        private final String parameter;
+        /**
+         * Dopuszczalna względna różnica średnich lub liczba ujemna, jeśli przebieg musi być taki sam jak wzorcowy.
+         */
+        private final double tolerance;
+
+        Engine(String name, String parameter, double tolerance) {
+            this.name = name;
+            this.parameter = parameter;
+            this.tolerance = tolerance;
+        }
+
+        boolean isExact() {
+            return this.tolerance < 0;
+        }
+
+        /**
+         * Rozpoczyna symulację na kopii planszy {@code board}. Ziarno nie musi być uwzględnione przez kandydatów
+         * niedeterministycznych.
+         */
+        abstract Run start(Configuration configuration, Board board, long seed);
+    }
+
+    /**
+     * Symulacja prowadzona turami.
+     */
+    private interface Run {
+        boolean simulateRound();
+
+        RoundStatistics collectStatistics(int roundNumber);
+
+        List<Rob> robs();
+
+        Board board();
+
+        default void close() {
+        }
+    }
+
+    private static final class SequentialRun implements Run {
+        private final ActualSimulation simulation;
+        private final Board board;
+
+        SequentialRun(Configuration configuration, Board board, long seed) {
+            this.simulation = new ActualSimulation(configuration, board, configuration.initialRobsNumber(),
+                    new Random(seed));
+            this.board = board;
+        }
+
+        @Override
+        public boolean simulateRound() {
+            return this.simulation.simulateRound();
+        }
+
+        @Override
+        public RoundStatistics collectStatistics(int roundNumber) {
+            return this.simulation.collectStatistics(roundNumber);
+        }
+
+        @Override
+        public List<Rob> robs() {
+            return this.simulation.robs();
+        }
+
+        @Override
+        public Board board() {
+            return this.board;
+        }
+    }
+
+    private static final class ConcurrentRun implements Run {
+        private final ConcurrentSimulation simulation;
+
+        ConcurrentRun(ConcurrentSimulation simulation) {
+            this.simulation = simulation;
+        }
+
+        @Override
+        public boolean simulateRound() {
+            return this.simulation.simulateRound();
+        }
+
+        @Override
+        public RoundStatistics collectStatistics(int roundNumber) {
+            return this.simulation.collectStatistics(roundNumber);
+        }
+
+        @Override
+        public List<Rob> robs() {
+            return this.simulation.robs();
+        }
+
+        @Override
+        public Board board() {
+            return this.simulation.board();
+        }
+
+        @Override
+        public void close() {
+            this.simulation.shutdown();
+        }
+    }
+
+    /**
+     * Przebieg jednej symulacji.
+     */
+    private static final class Outcome {
+        private final List<String> statistics = new ArrayList<>();
+        private String finalState;
+        private String violation;
+        private double meanRobsNumber;
+        private double meanFoodSquaresNumber;
+        private long nanos;
+        private long robTurns;
+    }
+
+    private final Random random;
+    private final long[] nanos = new long[Engine.values().length];
+    private final long[] robTurns = new long[Engine.values().length];
+    private final int[] failures = new int[Engine.values().length];
+
+    private EngineVerification(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        Report.run(args, "EngineVerification [cases [seed]]", DEFAULT_CASES, 0,
+                (casesNumber, seed) -> new EngineVerification(seed).verify(casesNumber));
+    }
+
+    /**
+     * Sprawdza kandydatów na przypadkach brzegowych i {@code casesNumber} losowych przypadkach, wypisując wyniki.
+     *
+     * @return prawda, wtedy i tylko wtedy, gdy wszyscy kandydaci przeszli sprawdzenie
+     */
+    private boolean verify(int casesNumber) {
+        List<Fixture> cases = edgeCases();
+        for (int i = 0; i < casesNumber; i++) {
+            cases.add(randomCase(i + 1));
+        }
+        boolean passed = true;
+        for (Fixture testCase : cases) {
+            List<String> problems = verify(testCase);
+            System.out.println(testCase.name() + ": " + Report.result(problems.isEmpty()));
+            for (String problem : problems) {
+                System.out.println("  " + problem);
+            }
+            passed &= problems.isEmpty();
+        }
+        printThroughput(cases.size());
+        return passed;
+    }
+
+    private List<String> verify(Fixture testCase) {
+        List<String> problems = new ArrayList<>();
+        long seed = this.random.nextLong();
+        Outcome[] reference = new Outcome[REPLICAS];
+        for (int r = 0; r < REPLICAS; r++) {
+            reference[r] = execute(Engine.REFERENCE, testCase, seed + r);
+            if (reference[r].violation != null)
+                problems.add(Engine.REFERENCE.name + ": " + reference[r].violation);
+        }
+        if (!problems.isEmpty())
+            this.failures[Engine.REFERENCE.ordinal()]++;
+
+        for (Engine engine : Engine.values()) {
+            if (engine == Engine.REFERENCE)
+                continue;
+            Outcome[] candidate = new Outcome[engine.isExact() ? 1 : REPLICAS];
+            String problem = null;
+            for (int r = 0; r < candidate.length; r++) {
+                candidate[r] = execute(engine, testCase, seed + r);
+                if (problem == null)
+                    problem = candidate[r].violation;
+            }
+            if (problem == null)
+                problem = engine.isExact() ? compareExactly(reference[0], candidate[0]) :
+                        compareStatistically(reference, candidate, engine.tolerance, new Random(seed));
+            if (problem != null) {
+                problems.add(engine.name + ": " + problem);
+                this.failures[engine.ordinal()]++;
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Przeprowadza symulację przypadku {@code testCase} sposobem {@code engine}, sprawdzając po każdej turze
+     * niezmienniki planszy.
+     */
+    private Outcome execute(Engine engine, Fixture testCase, long seed) {
+        Configuration configuration = testCase.configuration(engine.parameter);
+        Run run = engine.start(configuration, testCase.board(configuration), seed);
+        Outcome outcome = new Outcome();
+        long robsSum = 0;
+        long foodSum = 0;
+        int aliveRounds = 0;
+        try {
+            for (int i = 1; i <= testCase.roundsNumber(); i++) {
+                outcome.robTurns += run.robs().size();
+                long start = System.nanoTime();
+                boolean alive = run.simulateRound();
+                outcome.nanos += System.nanoTime() - start;
+                String violation = checkInvariants(run);
+                if (violation != null && outcome.violation == null)
+                    outcome.violation = "round " + i + ": " + violation;
+                if (!alive) {
+                    outcome.statistics.add("extinct");
+                    break;
+                }
+                RoundStatistics statistics = run.collectStatistics(i);
+                outcome.statistics.add(Data.formatStatistics(statistics));
+                robsSum += statistics.robsNumber();
+                foodSum += statistics.foodSquaresNumber();
+                aliveRounds++;
+            }
+            outcome.finalState = describeState(run);
+        }
+        finally {
+            run.close();
+        }
+        outcome.meanRobsNumber = (double) robsSum / testCase.roundsNumber();
+        outcome.meanFoodSquaresNumber = aliveRounds == 0 ? 0 : (double) foodSum / aliveRounds;
+        this.nanos[engine.ordinal()] += outcome.nanos;
+        this.robTurns[engine.ordinal()] += outcome.robTurns;
+        return outcome;
+    }
+
+    /**
+     * Sprawdza, czy licznik pól z jedzeniem i liczba robów na planszy zgadzają się ze stanem pól i liczbą robów.
+     *
+     * @return opis niezgodności lub {@code null}
+     */
+    private static String checkInvariants(Run run) {
+        Board board = run.board();
+        int foodSquares = 0;
+        int robs = 0;
+        for (int y = 0; y < board.sizeY(); y++) {
+            for (int x = 0; x < board.sizeX(); x++) {
+                if (board.foodRipeness(y * board.sizeX() + x) == board.ripeningTime())
+                    foodSquares++;
+                robs += board.robsAt(x, y);
+            }
+        }
+        if (foodSquares != board.foodSquaresNumber())
+            return "food squares counter is " + board.foodSquaresNumber() + ", board has " + foodSquares;
+        if (robs != run.robs().size())
+            return "board holds " + robs + " robs, population has " + run.robs().size();
+        return null;
+    }
+
+    /**
+     * Opisuje stan, programy i kolejność robów oraz stan wszystkich pól planszy.
+     */
+    private static String describeState(Run run) {
+        StringBuilder state = new StringBuilder();
+        for (Rob rob : run.robs()) {
+            state.append(rob).append(", program ").append(rob.getProgram()).append('\n');
+        }
+        Board board = run.board();
+        for (int i = 0; i < board.sizeX() * board.sizeY(); i++) {
+            state.append(board.foodRipeness(i)).append(' ');
+        }
+        return state.toString();
+    }
+
+    /**
+     * @return opis pierwszej różnicy przebiegów lub {@code null}, jeśli przebiegi są takie same
+     */
+    private static String compareExactly(Outcome reference, Outcome candidate) {
+        int rounds = Math.max(reference.statistics.size(), candidate.statistics.size());
+        for (int i = 0; i < rounds; i++) {
+            String expected = i < reference.statistics.size() ? reference.statistics.get(i) : "no round";
+            String actual = i < candidate.statistics.size() ? candidate.statistics.get(i) : "no round";
+            if (!expected.equals(actual))
+                return "round " + (i + 1) + ": expected \"" + expected + "\", was \"" + actual + "\"";
+        }
+        if (!reference.finalState.equals(candidate.finalState))
+            return "final state of robs or board differs";
+        return null;
+    }
+
+    /**
+     * @return opis niezgodności średnich lub {@code null}, jeśli średnie są zgodne
+     */
+    private static String compareStatistically(Outcome[] reference, Outcome[] candidate, double tolerance,
+                                               Random random) {
+        String robs = compareMeans("mean robs number", reference, candidate, o -> o.meanRobsNumber, tolerance,
+                random);
+        if (robs != null)
+            return robs;
+        return compareMeans("mean food squares number", reference, candidate, o -> o.meanFoodSquaresNumber,
+                tolerance, random);
+    }
+
+    /**
+     * Porównuje średnie wartości {@code value} symulacji wzorcowej i kandydata. Średnie są zgodne, jeśli różnią się
+     * względnie o najwyżej {@code tolerance} albo jeśli test permutacyjny nie odrzuca hipotezy, że wyniki obu
+     * pochodzą z tego samego rozkładu.
+     */
+    private static String compareMeans(String name, Outcome[] reference, Outcome[] candidate,
+                                       ToDoubleFunction<Outcome> value, double tolerance, Random random) {
+        double[] values = new double[reference.length + candidate.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value.applyAsDouble(i < reference.length ? reference[i] : candidate[i - reference.length]);
+        }
+        double expected = mean(values, 0, reference.length);
+        double actual = mean(values, reference.length, values.length);
+        if (Math.abs(expected - actual) <= tolerance * Math.max(expected, actual))
+            return null;
+        double pValue = permutationPValue(values, reference.length, Math.abs(expected - actual), random);
+        if (pValue >= SIGNIFICANCE)
+            return null;
+        return String.format("%s %.2f, expected %.2f (p-value %.5f)", name, actual, expected, pValue);
+    }
+
+    /**
+     * Oblicza przybliżoną wartość p dwustronnego testu permutacyjnego: część losowych podziałów wartości
+     * {@code values} na grupy wielkości {@code firstSize} i reszty, w których średnie grup różnią się co najmniej
+     * o {@code difference}. Tablica {@code values} jest przy tym przestawiana.
+     */
+    private static double permutationPValue(double[] values, int firstSize, double difference, Random random) {
+        double total = mean(values, 0, values.length) * values.length;
+        int extreme = 0;
+        for (int p = 0; p < PERMUTATIONS; p++) {
+            // Losuje tylko pierwszą grupę, częściowym tasowaniem Fishera-Yatesa.
+            double firstSum = 0;
+            for (int i = 0; i < firstSize; i++) {
+                int j = i + random.nextInt(values.length - i);
+                double swapped = values[i];
+                values[i] = values[j];
+                values[j] = swapped;
+                firstSum += values[i];
+            }
+            double firstMean = firstSum / firstSize;
+            double secondMean = (total - firstSum) / (values.length - firstSize);
+            // Tolerancja zaokrągleń, aby podział równy obserwowanemu był liczony jako co najmniej tak skrajny.
+            if (Math.abs(firstMean - secondMean) >= difference * (1 - 1e-9))
+                extreme++;
+        }
+        return (extreme + 1.0) / (PERMUTATIONS + 1);
+    }
+
+    private static double mean(double[] values, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += values[i];
+        }
+        return sum / (to - from);
+    }
+
+    private void printThroughput(int casesNumber) {
+        System.out.println();
+        Report report = new Report("%-14s %-5s %6s %7s %14s %8s", "%-14s %-5s %6d %7d %14.0f %8.2f", "engine",
+                "exact", "cases", "failed", "rob turns/s", "speedup");
+        double referenceRate = rate(Engine.REFERENCE);
+        for (Engine engine : Engine.values()) {
+            report.row(engine.name, engine.isExact() ? "yes" : "no", casesNumber, this.failures[engine.ordinal()],
+                    rate(engine), rate(engine) / referenceRate);
+        }
+    }
+
+    private double rate(Engine engine) {
+        return this.robTurns[engine.ordinal()] * 1e9 / Math.max(1, this.nanos[engine.ordinal()]);
+    }
+
+    /**
+     * Przypadki brzegowe: wyginięcie robów, puste programy, plansze o jednym wierszu lub kolumnie i plansza pełna
+     * jedzenia.
+     */
+    private List<Fixture> edgeCases() {
+        List<Fixture> cases = new ArrayList<>();
+
+        Map<String, Object> extinction = Fixture.defaultParameters();
+        extinction.put("pocz_energia", 3);
+        extinction.put("koszt_tury", 2);
+        cases.add(new Fixture("extinction", extinction, board(10, 10, 0)));
+
+        Map<String, Object> noRobs = Fixture.defaultParameters();
+        noRobs.put("pocz_ile_robów", 0);
+        cases.add(new Fixture("no robs", noRobs, board(5, 5, 0.5)));
+
+        Map<String, Object> emptyPrograms = Fixture.defaultParameters();
+        emptyPrograms.put("pocz_progr", "ij");
+        emptyPrograms.put("pr_usunięcia_instr", 1.0);
+        emptyPrograms.put("pr_dodania_instr", 0.0);
+        emptyPrograms.put("pr_zmiany_instr", 0.0);
+        emptyPrograms.put("pr_powielenia", 1.0);
+        emptyPrograms.put("limit_powielania", 0);
+        emptyPrograms.put("pocz_energia", 200);
+        cases.add(new Fixture("empty programs", emptyPrograms, board(12, 12, 1)));
+
+        cases.add(new Fixture("board 1x" + MAX_SIZE, Fixture.defaultParameters(), board(1, MAX_SIZE, 0.6)));
+        cases.add(new Fixture("board " + MAX_SIZE + "x1", Fixture.defaultParameters(), board(MAX_SIZE, 1, 0.6)));
+        cases.add(new Fixture("board 1x1", Fixture.defaultParameters(), board(1, 1, 1)));
+        cases.add(new Fixture("full food board", Fixture.defaultParameters(), board(MAX_SIZE, MAX_SIZE, 1)));
+        return cases;
+    }
+
+    private Fixture randomCase(int number) {
+        Random random = this.random;
+        String instructions = "";
+        while (instructions.isEmpty()) {
+            for (char instruction : "lpijw".toCharArray()) {
+                if (random.nextBoolean())
+                    instructions += instruction;
+            }
+        }
+        StringBuilder program = new StringBuilder();
+        for (int i = 1 + random.nextInt(12); i > 0; i--) {
+            program.append(instructions.charAt(random.nextInt(instructions.length())));
+        }
+
+        Map<String, Object> parameters = Fixture.defaultParameters();
+        int roundsNumber = 10 + random.nextInt(91);
+        parameters.put("ile_tur", roundsNumber);
+        parameters.put("spis_instr", instructions);
+        parameters.put("ile_rośnie_jedzenie", 1 + random.nextInt(10));
+        parameters.put("pocz_ile_robów", random.nextInt(61));
+        parameters.put("pocz_progr", program.toString());
+        parameters.put("pocz_energia", random.nextInt(201));
+        parameters.put("ile_daje_jedzenie", random.nextInt(11));
+        parameters.put("koszt_tury", 1 + random.nextInt(5));
+        parameters.put("pr_powielenia", random.nextDouble());
+        parameters.put("ułamek_energii_rodzica", random.nextDouble());
+        parameters.put("limit_powielania", 5 + random.nextInt(60));
+        parameters.put("pr_usunięcia_instr", random.nextDouble());
+        parameters.put("pr_dodania_instr", random.nextDouble());
+        parameters.put("pr_zmiany_instr", random.nextDouble());
+        parameters.put("co_ile_wypisz", roundsNumber);
+
+        int sizeX = 1 + random.nextInt(MAX_SIZE);
+        int sizeY = 1 + random.nextInt(MAX_SIZE);
+        // Gęstość jedzenia czasem poniżej progu, od którego plansza przechowuje tylko pola z jedzeniem.
+        double density = random.nextBoolean() ? random.nextDouble() : 0.1 * random.nextDouble();
+        return new Fixture("random case " + number + " (board " + sizeX + "x" + sizeY + ", " + roundsNumber +
+                " rounds)", parameters, board(sizeX, sizeY, density));
+    }
+
+    /**
+     * Tworzy treść pliku z planszą, na której jedzenie rośnie na każdym polu z prawdopodobieństwem {@code density}.
+     */
+    private String board(int sizeX, int sizeY, double density) {
+        return Fixture.board(this.random, sizeX, sizeY, density);
+    }
+}
@@ -0,0 +1,244 @@
+package project.simulation.rob;
+
+import project.parameters.Configuration;
+import project.simulation.universe.spatial.Direction;
+import project.verification.Fixture;
+import project.verification.Report;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Sprawdza, że losowanie rzadkich zdarzeń przez odliczanie prób do najbliższego sukcesu
+ * ({@link Rob#trialsToSuccess}) daje te same rozkłady co losowanie każdej próby osobno.
+ * <p>Dla każdego zdarzenia (powielenie roba oraz usunięcie, dodanie i zmiana instrukcji w programie dziecka)
+ * i każdego prawdopodobieństwa rob przeprowadza tyle prób, ile podano, a niezależnie od niego tyle samo prób jest
+ * losowanych osobno, po jednej liczbie losowej na próbę, jak przed wprowadzeniem odliczania. Sprawdzane są:</p>
+ * <ul>
+ *     <li>liczba zdarzeń u roba: musi mieścić się w granicach rozkładu dwumianowego wokół oczekiwanej liczby,
+ *     z dopuszczalnym odchyleniem {@value #LIMIT} odchyleń standardowych,</li>
+ *     <li>rozkład odstępów między kolejnymi zdarzeniami u roba i w próbach losowanych osobno: test chi-kwadrat
+ *     jednorodności dwóch prób, z tym samym ograniczeniem na wartość statystyki przeliczonej na rozkład normalny
+ *     (przybliżenie Wilsona-Hilferty'ego). Zgodność odstępów oznacza, że zdarzenia u roba nie zależą od
+ *     wcześniejszych prób.</li>
+ * </ul>
+ * <p>Przy prawdopodobieństwie 0 i 1 zdarzenia muszą nie wystąpić nigdy albo wystąpić w każdej próbie. Przy około
+ * pięćdziesięciu porównaniach w uruchomieniu prawdopodobieństwo fałszywego błędu jest rzędu 0,01%.</p>
+ * <p>Uruchomienie: {@code java project.simulation.rob.SamplingVerification [liczba_prób [ziarno]]}. Program kończy
+ * się kodem 1, jeśli któryś rozkład się nie zgadza.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class SamplingVerification {
+    private static final int DEFAULT_TRIALS = 1_000_000;
+    private static final double[] ODDS = {0, 0.001, 0.01, 0.1, 0.5, 0.9, 1};
+    /**
+     * Dopuszczalne odchylenie statystyki od oczekiwanej wartości, w odchyleniach standardowych.
+     */
+    private static final double LIMIT = 4.5;
+    /**
+     * Największa liczba przedziałów odstępów w teście chi-kwadrat.
+     */
+    private static final int MAX_BINS = 20;
+    /**
+     * Najmniejsza oczekiwana liczba odstępów w jednym przedziale.
+     */
+    private static final int MIN_BIN_COUNT = 20;
+    private static final int PROGRAM_LENGTH = 10;
+
+    /**
+     * Losowane zdarzenia i parametry, które określają ich prawdopodobieństwa.
+     */
+    private enum Event {
+        MULTIPLICATION("multiplication", "pr_powielenia"),
+        REMOVAL("removal", "pr_usunięcia_instr"),
+        ADDING("adding", "pr_dodania_instr"),
+        CHANGE("change", "pr_zmiany_instr");
+
+        private final String name;
+        private final String parameter;
+
+        Event(String name, String parameter) {
+            this.name = name;
+            this.parameter = parameter;
+        }
+    }
+
+    private final Random random;
+
+    private SamplingVerification(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public static void main(String[] args) {
+        Report.run(args, "SamplingVerification [trials [seed]]", DEFAULT_TRIALS, 1,
+                (trialsNumber, seed) -> new SamplingVerification(seed).verify(trialsNumber));
+    }
+
+    /**
+     * Sprawdza wszystkie zdarzenia przy wszystkich prawdopodobieństwach, wypisując wyniki.
+     *
+     * @return prawda, wtedy i tylko wtedy, gdy wszystkie rozkłady są zgodne
+     */
+    private boolean verify(int trialsNumber) {
+        Report report = new Report("%-15s %6s %10s %10s %10s %8s %10s %7s",
+                "%-15s %6s %10.0f %10d %10d %8.2f %10.2f %7s", "event", "odds", "expected", "rob", "per trial", "z",
+                "gaps z", "result");
+        boolean passed = true;
+        for (Event event : Event.values()) {
+            for (double odds : ODDS) {
+                passed &= verify(report, event, odds, trialsNumber);
+            }
+        }
+        return passed;
+    }
+
+    private boolean verify(Report report, Event event, double odds, int trialsNumber) {
+        boolean[] sampled = sampleRob(event, odds, trialsNumber);
+        boolean[] reference = new boolean[trialsNumber];
+        for (int i = 0; i < trialsNumber; i++) {
+            reference[i] = this.random.nextDouble() < odds;
+        }
+
+        int events = count(sampled);
+        double expected = odds * trialsNumber;
+        boolean passed;
+        double z = 0, gapsZ = 0;
+        if (odds == 0 || odds == 1) {
+            passed = events == expected;
+        }
+        else {
+            z = (events - expected) / Math.sqrt(expected * (1 - odds));
+            gapsZ = compareGaps(gaps(sampled), gaps(reference), odds);
+            passed = Math.abs(z) <= LIMIT && gapsZ <= LIMIT;
+        }
+        report.row(event.name, odds, expected, events, count(reference), z, gapsZ, Report.result(passed));
+        return passed;
+    }
+
+    /**
+     * Przeprowadza {@code trialsNumber} prób zdarzenia {@code event} u jednego roba, dla którego tylko to zdarzenie
+     * ma niezerowe prawdopodobieństwo {@code odds}.
+     *
+     * @return tablica, w której prawda oznacza, że zdarzenie wystąpiło w danej próbie
+     */
+    private boolean[] sampleRob(Event event, double odds, int trialsNumber) {
+        RobParameters parameters = new RobParameters(configuration(event, odds));
+        // Program składa się z instrukcji spoza spisu, więc każda zmiana instrukcji jest widoczna.
+        ArrayList<Instruction> program = new ArrayList<>(Collections.nCopies(PROGRAM_LENGTH, Instruction.RIGHT));
+        Rob rob = new Rob(parameters, 0, program, null, Direction.UP, 0, 0, 0, new Random(this.random.nextLong()));
+
+        boolean[] occurred = new boolean[trialsNumber];
+        for (int i = 0; i < trialsNumber; i++) {
+            if (event == Event.MULTIPLICATION) {
+                occurred[i] = rob.drawMultiplicationLots();
+                continue;
+            }
+            ArrayList<Instruction> childProgram = new ArrayList<>(program);
+            rob.mutateProgram(childProgram);
+            if (event == Event.REMOVAL)
+                occurred[i] = childProgram.size() < PROGRAM_LENGTH;
+            else if (event == Event.ADDING)
+                occurred[i] = childProgram.size() > PROGRAM_LENGTH;
+            else
+                occurred[i] = childProgram.contains(Instruction.LEFT);
+        }
+        return occurred;
+    }
+
+    /**
+     * Konfiguracja, w której tylko zdarzenie {@code event} ma niezerowe prawdopodobieństwo {@code odds}.
+     */
+    private static Configuration configuration(Event event, double odds) {
+        Map<String, Object> parameters = Fixture.defaultParameters();
+        // Zmiana instrukcji może dać tylko instrukcję ze spisu, czyli obrót w lewo.
+        parameters.put("spis_instr", "l");
+        parameters.put("pocz_progr", "l");
+        for (Event parameterEvent : Event.values()) {
+            parameters.put(parameterEvent.parameter, parameterEvent == event ? odds : 0.0);
+        }
+        return new Fixture(event.name, parameters).configuration();
+    }
+
+    private static int count(boolean[] occurred) {
+        int count = 0;
+        for (boolean event : occurred) {
+            if (event)
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Odstępy między kolejnymi zdarzeniami, licząc od początku prób: numer próby z pierwszym zdarzeniem, a potem
+     * różnice numerów prób z kolejnymi zdarzeniami.
+     */
+    private static int[] gaps(boolean[] occurred) {
+        int[] gaps = new int[count(occurred)];
+        int last = -1;
+        int gapsNumber = 0;
+        for (int i = 0; i < occurred.length; i++) {
+            if (occurred[i]) {
+                gaps[gapsNumber++] = i - last;
+                last = i;
+            }
+        }
+        return gaps;
+    }
+
+    /**
+     * Test chi-kwadrat jednorodności odstępów {@code sampled} i {@code reference}. Przedziały odstępów mają
+     * w rozkładzie geometrycznym o parametrze {@code odds} w przybliżeniu równe prawdopodobieństwa.
+     *
+     * @return statystyka testu przeliczona na rozkład normalny; duża wartość oznacza niezgodność rozkładów
+     */
+    private static double compareGaps(int[] sampled, int[] reference, double odds) {
+        if (sampled.length == 0 || reference.length == 0)
+            return 0;
+        int binsNumber = Math.max(2, Math.min(MAX_BINS, Math.min(sampled.length, reference.length) / MIN_BIN_COUNT));
+        // Górne granice przedziałów, czyli kwantyle rozkładu geometrycznego, bez powtórzeń.
+        int[] bounds = new int[binsNumber];
+        int boundsNumber = 0;
+        for (int j = 1; j < binsNumber; j++) {
+            int bound = Rob.trialsToSuccess(odds, (double) j / binsNumber);
+            if (boundsNumber == 0 || bound > bounds[boundsNumber - 1])
+                bounds[boundsNumber++] = bound;
+        }
+        bounds[boundsNumber++] = Integer.MAX_VALUE;
+        if (boundsNumber < 2)
+            return 0;
+
+        long[] sampledCounts = binCounts(sampled, bounds, boundsNumber);
+        long[] referenceCounts = binCounts(reference, bounds, boundsNumber);
+        double ratio = Math.sqrt((double) reference.length / sampled.length);
+        double chiSquare = 0;
+        int degrees = -1;
+        for (int bin = 0; bin < boundsNumber; bin++) {
+            long total = sampledCounts[bin] + referenceCounts[bin];
+            if (total == 0)
+                continue;
+            double difference = sampledCounts[bin] * ratio - referenceCounts[bin] / ratio;
+            chiSquare += difference * difference / total;
+            degrees++;
+        }
+        if (degrees < 1)
+            return 0;
+        // Przybliżenie Wilsona-Hilferty'ego rozkładu chi-kwadrat rozkładem normalnym.
+        double variance = 2.0 / (9 * degrees);
+        return (Math.cbrt(chiSquare / degrees) - (1 - variance)) / Math.sqrt(variance);
+    }
+
+    private static long[] binCounts(int[] gaps, int[] bounds, int boundsNumber) {
+        long[] counts = new long[boundsNumber];
+        for (int gap : gaps) {
+            int bin = 0;
+            while (gap > bounds[bin]) {
+                bin++;
+            }
+            counts[bin]++;
+        }
+        return counts;
+    }
+}
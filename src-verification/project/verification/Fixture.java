@@ -0,0 +1,120 @@
+package project.verification;
+
+import project.parameters.Configuration;
+import project.parameters.IncorrectData;
+import project.parameters.MissingParameters;
+import project.simulation.universe.Board;
+import project.simulation.universe.UnevenRows;
+import project.simulation.universe.UnknownCharacterOnBoard;
+
+import java.io.FileNotFoundException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Przypadek sprawdzający: nazwa, treść pliku z parametrami i treść pliku z planszą.
+ * <p>Wspólny dla programów sprawdzających z katalogu źródeł {@code src-verification}. Parametry są podawane jako
+ * mapa nazw parametrów na wartości, zwykle {@link #defaultParameters()} ze zmienionymi wartościami. Błąd
+ * w parametrach lub planszy przypadku jest błędem programu sprawdzającego, więc jest zgłaszany jako
+ * {@link IllegalStateException} z nazwą przypadku.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class Fixture {
+    private final String name;
+    private final String parameters;
+    private final String board;
+    private final int roundsNumber;
+
+    /**
+     * Tworzy przypadek bez planszy, dla programów, które korzystają tylko z konfiguracji.
+     */
+    public Fixture(String name, Map<String, Object> parameters) {
+        this(name, parameters, null);
+    }
+
+    public Fixture(String name, Map<String, Object> parameters, String board) {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            text.append(parameter.getKey()).append(' ').append(parameter.getValue()).append('\n');
+        }
+        this.name = name;
+        this.parameters = text.toString();
+        this.board = board;
+        this.roundsNumber = (int) parameters.get("ile_tur");
+    }
+
+    public String name() {
+        return this.name;
+    }
+
+    public int roundsNumber() {
+        return this.roundsNumber;
+    }
+
+    public Configuration configuration() {
+        return configuration("");
+    }
+
+    /**
+     * Konfiguracja przypadku z dopisanymi parametrami {@code extraParameters} (w formacie pliku z parametrami).
+     */
+    public Configuration configuration(String extraParameters) {
+        Configuration configuration = new Configuration(this.parameters + extraParameters);
+        try {
+            configuration.parseData();
+        }
+        catch (FileNotFoundException | IncorrectData | MissingParameters e) {
+            throw new IllegalStateException(this.name + ": " + e.getMessage(), e);
+        }
+        return configuration;
+    }
+
+    public Board board(Configuration configuration) {
+        try {
+            return Board.createBoard(this.board, configuration);
+        }
+        catch (UnknownCharacterOnBoard | UnevenRows e) {
+            throw new IllegalStateException(this.name + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parametry z rozsądnymi wartościami, przy których niewielka populacja przeżywa kilkadziesiąt tur. Zwracana mapa
+     * zachowuje kolejność parametrów i może być zmieniana.
+     */
+    public static Map<String, Object> defaultParameters() {
+        Map<String, Object> parameters = new LinkedHashMap<>();
+        parameters.put("ile_tur", 60);
+        parameters.put("spis_instr", "lpijw");
+        parameters.put("ile_rośnie_jedzenie", 6);
+        parameters.put("pocz_ile_robów", 20);
+        parameters.put("pocz_progr", "wpijlijwij");
+        parameters.put("pocz_energia", 50);
+        parameters.put("ile_daje_jedzenie", 10);
+        parameters.put("koszt_tury", 1);
+        parameters.put("pr_powielenia", 0.2);
+        parameters.put("ułamek_energii_rodzica", 0.4);
+        parameters.put("limit_powielania", 30);
+        parameters.put("pr_usunięcia_instr", 0.2);
+        parameters.put("pr_dodania_instr", 0.2);
+        parameters.put("pr_zmiany_instr", 0.7);
+        parameters.put("co_ile_wypisz", 60);
+        return parameters;
+    }
+
+    /**
+     * Tworzy treść pliku z planszą, na której jedzenie rośnie na każdym polu z prawdopodobieństwem {@code density}.
+     */
+    public static String board(Random random, int sizeX, int sizeY, double density) {
+        StringBuilder board = new StringBuilder();
+        for (int y = 0; y < sizeY; y++) {
+            for (int x = 0; x < sizeX; x++) {
+                board.append(random.nextDouble() < density ? 'x' : ' ');
+            }
+            board.append('\n');
+        }
+        return board.toString();
+    }
+}
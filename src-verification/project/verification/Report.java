@@ -0,0 +1,70 @@
+package project.verification;
+
+/**
+ * Wypisuje wyniki programu sprawdzającego w tabeli i obsługuje wspólne argumenty programów sprawdzających.
+ * <p>Każdy program sprawdzający przyjmuje opcjonalnie liczbę (przypadków, prób lub tur) i ziarno, wypisuje użyte
+ * ziarno, aby przebieg dało się powtórzyć, i kończy się kodem 1, jeśli sprawdzenie nie przeszło.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class Report {
+    /**
+     * Sprawdzenie uruchamiane przez {@link #run}.
+     */
+    @FunctionalInterface
+    public interface Verification {
+        /**
+         * @return prawda, wtedy i tylko wtedy, gdy sprawdzenie przeszło
+         */
+        boolean verify(int count, long seed);
+    }
+
+    private final String rowFormat;
+
+    /**
+     * Tworzy tabelę i wypisuje jej nagłówek: nazwy kolumn {@code columns} w formacie {@code headerFormat}.
+     * Wiersze są wypisywane w formacie {@code rowFormat}.
+     */
+    public Report(String headerFormat, String rowFormat, String... columns) {
+        this.rowFormat = rowFormat;
+        System.out.println(String.format(headerFormat, (Object[]) columns));
+    }
+
+    public void row(Object... values) {
+        System.out.println(String.format(this.rowFormat, values));
+    }
+
+    /**
+     * Wynik sprawdzenia do ostatniej kolumny wiersza.
+     */
+    public static String result(boolean passed) {
+        return passed ? "ok" : "FAILED";
+    }
+
+    /**
+     * Odczytuje argumenty {@code [liczba [ziarno]]} programu sprawdzającego i uruchamia sprawdzenie. Bez liczby
+     * używana jest {@code defaultCount}, a bez ziarna bieżący czas. Jeśli argumenty są niepoprawne lub liczba jest
+     * mniejsza od {@code minCount}, wypisuje sposób użycia {@code usage}.
+     */
+    public static void run(String[] args, String usage, int defaultCount, int minCount, Verification verification) {
+        int count = defaultCount;
+        long seed = System.nanoTime();
+        try {
+            if (args.length > 0)
+                count = Integer.parseInt(args[0]);
+            if (args.length > 1)
+                seed = Long.parseLong(args[1]);
+        }
+        catch (NumberFormatException e) {
+            count = minCount - 1;
+        }
+        if (args.length > 2 || count < minCount) {
+            System.out.println("Usage: " + usage);
+            return;
+        }
+
+        System.out.println("Seed: " + seed);
+        if (!verification.verify(count, seed))
+            System.exit(1);
+    }
+}
@@ -0,0 +1,132 @@
+package project;
+
+import project.parameters.Configuration;
+import project.simulation.universe.Board;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Binarny obraz przetworzonych parametrów i planszy, przechowywany w katalogu pamięci podręcznej.
+ * <p>Nazwą obrazu jest skrót SHA-256 wersji formatu oraz zawartości pliku z parametrami i pliku z planszą, więc
+ * zmiana któregokolwiek z plików (lub formatu) powoduje użycie innego obrazu. Obraz jest odczytywany z pliku
+ * odwzorowanego w pamięci, bez ponownego sprawdzania danych, które zostały sprawdzone przy jego tworzeniu.</p>
+ * <p>Format obrazu: liczba {@code ROBI}, wersja formatu, parametry ({@link Configuration#writeImage}), plansza
+ * ({@link Board#writeImage}).</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class InputImage {
+    private static final int MAGIC = 0x524f4249;
+    private static final int VERSION = 1;
+
+    private final Configuration configuration;
+    private final Board board;
+
+    private InputImage(Configuration configuration, Board board) {
+        this.configuration = configuration;
+        this.board = board;
+    }
+
+    public Configuration configuration() {
+        return this.configuration;
+    }
+
+    public Board board() {
+        return this.board;
+    }
+
+    /**
+     * Zwraca ścieżkę obrazu plików {@code parametersFile} i {@code boardFile} w katalogu {@code directory}.
+     *
+     * @throws IOException błąd odczytu plików
+     */
+    public static Path locate(Path directory, File parametersFile, File boardFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        }
+        catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(VERSION).array());
+        update(digest, parametersFile.toPath());
+        update(digest, boardFile.toPath());
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest.digest()) {
+            name.append(String.format("%02x", b));
+        }
+        return directory.resolve(name.append(".img").toString());
+    }
+
+    /**
+     * Dodaje do skrótu długość i zawartość pliku, aby granica między plikami była jednoznaczna.
+     */
+    private static void update(MessageDigest digest, Path file) throws IOException {
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(Files.size(file)).array());
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+        }
+    }
+
+    /**
+     * Odczytuje obraz z pliku {@code image}.
+     *
+     * @return odczytany obraz lub {@code null}, jeśli obrazu nie ma albo jest niepoprawny lub w innej wersji
+     */
+    public static InputImage load(Path image) {
+        if (!Files.isRegularFile(image))
+            return null;
+        try (FileChannel channel = FileChannel.open(image, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION)
+                return null;
+            Configuration configuration = Configuration.readImage(buffer);
+            Board board = Board.readImage(buffer, configuration);
+            return buffer.hasRemaining() ? null : new InputImage(configuration, board);
+        }
+        catch (IOException | RuntimeException e) {
+            // Uszkodzony obraz jest traktowany jak brak obrazu i zostanie zapisany ponownie.
+            return null;
+        }
+    }
+
+    /**
+     * Zapisuje obraz parametrów {@code configuration} i planszy {@code board} w stanie początkowym do pliku
+     * {@code image}. Plik jest najpierw zapisywany pod inną nazwą, więc inne procesy nie odczytają niepełnego obrazu.
+     *
+     * @throws IOException błąd zapisu
+     */
+    public static void store(Path image, Configuration configuration, Board board) throws IOException {
+        Files.createDirectories(image.getParent());
+        Path temporary = Files.createTempFile(image.getParent(), image.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                configuration.writeImage(out);
+                board.writeImage(out);
+            }
+            Files.move(temporary, image, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -4,16 +4,32 @@ import project.parameters.MissingParameters;
 import project.parameters.IncorrectData;
 import project.parameters.Configuration;
 import project.simulation.ActualSimulation;
+import project.simulation.ConcurrentSimulation;
+import project.simulation.DistributedSimulation;
+import project.simulation.IslandSimulation;
+import project.simulation.export.StatisticsExporter;
+import project.simulation.trace.HeatmapWriter;
+import project.simulation.trace.TraceWriter;
 import project.simulation.universe.UnknownCharacterOnBoard;
 import project.simulation.universe.UnevenRows;
 import project.simulation.universe.Board;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Zadanie 1: Ewolucja, czyli niech programy piszą się same.
  * <p>Tworzy nową symulowaną rzeczywistość na podstawie konfiguracji i planszy. Przeprowadza symulację. </p>
+ * <p>Po plikach z parametrami i planszą można podać opcje: {@code --trace plik}, aby zapisać ślad symulacji
+ * ({@link TraceWriter}), {@code --stats plik}, aby wyeksportować statystyki tur ({@link StatisticsExporter}), oraz
+ * {@code --heatmap plik}, aby zapisywać mapy gęstości robów i jedzenia ({@link HeatmapWriter}).
+ * Opcje dotyczą symulacji w jednym procesie i bez wysp.</p>
+ * <p>Opcja {@code --cache katalog} przechowuje w katalogu obrazy przetworzonych parametrów i planszy
+ * ({@link InputImage}), dzięki którym kolejne uruchomienia z tymi samymi plikami nie przetwarzają ich ponownie.</p>
  *
  * @author Katarzyna Mielnik
  */
@@ -28,26 +44,112 @@ public class Simulation {
             return;
         }
 
+        String traceFile = null;
+        String statisticsFile = null;
+        String heatmapFile = null;
+        String cacheDirectory = null;
+        for (int i = 2; i < args.length; i++) {
+            if (args[i].equals("--trace") && i + 1 < args.length)
+                traceFile = args[++i];
+            else if (args[i].equals("--stats") && i + 1 < args.length)
+                statisticsFile = args[++i];
+            else if (args[i].equals("--heatmap") && i + 1 < args.length)
+                heatmapFile = args[++i];
+            else if (args[i].equals("--cache") && i + 1 < args.length)
+                cacheDirectory = args[++i];
+            else {
+                System.out.println("Unknown option: " + args[i]);
+                return;
+            }
+        }
+
         File parametersFile = new File(args[0]);
-        try {
-            configuration = new Configuration(parametersFile);
-            configuration.parseData();
+        File boardFile = new File(args[1]);
+        Path image = null;
+        InputImage cached = null;
+        if (cacheDirectory != null) {
+            try {
+                image = InputImage.locate(Paths.get(cacheDirectory), parametersFile, boardFile);
+                cached = InputImage.load(image);
+            }
+            catch (IOException e) {
+                // Błąd odczytu plików zgłosi zwykłe wczytywanie parametrów i planszy.
+            }
         }
-        catch (FileNotFoundException | IncorrectData | MissingParameters e) {
-            System.out.println(e.getMessage());
+
+        if (cached != null) {
+            configuration = cached.configuration();
+            board = cached.board();
+        }
+        else {
+            try {
+                configuration = new Configuration(parametersFile);
+                configuration.parseData();
+            }
+            catch (FileNotFoundException | IncorrectData | MissingParameters e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+
+            try {
+                board = Board.createBoard(boardFile, configuration);
+            }
+            catch (UnknownCharacterOnBoard | UnevenRows e) {
+                System.out.println(e.getMessage());
+                return;
+            }
+
+            if (image != null) {
+                try {
+                    InputImage.store(image, configuration, board);
+                }
+                catch (IOException e) {
+                    System.out.println("Cannot write input cache: " + e.getMessage());
+                }
+            }
+        }
+
+        if (configuration.processesNumber() > 1) {
+            DistributedSimulation s = new DistributedSimulation(configuration, board, parametersFile, boardFile);
+            try {
+                s.runSimulation();
+            }
+            catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
             return;
         }
 
-        File boardFile = new File(args[1]);
-        try {
-            board = Board.createBoard(boardFile, configuration);
+        if (configuration.islandsNumber() > 1) {
+            IslandSimulation s = new IslandSimulation(configuration, board);
+            s.runSimulation();
+            return;
         }
-        catch (UnknownCharacterOnBoard | UnevenRows e) {
-            System.out.println(e.getMessage());
+
+        if (configuration.concurrentThreadsNumber() > 0) {
+            ConcurrentSimulation s = new ConcurrentSimulation(configuration, board);
+            s.runSimulation();
             return;
         }
 
         ActualSimulation s = new ActualSimulation(configuration, board);
-        s.runSimulation();
+        try (TraceWriter trace = traceFile == null ? null :
+                new TraceWriter(Paths.get(traceFile), board, configuration.keyframeInterval());
+             StatisticsExporter exporter = statisticsFile == null ? null :
+                     new StatisticsExporter(Paths.get(statisticsFile), configuration.energyHistogramBinWidth(),
+                             configuration.energyHistogramBins());
+             HeatmapWriter heatmaps = heatmapFile == null ? null : new HeatmapWriter(Paths.get(heatmapFile), board,
+                     configuration.heatmapScale(), configuration.heatmapFrequence())) {
+            if (trace != null)
+                s.recordTrace(trace);
+            if (exporter != null)
+                s.exportStatistics(exporter);
+            if (heatmaps != null)
+                s.recordHeatmaps(heatmaps);
+            s.runSimulation();
+        }
+        catch (IOException | UncheckedIOException e) {
+            System.out.println(e.getMessage());
+        }
     }
 }
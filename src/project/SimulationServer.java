@@ -0,0 +1,207 @@
+package project;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import project.parameters.Configuration;
+import project.parameters.IncorrectData;
+import project.parameters.MissingParameters;
+import project.simulation.SimulationEngine;
+import project.simulation.universe.Board;
+import project.simulation.universe.UnevenRows;
+import project.simulation.universe.UnknownCharacterOnBoard;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Serwer przeprowadzający symulacje zlecane przez lokalnych klientów przez HTTP.
+ * <p>Zadanie wysyła się żądaniem {@code POST /symulacja}, którego treścią są parametry w postaci pliku z parametrami,
+ * pusta linia i plansza w postaci pliku z planszą. Odpowiedź jest przesyłana w trakcie symulacji: statystyki kolejnych
+ * tur i stan symulacji w takiej postaci, jaką wypisuje {@link Simulation}. Parametry {@code ile_wysp}
+ * i {@code ile_procesów} są ignorowane.</p>
+ * <p>Połączenia są obsługiwane przez pulę wątków rosnącą wraz z liczbą klientów, a same symulacje przez pulę
+ * o stałej liczbie wątków, domyślnie równej liczbie procesorów. Maszyna wirtualna działa cały czas, więc kolejne
+ * zadania nie płacą za uruchomienie i rozgrzewanie kompilatora JIT.</p>
+ * <p>Argumenty: port (domyślnie {@code 8080}), liczba wątków symulacji.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class SimulationServer {
+    private static final int DEFAULT_PORT = 8080;
+
+    private final HttpServer server;
+    private final ExecutorService connections;
+    private final ExecutorService simulations;
+
+    public SimulationServer(int port, int simulationThreads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.connections = Executors.newCachedThreadPool();
+        this.simulations = Executors.newFixedThreadPool(simulationThreads);
+        this.server.setExecutor(this.connections);
+        this.server.createContext("/symulacja", this::handle);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SimulationServer server = new SimulationServer(port, threads);
+        server.start();
+        System.out.println("Serwer symulacji nasłuchuje na porcie " + server.port() + ".");
+    }
+
+    public void start() {
+        this.server.start();
+    }
+
+    public int port() {
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Zatrzymuje serwer, przerywając trwające symulacje.
+     */
+    public void stop() {
+        this.server.stop(0);
+        this.simulations.shutdownNow();
+        this.connections.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                respond(exchange, 405, "Zadanie należy wysłać żądaniem POST.");
+                return;
+            }
+
+            SimulationEngine engine;
+            Configuration configuration;
+            try {
+                String[] job = splitJob(exchange.getRequestBody());
+                configuration = new Configuration(job[0]);
+                configuration.parseData();
+                engine = new SimulationEngine(configuration, Board.createBoard(job[1], configuration));
+            }
+            catch (IncorrectData | MissingParameters e) {
+                respond(exchange, 400, e.getMessage());
+                return;
+            }
+            catch (UnknownCharacterOnBoard | UnevenRows e) {
+                respond(exchange, 400, "Niepoprawna plansza. " + e.getMessage());
+                return;
+            }
+            catch (RuntimeException e) {
+                respond(exchange, 400, "Niepoprawne zadanie.");
+                return;
+            }
+
+            // Długość odpowiedzi nie jest znana, więc jest ona przesyłana w częściach.
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8);
+            Future<?> job = this.simulations.submit(() -> {
+                runJob(configuration, engine, writer);
+                return null;
+            });
+            try {
+                job.get();
+            }
+            catch (InterruptedException e) {
+                job.cancel(true);
+                Thread.currentThread().interrupt();
+            }
+            catch (ExecutionException e) {
+                // Jeśli klient przerwał połączenie, symulacja jest po prostu porzucana; inne błędy są zgłaszane.
+                if (!(e.getCause() instanceof IOException)) {
+                    System.err.println("Symulacja zakończona błędem:");
+                    e.getCause().printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Przeprowadza symulację, przesyłając jej wyniki na bieżąco do {@code writer}.
+     */
+    private static void runJob(Configuration configuration, SimulationEngine engine, Writer writer)
+            throws IOException {
+        engine.addListener(batch -> {
+            try {
+                for (int i = 0; i < batch.size(); i++) {
+                    if (batch.robsNumber(i) > 0)
+                        writer.write(batch.format(i) + System.lineSeparator());
+                }
+                writer.flush();
+            }
+            catch (IOException e) {
+                throw new ClientDisconnected(e);
+            }
+        });
+
+        int rounds = configuration.roundsNumber();
+        int frequence = configuration.printingFrequence();
+        try {
+            while (engine.roundNumber() < rounds && !Thread.currentThread().isInterrupted()) {
+                // Symulacja jest prowadzona do najbliższego wypisania stanu.
+                int next = Math.min(rounds, (engine.roundNumber() / frequence + 1) * frequence);
+                engine.step(next - engine.roundNumber());
+                if (engine.isExtinct()) {
+                    writer.write("Tura " + engine.roundNumber() + ". Brak żyjących robów. Zakończenie symulacji."
+                            + System.lineSeparator());
+                    break;
+                }
+                writer.write(engine.describeState());
+                writer.flush();
+            }
+            writer.flush();
+        }
+        catch (ClientDisconnected e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Dzieli treść zadania na parametry i planszę, oddzielone pierwszą pustą linią.
+     */
+    private static String[] splitJob(InputStream body) throws IOException {
+        String text = new String(body.readAllBytes(), StandardCharsets.UTF_8).replace("\r\n", "\n");
+        int separator = text.indexOf("\n\n");
+        if (separator < 0)
+            throw new IllegalArgumentException();
+        return new String[]{text.substring(0, separator), text.substring(separator + 2)};
+    }
+
+    private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+        byte[] bytes = (message + System.lineSeparator()).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    /**
+     * Zgłaszany przez słuchacza tur, gdy nie udało się przesłać wyników klientowi.
+     */
+    private static class ClientDisconnected extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        ClientDisconnected(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package project.parameters;
 
 import project.simulation.rob.Instruction;
+import project.simulation.rob.PopulationSeeder;
 
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Scanner;
 
 /**
@@ -20,15 +26,41 @@ public class Configuration {
 
     private boolean parsedFile;
     private final File file;
+    /**
+     * Parametry podane bezpośrednio w postaci tekstu, {@code null} jeśli parametry są wczytywane z pliku.
+     */
+    private final String text;
     private final HashMap<String, Object> parameters;
 
 
     public Configuration(File file) {
         this.file = file;
+        this.text = null;
         this.parsedFile = false;
         this.parameters = new HashMap<>();
     }
 
+    /**
+     * Tworzy konfigurację z parametrów zapisanych w tekście {@code text} w takiej samej postaci jak w pliku
+     * z parametrami (jeden parametr w linii), np. w celu osadzenia symulacji w innym programie.
+     */
+    public Configuration(String text) {
+        this.file = null;
+        this.text = text;
+        this.parsedFile = false;
+        this.parameters = new HashMap<>();
+    }
+
+    /**
+     * Tworzy konfigurację z już sprawdzonych parametrów, odczytanych funkcją {@link #readImage}.
+     */
+    private Configuration(HashMap<String, Object> parameters) {
+        this.file = null;
+        this.text = null;
+        this.parameters = parameters;
+        this.parsedFile = true;
+    }
+
     /**
      * Sprawdza, czy plik z parametrami został przetworzony, a parametry zostały zapisane w konfiguracji.
      *
@@ -50,7 +82,7 @@ public class Configuration {
         if (this.parsedFile)
             return;
 
-        Scanner scanner = new Scanner(this.file);
+        Scanner scanner = this.file != null ? new Scanner(this.file) : new Scanner(this.text);
         int lineNumber = 0;
 
         while (scanner.hasNextLine()) {
@@ -71,9 +103,82 @@ public class Configuration {
         if (!allParametersRead())
             throw new MissingParameters();
 
+        Object placement = this.parameters.get("rozmieszczenie_robów");
+        if (placement != null && (int) placement >= PopulationSeeder.Placement.values().length)
+            throw new IncorrectData(lineNumber, "Nieznany sposób rozmieszczenia robów.");
+
         this.parsedFile = true;
     }
 
+    /**
+     * Zapisuje przetworzone parametry w postaci binarnej, którą odczytuje {@link #readImage}.
+     *
+     * @throws IllegalStateException parametry nie zostały przetworzone
+     */
+    @SuppressWarnings("unchecked")
+    public void writeImage(DataOutputStream out) throws IOException {
+        if (!this.parsedFile)
+            throw new IllegalStateException("Parametry nie zostały przetworzone.");
+        out.writeInt(this.parameters.size());
+        for (Map.Entry<String, Object> parameter : this.parameters.entrySet()) {
+            byte[] name = parameter.getKey().getBytes(StandardCharsets.UTF_8);
+            out.writeInt(name.length);
+            out.write(name);
+            Object value = parameter.getValue();
+            if (value instanceof Integer) {
+                out.writeByte(0);
+                out.writeInt((int) value);
+            }
+            else if (value instanceof Double) {
+                out.writeByte(1);
+                out.writeDouble((double) value);
+            }
+            else {
+                ArrayList<Instruction> instructions = (ArrayList<Instruction>) value;
+                out.writeByte(2);
+                out.writeInt(instructions.size());
+                for (Instruction instruction : instructions) {
+                    out.writeByte(instruction.ordinal());
+                }
+            }
+        }
+    }
+
+    /**
+     * Odczytuje parametry zapisane funkcją {@link #writeImage}. Parametry nie są ponownie sprawdzane.
+     *
+     * @throws IllegalArgumentException zapis jest niepoprawny
+     */
+    public static Configuration readImage(ByteBuffer buffer) {
+        Instruction[] instructions = Instruction.values();
+        HashMap<String, Object> parameters = new HashMap<>();
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] name = new byte[buffer.getInt()];
+            buffer.get(name);
+            Object value;
+            switch (buffer.get()) {
+                case 0:
+                    value = buffer.getInt();
+                    break;
+                case 1:
+                    value = buffer.getDouble();
+                    break;
+                case 2:
+                    ArrayList<Instruction> list = new ArrayList<>();
+                    for (int j = buffer.getInt(); j > 0; j--) {
+                        list.add(instructions[buffer.get()]);
+                    }
+                    value = list;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Nieznany typ parametru.");
+            }
+            parameters.put(new String(name, StandardCharsets.UTF_8), value);
+        }
+        return new Configuration(parameters);
+    }
+
     /**
      * Sprawdza, czy wszystkie parametry potrzebne do przeprowadzenia symulacji zostały wczytane do mapy {@code
      * parameters}.
@@ -277,4 +382,208 @@ public class Configuration {
         if (!this.parsedFile) return null;
         return (ArrayList<Instruction>) this.parameters.get("spis_instr");
     }
+
+    /**
+     * Liczba wysp, na których niezależnie przebiega symulacja. Domyślnie 1, czyli zwykła symulacja.
+     */
+    public int islandsNumber() {
+        return optionalInt("ile_wysp", 1);
+    }
+
+    /**
+     * Co ile tur roby migrują między wyspami. Wartość 0 oznacza brak migracji.
+     */
+    public int migrationFrequence() {
+        return optionalInt("co_ile_migracja", 0);
+    }
+
+    /**
+     * Ułamek robów każdej wyspy, który przenosi się na sąsiednią wyspę podczas migracji.
+     */
+    public double migrationPart() {
+        return optionalDouble("ułamek_migracji", 0);
+    }
+
+    /**
+     * Liczba procesów, między które dzielona jest plansza. Domyślnie 1, czyli symulacja w jednym procesie.
+     */
+    public int processesNumber() {
+        return optionalInt("ile_procesów", 1);
+    }
+
+    /**
+     * Liczba porcji danych (statystyk tury lub stanu symulacji), które mogą czekać na wypisanie, gdy są wypisywane
+     * w osobnym wątku równolegle z symulacją kolejnych tur. Wartość 0 (domyślna) oznacza wypisywanie danych w wątku
+     * symulacji zaraz po zakończeniu tury.
+     */
+    public int outputBufferSize() {
+        return optionalInt("bufor_wypisywania", 0);
+    }
+
+    /**
+     * Sprawdza, czy należy zapisywać rodowód robów. Domyślnie nie.
+     */
+    public boolean tracksLineage() {
+        return optionalInt("rodowód", 0) > 0;
+    }
+
+    /**
+     * Co ile tur z rodowodu usuwane są gałęzie, które wymarły. Wartość 0 (domyślna) oznacza brak przycinania.
+     */
+    public int lineagePruningFrequence() {
+        return optionalInt("co_ile_przycinanie_rodowodu", 0);
+    }
+
+    /**
+     * Liczba najczęstszych programów wypisywanych razem ze stanem symulacji. Wartość 0 (domyślna) oznacza brak
+     * raportu programów.
+     */
+    public int reportedProgramsNumber() {
+        return optionalInt("raport_programów", 0);
+    }
+
+    /**
+     * Dopuszczalny błąd względny raportu programów. Domyślnie 0.01.
+     */
+    public double programReportError() {
+        return optionalDouble("błąd_raportu_programów", 0.01);
+    }
+
+    /**
+     * Liczba robów losowanych w każdej turze do przybliżonych statystyk populacji. Wartość 0 (domyślna) oznacza
+     * dokładne statystyki w każdej turze.
+     */
+    public int statisticsSampleSize() {
+        return optionalInt("próbka_statystyk", 0);
+    }
+
+    /**
+     * Co ile tur statystyki są liczone dokładnie, gdy włączone są statystyki przybliżone. Domyślnie 10.
+     */
+    public int exactStatisticsFrequence() {
+        return optionalInt("co_ile_dokładne_statystyki", 10);
+    }
+
+    /**
+     * Co ile tur w pliku śladu symulacji zapisywany jest pełny stan symulacji. Domyślnie 100.
+     */
+    public int keyframeInterval() {
+        return optionalInt("co_ile_klatka_kluczowa", 100);
+    }
+
+    /**
+     * Szerokość przedziału histogramu energii w eksporcie statystyk. Wartość 0 (domyślna) oznacza brak histogramu.
+     */
+    public int energyHistogramBinWidth() {
+        return optionalInt("kubełek_histogramu_energii", 0);
+    }
+
+    /**
+     * Liczba przedziałów histogramu energii w eksporcie statystyk. Domyślnie 32.
+     */
+    public int energyHistogramBins() {
+        return optionalInt("przedziały_histogramu_energii", 32);
+    }
+
+    /**
+     * Liczba tur w każdym z dwóch porównywanych okien wykrywania stanu równowagi. Wartość 0 (domyślna) oznacza
+     * brak wykrywania.
+     */
+    public int steadyStateWindow() {
+        return optionalInt("okno_równowagi", 0);
+    }
+
+    /**
+     * Dopuszczalna względna zmiana średniej i odchylenia standardowego między oknami w stanie równowagi.
+     * Domyślnie 0.05.
+     */
+    public double steadyStateThreshold() {
+        return optionalDouble("próg_równowagi", 0.05);
+    }
+
+    /**
+     * Co ile tur wypisywane są statystyki po osiągnięciu stanu równowagi. Wartość 0 (domyślna) oznacza zakończenie
+     * symulacji.
+     */
+    public int steadyStatePrintingFrequence() {
+        return optionalInt("po_równowadze", 0);
+    }
+
+    /**
+     * Co ile tur zapisywane są mapy gęstości robów i jedzenia. Domyślnie tak często jak stan symulacji.
+     */
+    public int heatmapFrequence() {
+        return optionalInt("co_ile_mapa_gęstości", printingFrequence());
+    }
+
+    /**
+     * Bok kwadratu pól planszy odpowiadającego jednemu punktowi mapy gęstości. Domyślnie 8.
+     */
+    public int heatmapScale() {
+        return optionalInt("skala_mapy_gęstości", 8);
+    }
+
+    /**
+     * Sprawdza, czy po symulacji należy wypisać, jaka część wykonanych instrukcji była martwa. Domyślnie nie.
+     */
+    public boolean reportsDeadInstructions() {
+        return optionalInt("raport_martwych_instrukcji", 0) > 0;
+    }
+
+    /**
+     * Liczba wątków niepowtarzalnej symulacji współbieżnej ({@link project.simulation.ConcurrentSimulation}).
+     * Wartość 0 (domyślna) oznacza zwykłą symulację.
+     */
+    public int concurrentThreadsNumber() {
+        return optionalInt("wątki_współbieżne", 0);
+    }
+
+    /**
+     * Sposób rozmieszczenia robów początkowej populacji ({@link PopulationSeeder.Placement}): 0 (domyślnie) oznacza
+     * rozmieszczenie jednostajne, 1 w skupiskach, 2 przy jedzeniu.
+     */
+    public PopulationSeeder.Placement robsPlacement() {
+        return PopulationSeeder.Placement.values()[Math.max(0, optionalInt("rozmieszczenie_robów", 0))];
+    }
+
+    /**
+     * Liczba skupisk robów przy rozmieszczeniu w skupiskach. Domyślnie 8.
+     */
+    public int clustersNumber() {
+        return Math.max(1, optionalInt("ile_skupisk", 8));
+    }
+
+    /**
+     * Odchylenie standardowe odległości robów od środka skupiska. Wartość 0 (domyślna) oznacza jedną ósmą krótszego
+     * boku planszy.
+     */
+    public int clusterSpread() {
+        return Math.max(0, optionalInt("rozrzut_skupisk", 0));
+    }
+
+    /**
+     * Ziarno generatora liczb losowych symulacji lub -1 (domyślnie), jeśli przebieg symulacji ma być za każdym razem
+     * inny.
+     */
+    public long seed() {
+        return optionalInt("ziarno", -1);
+    }
+
+    /**
+     * Zwraca wartość opcjonalnego parametru typu {@code int} lub {@code defaultValue}, jeśli nie było go w pliku.
+     */
+    private int optionalInt(String parameter, int defaultValue) {
+        if (!this.parsedFile) return -1;
+        Object value = this.parameters.get(parameter);
+        return value == null ? defaultValue : (int) value;
+    }
+
+    /**
+     * Zwraca wartość opcjonalnego parametru typu {@code double} lub {@code defaultValue}, jeśli nie było go w pliku.
+     */
+    private double optionalDouble(String parameter, double defaultValue) {
+        if (!this.parsedFile) return -1;
+        Object value = this.parameters.get(parameter);
+        return value == null ? defaultValue : (double) value;
+    }
 }
@@ -24,6 +24,19 @@ public class CorrectParameters {
 
     private final String[] parametryString = {"pocz_progr", "spis_instr"};
 
+    /**
+     * Parametry, których brak w pliku nie jest błędem. Jeśli nie zostaną wczytane, przyjmują wartości domyślne.
+     */
+    private final String[] parametryIntOpcjonalne = {"ile_wysp", "co_ile_migracja", "ile_procesów",
+            "bufor_wypisywania", "rodowód", "co_ile_przycinanie_rodowodu",
+            "raport_programów", "próbka_statystyk", "co_ile_dokładne_statystyki",
+            "co_ile_klatka_kluczowa", "kubełek_histogramu_energii", "przedziały_histogramu_energii",
+            "okno_równowagi", "po_równowadze", "co_ile_mapa_gęstości", "skala_mapy_gęstości",
+            "raport_martwych_instrukcji",
+            "wątki_współbieżne", "rozmieszczenie_robów", "ile_skupisk", "rozrzut_skupisk", "ziarno"};
+
+    private final String[] parametryDoubleOpcjonalne = {"ułamek_migracji", "błąd_raportu_programów", "próg_równowagi"};
+
     /**
      * Znaki reprezentujące wszystkie dopuszczalne instrukcje.
      */
@@ -38,6 +51,9 @@ public class CorrectParameters {
         for (int i = 0; i < this.parametryInt.length; i++) {
             if (this.parametryInt[i].equals(x)) return true;
         }
+        for (int i = 0; i < this.parametryIntOpcjonalne.length; i++) {
+            if (this.parametryIntOpcjonalne[i].equals(x)) return true;
+        }
         return false;
     }
 
@@ -50,6 +66,9 @@ public class CorrectParameters {
         for (int i = 0; i < this.parametryDouble.length; i++) {
             if (this.parametryDouble[i].equals(x)) return true;
         }
+        for (int i = 0; i < this.parametryDoubleOpcjonalne.length; i++) {
+            if (this.parametryDoubleOpcjonalne[i].equals(x)) return true;
+        }
         return false;
     }
 
@@ -1,12 +1,24 @@
 package project.simulation;
 
 import project.parameters.Configuration;
+import project.simulation.export.StatisticsExporter;
+import project.simulation.rob.LineageRecorder;
+import project.simulation.rob.PopulationSeeder;
 import project.simulation.rob.Rob;
+import project.simulation.trace.HeatmapWriter;
+import project.simulation.trace.TraceWriter;
 import project.simulation.universe.Board;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.stream.Collectors;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.function.Predicate;
 
 /**
  * Rzeczywistość, w której odbywa się symulacja.
@@ -18,54 +30,458 @@ public class ActualSimulation {
     private final Board board;
     private final Configuration configuration;
     private final Data statistics;
+    private final LineageRecorder lineage;
+    private final ProgramStatistics programStatistics;
+    /**
+     * Wspólny generator liczb losowych robów tej rzeczywistości.
+     */
+    private final Random random;
+    /**
+     * Lista potomków z ostatniej tury i lista ich rodziców, w tej samej kolejności, używane ponownie w każdej turze.
+     */
+    private final ArrayList<Rob> offspring;
+    private final ArrayList<Rob> parents;
+    /**
+     * Plik śladu, do którego zapisywana jest każda tura, lub {@code null}.
+     */
+    private TraceWriter trace;
+    /**
+     * Plik, do którego eksportowane są statystyki każdej tury, lub {@code null}.
+     */
+    private StatisticsExporter exporter;
+    /**
+     * Plik, do którego zapisywane są mapy gęstości, lub {@code null}.
+     */
+    private HeatmapWriter heatmaps;
+    /**
+     * Widok stanu symulacji dla wątków monitorujących lub {@code null}.
+     */
+    private LiveView liveView;
+    /**
+     * Liczba instrukcji wykonanych przez roby od początku symulacji oraz liczba martwych instrukcji wśród nich.
+     */
+    private long executedInstructions;
+    private long deadInstructions;
+    /**
+     * Rob, którego tura właśnie trwa, i jego pozycja na liście robów.
+     */
+    private Rob activeRob;
+    private int activeRobPosition;
+    private int roundNumber;
 
     public ActualSimulation(Configuration configuration, Board board) {
+        this(configuration, board, configuration.initialRobsNumber(), seededRandom(configuration, 0));
+    }
+
+    /**
+     * Tworzy generator dla rzeczywistości o numerze {@code index}, jeśli jedna symulacja składa się z kilku
+     * rzeczywistości (wysp lub procesów roboczych). Przy ustalonym ziarnie ({@link Configuration#seed()}) każda
+     * rzeczywistość dostaje inny, ale powtarzalny generator, więc ich populacje i przebiegi się różnią.
+     */
+    static Random seededRandom(Configuration configuration, int index) {
+        if (configuration.seed() < 0)
+            return new Random();
+        return new Random(new SplittableRandom(configuration.seed() + index).nextLong());
+    }
+
+    /**
+     * Tworzy generator próbek przybliżonych statystyk, niezależny od generatora robów. Przy ustalonym ziarnie jest
+     * z niego wyprowadzony, więc także próbki są powtarzalne.
+     */
+    private static SplittableRandom samplingRandom(Configuration configuration) {
+        if (configuration.seed() < 0)
+            return new SplittableRandom();
+        return new SplittableRandom(configuration.seed()).split();
+    }
+
+    /**
+     * Tworzy rzeczywistość, w której roby losują swoje zachowanie za pomocą generatora {@code random}. Przebieg
+     * symulacji zależy wtedy tylko od konfiguracji, planszy i ziarna generatora.
+     */
+    ActualSimulation(Configuration configuration, Board board, int robsNumber, Random random) {
         this.configuration = configuration;
         this.board = board;
-        this.robs = new ArrayList<>();
-        for (int i = 0; i < configuration.initialRobsNumber(); i++) {
-            this.robs.add(new Rob(configuration, board));
+        this.random = random;
+        this.robs = new PopulationSeeder(configuration, board).seed(robsNumber, random.nextLong(), random);
+        this.offspring = new ArrayList<>();
+        this.parents = new ArrayList<>();
+        StatisticsSampler sampler = configuration.statisticsSampleSize() > 0 ? new StatisticsSampler(
+                configuration.statisticsSampleSize(), configuration.exactStatisticsFrequence(),
+                samplingRandom(configuration)) : null;
+        this.statistics = new Data(this.robs, board, sampler);
+        this.lineage = configuration.tracksLineage() ? new LineageRecorder() : null;
+        if (this.lineage != null) {
+            for (Rob rob : this.robs) {
+                rob.trackLineage(this.lineage);
+            }
         }
-        this.statistics = new Data(this.robs, board);
+        this.programStatistics = configuration.reportedProgramsNumber() > 0 ?
+                new ProgramStatistics(configuration.reportedProgramsNumber(), configuration.programReportError()) : null;
+        this.roundNumber = 0;
     }
 
     /**
      * Przeprowadza całą symulację określoną liczbę razy, lub do momentu wyginęcia wszystkich robów.
+     * <p>Jeśli włączone jest wykrywanie stanu równowagi ({@link SteadyStateDetector}), po jego osiągnięciu symulacja
+     * kończy się albo dalej wypisuje statystyki tylko co {@code po_równowadze} tur.</p>
+     * <p>Na koniec zamykany jest rejestr rodowodu ({@link #lineage()}).</p>
      */
     public void runSimulation() {
-        for (int i = 1; i <= this.configuration.roundsNumber(); i++) {
-            this.board.nextRound();
-            Collections.shuffle(this.robs);
-            ArrayList<Rob> offspring = new ArrayList<>();
-            for (Rob rob : this.robs) {
-                rob.newRound(this.board);
-                if (rob.willMultiply()) {
-                    Rob child = rob.multiply();
-                    offspring.add(child);
+        SteadyStateDetector steadyState = this.configuration.steadyStateWindow() > 0 ? new SteadyStateDetector(
+                this.configuration.steadyStateWindow(), this.configuration.steadyStateThreshold()) : null;
+        int sparseFrequence = this.configuration.steadyStatePrintingFrequence();
+        boolean sparse = false;
+        try (RoundOutput output = new RoundOutput(this.configuration.outputBufferSize())) {
+            for (int i = 1; i <= this.configuration.roundsNumber(); i++) {
+                boolean alive = simulateRound();
+                writeTrace();
+                writeHeatmaps();
+                if (!alive) {
+                    output.print("Tura " + i + ". Brak żyjących robów. Zakończenie symulacji.");
+                    break;
                 }
+                boolean printing = !sparse || i % sparseFrequence == 0;
+                if (printing || this.exporter != null) {
+                    RoundStatistics roundStatistics = collectStatistics(i);
+                    exportStatistics(roundStatistics);
+                    if (printing)
+                        output.print(() -> Data.printStatistics(roundStatistics));
+
+                    if (!sparse && steadyState != null && steadyState.add(roundStatistics)) {
+                        String message = "Tura " + i + ". Stan równowagi od tury " +
+                                steadyState.equilibriumStart() + ".";
+                        if (sparseFrequence == 0) {
+                            output.print(message + " Zakończenie symulacji.");
+                            printSimulationState(output);
+                            printDeadInstructions(output);
+                            return;
+                        }
+                        output.print(message);
+                        sparse = true;
+                    }
+                }
+
+                if (i % configuration.printingFrequence() == 0)
+                    printSimulationState(output);
+            }
+            // Jeśli statystyki nie zostały wypisane po ostatniej turze.
+            if (configuration.roundsNumber() % configuration.printingFrequence() != 0)
+                printSimulationState(output);
+            printDeadInstructions(output);
+        }
+        finally {
+            if (this.lineage != null)
+                this.lineage.close();
+        }
+    }
+
+    /**
+     * Wypisuje, jeśli jest włączony, raport martwych instrukcji z całej symulacji.
+     */
+    private void printDeadInstructions(RoundOutput output) {
+        if (this.configuration.reportsDeadInstructions())
+            output.print(String.format("Martwe instrukcje: %.2f%% wykonanych instrukcji.",
+                    100 * deadInstructionsFraction()));
+    }
+
+    /**
+     * Część instrukcji wykonanych od początku symulacji, które były martwe i zostały pominięte.
+     *
+     * @see Rob#deadInstructions()
+     */
+    double deadInstructionsFraction() {
+        return this.executedInstructions == 0 ? 0 : (double) this.deadInstructions / this.executedInstructions;
+    }
+
+    /**
+     * Zapisuje stan początkowy, a podczas {@link #runSimulation()} także każdą turę do pliku śladu {@code trace}.
+     * Plik śladu zamyka wywołujący.
+     *
+     * @throws UncheckedIOException błąd zapisu pliku śladu
+     */
+    public void recordTrace(TraceWriter trace) {
+        this.trace = trace;
+        writeTrace();
+    }
+
+    /**
+     * Podczas {@link #runSimulation()} eksportuje statystyki każdej tury do {@code exporter}. Plik eksportu zamyka
+     * wywołujący.
+     *
+     * @throws UncheckedIOException błąd zapisu eksportu
+     */
+    public void exportStatistics(StatisticsExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    private void exportStatistics(RoundStatistics statistics) {
+        if (this.exporter == null)
+            return;
+        try {
+            this.exporter.write(statistics, this.robs);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Podczas {@link #runSimulation()} zapisuje mapy gęstości robów i jedzenia do {@code heatmaps}. Plik map zamyka
+     * wywołujący.
+     *
+     * @throws UncheckedIOException błąd zapisu map
+     */
+    public void recordHeatmaps(HeatmapWriter heatmaps) {
+        this.heatmaps = heatmaps;
+    }
+
+    /**
+     * Tworzy widok stanu symulacji dla wątków monitorujących, aktualizowany po każdej turze, także podczas
+     * {@link #runSimulation()}. Metodę należy wywołać w wątku symulacji, przed rozpoczęciem symulacji lub między
+     * turami.
+     *
+     * @param histogramBinWidth szerokość przedziału histogramu energii, 0 oznacza brak histogramu
+     * @param histogramBins     liczba przedziałów histogramu energii
+     * @throws IllegalStateException widok został już utworzony
+     */
+    public LiveView startLiveView(int histogramBinWidth, int histogramBins) {
+        if (this.liveView != null)
+            throw new IllegalStateException("Widok stanu symulacji został już utworzony.");
+        this.liveView = new LiveView(this.board, histogramBinWidth, histogramBins);
+        this.liveView.publish(this.roundNumber, this.robs);
+        return this.liveView;
+    }
+
+    private void writeHeatmaps() {
+        if (this.heatmaps == null)
+            return;
+        try {
+            this.heatmaps.writeRound(this.roundNumber);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeTrace() {
+        if (this.trace == null)
+            return;
+        try {
+            this.trace.writeRound(this.roundNumber, this.robs);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Wypisuje stan symulacji oraz, jeśli jest włączony, raport najczęściej wykonywanych programów.
+     */
+    private void printSimulationState(RoundOutput output) {
+        output.print(PopulationSnapshot.of(this.robs)::print);
+        if (this.programStatistics != null) {
+            String report = this.programStatistics.report(this.roundNumber);
+            output.print(() -> System.out.print(report));
+        }
+    }
+
+    /**
+     * Przeprowadza jedną turę symulacji bez wypisywania danych.
+     *
+     * @return prawda, wtedy i tylko wtedy, gdy po turze pozostał co najmniej jeden żywy rob
+     */
+    boolean simulateRound() {
+        this.roundNumber++;
+        if (this.lineage != null)
+            this.lineage.startRound(this.roundNumber);
+        this.board.nextRound();
+        this.offspring.clear();
+        this.parents.clear();
+        Collections.shuffle(this.robs, this.random);
+        for (int i = 0; i < this.robs.size(); i++) {
+            Rob rob = this.robs.get(i);
+            this.activeRob = rob;
+            this.activeRobPosition = i;
+            rob.newRound(this.board);
+            this.executedInstructions += rob.executedInstructions();
+            this.deadInstructions += rob.deadInstructions();
+            if (this.programStatistics != null)
+                this.programStatistics.add(rob);
+            if (rob.willMultiply()) {
+                Rob child = rob.multiply();
+                this.board.addRob(child.getX(), child.getY());
+                this.offspring.add(child);
+                this.parents.add(rob);
             }
-            addNewRobs(offspring);
-            removeDeadRobs();
-            if (this.robs.size() == 0) {
-                System.out.println("Tura " + i + ". Brak żyjących robów. Zakończenie symulacji.");
-                break;
+        }
+        this.activeRob = null;
+        addNewRobs(this.offspring);
+        removeDeadRobs();
+        int pruningFrequence = this.configuration.lineagePruningFrequence();
+        if (this.lineage != null && pruningFrequence > 0 && this.roundNumber % pruningFrequence == 0)
+            pruneLineage();
+        if (this.liveView != null)
+            this.liveView.publish(this.roundNumber, this.robs);
+        return this.robs.size() > 0;
+    }
+
+    /**
+     * Zbiera statystyki populacji po turze {@code roundNumber}. Statystyki są zawsze dokładne w turach, po których
+     * wypisywany jest stan symulacji.
+     */
+    RoundStatistics collectStatistics(int roundNumber) {
+        boolean exact = roundNumber % this.configuration.printingFrequence() == 0 ||
+                roundNumber >= this.configuration.roundsNumber();
+        return this.statistics.collectStatistics(roundNumber, exact);
+    }
+
+    /**
+     * Usuwa z populacji {@code count} robów, które opuszczają tę rzeczywistość.
+     * Ponieważ kolejność robów jest losowana co turę, zabierane są roby z końca listy.
+     *
+     * @return roby opuszczające rzeczywistość
+     */
+    List<Rob> emigrate(int count) {
+        List<Rob> tail = this.robs.subList(this.robs.size() - Math.min(count, this.robs.size()), this.robs.size());
+        List<Rob> emigrants = new ArrayList<>(tail);
+        for (Rob rob : emigrants) {
+            this.board.removeRob(rob.getX(), rob.getY());
+        }
+        tail.clear();
+        return emigrants;
+    }
+
+    /**
+     * Usuwa z populacji roby spełniające warunek {@code condition}, które opuszczają tę rzeczywistość.
+     *
+     * @return roby opuszczające rzeczywistość
+     */
+    List<Rob> emigrate(Predicate<Rob> condition) {
+        List<Rob> emigrants = new ArrayList<>();
+        for (Rob rob : this.robs) {
+            if (condition.test(rob)) {
+                emigrants.add(rob);
+                this.board.removeRob(rob.getX(), rob.getY());
             }
-            this.statistics.printStatistics(i);
+        }
+        if (!emigrants.isEmpty())
+            this.robs.removeIf(condition);
+        return emigrants;
+    }
 
-            if (i % configuration.printingFrequence() == 0)
-                this.statistics.printSimulationState();
+    /**
+     * Dodaje do populacji roby przybyłe z innej rzeczywistości, przenosząc je na tutejszą planszę.
+     * Jeśli rodowód jest zapisywany, przybyłe roby są w nim zapisywane jako roby bez rodzica.
+     */
+    void immigrate(Collection<Rob> immigrants) {
+        for (Rob rob : immigrants) {
+            rob.relocate(this.board);
+            this.board.addRob(rob.getX(), rob.getY());
+            if (this.lineage != null)
+                rob.trackLineage(this.lineage);
+            this.robs.add(rob);
         }
-        // Jeśli statystyki nie zostały wypisane po ostatniej turze.
-        if (configuration.roundsNumber() % configuration.printingFrequence() != 0)
-            this.statistics.printSimulationState();
+    }
+
+    List<Rob> robs() {
+        return this.robs;
+    }
+
+    /**
+     * Zwraca roba, którego tura właśnie trwa, lub {@code null} poza turą robów. Pozwala obserwatorowi planszy
+     * ({@link Board#observeEatenSquares}) ustalić, który rob zjadł jedzenie.
+     */
+    Rob activeRob() {
+        return this.activeRob;
+    }
+
+    /**
+     * Pozycja roba {@link #activeRob()} na potasowanej liście robów bieżącej tury.
+     */
+    int activeRobPosition() {
+        return this.activeRobPosition;
+    }
+
+    /**
+     * Odbiera robom {@code eaters} energię z jedzenia, którego zjedzenie zostało unieważnione, i usuwa roby, którym
+     * zabrakło przez to energii. Każdy rob z listy traci energię z jednego zjedzonego pola. Jeśli rob powielił się
+     * w ostatniej turze, część tej energii, którą przekazałby dziecku ({@code ułamek_energii_rodzica}), jest
+     * odbierana dziecku.
+     */
+    void revokeFood(List<Rob> eaters) {
+        if (eaters.isEmpty())
+            return;
+        IdentityHashMap<Rob, Rob> children = new IdentityHashMap<>();
+        for (int i = 0; i < this.offspring.size(); i++) {
+            children.put(this.parents.get(i), this.offspring.get(i));
+        }
+        int energy = this.board.energyFromFood();
+        int childShare = (int) (energy * this.configuration.partOfParentEnergy());
+        for (int i = 0; i < eaters.size(); i++) {
+            Rob child = children.get(eaters.get(i));
+            if (child == null) {
+                eaters.get(i).revokeEnergy(energy);
+            }
+            else {
+                eaters.get(i).revokeEnergy(energy - childShare);
+                child.revokeEnergy(childShare);
+            }
+        }
+        removeDeadRobs();
+    }
+
+    /**
+     * Numer ostatniej przeprowadzonej tury.
+     */
+    int roundNumber() {
+        return this.roundNumber;
+    }
+
+    /**
+     * Generator liczb losowych, z którego korzystają roby tej rzeczywistości.
+     */
+    Random random() {
+        return this.random;
+    }
+
+    /**
+     * Zwraca rejestr rodowodu robów lub {@code null}, jeśli rodowód nie jest zapisywany.
+     */
+    public LineageRecorder lineage() {
+        return this.lineage;
+    }
+
+    private void pruneLineage() {
+        int[] livingIds = new int[this.robs.size()];
+        for (int i = 0; i < livingIds.length; i++) {
+            livingIds[i] = this.robs.get(i).getLineageId();
+        }
+        this.lineage.prune(livingIds);
     }
 
     private void addNewRobs(ArrayList<Rob> newRobs) {
-        this.robs.addAll(newRobs);
+        // Dodawanie pojedynczo, ponieważ addAll kopiuje dodawaną listę do nowej tablicy.
+        for (int i = 0; i < newRobs.size(); i++) {
+            this.robs.add(newRobs.get(i));
+        }
     }
 
+    /**
+     * Usuwa martwe roby, przesuwając żywe na początek listy z zachowaniem ich kolejności.
+     */
     private void removeDeadRobs() {
-        this.robs.removeAll(this.robs.stream().filter((rob) -> !rob.isAlive()).collect(Collectors.toList()));
+        int alive = 0;
+        for (int i = 0; i < this.robs.size(); i++) {
+            Rob rob = this.robs.get(i);
+            if (rob.isAlive())
+                this.robs.set(alive++, rob);
+            else
+                this.board.removeRob(rob.getX(), rob.getY());
+        }
+        // Usuwanie od końca, ponieważ subList tworzy nowy obiekt widoku listy.
+        while (this.robs.size() > alive) {
+            this.robs.remove(this.robs.size() - 1);
+        }
     }
 
 
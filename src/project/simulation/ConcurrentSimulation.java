@@ -0,0 +1,192 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.rob.PopulationSeeder;
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+import project.simulation.universe.ConcurrentBoard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Symulacja, w której wszystkie roby wykonują swoje tury jednocześnie w wątkach {@link ForkJoinPool}, na wspólnej
+ * planszy ({@link ConcurrentBoard}).
+ * <p>Przebieg symulacji nie jest powtarzalny: o tym, który rob zje jedzenie, o które konkuruje kilka robów,
+ * decyduje kolejność wykonania wątków. Wątki synchronizują się tylko na końcu każdej tury. Nowe roby są zbierane
+ * w osobnej liście każdego wątku i dołączane do populacji po zakończeniu tury.</p>
+ * <p>Statystyki i stan symulacji są wypisywane w takim samym formacie jak w zwykłej symulacji. Rodowód i raport
+ * programów nie są w tym trybie obsługiwane.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class ConcurrentSimulation {
+    /**
+     * Liczba robów, poniżej której zadanie tury nie jest dalej dzielone.
+     */
+    private static final int TASK_SIZE = 256;
+
+    private final Configuration configuration;
+    private final ConcurrentBoard board;
+    private final ArrayList<Rob> robs;
+    private final Data statistics;
+    private final ForkJoinPool pool;
+    /**
+     * Lista nowych robów każdego wątku oraz wszystkie takie listy, opróżniane po każdej turze.
+     */
+    private final ThreadLocal<ArrayList<Rob>> births;
+    private final Queue<ArrayList<Rob>> birthLists;
+
+    public ConcurrentSimulation(Configuration configuration, Board board) {
+        this.configuration = configuration;
+        this.board = new ConcurrentBoard(board);
+        this.robs = new PopulationSeeder(configuration, this.board).seed(configuration.initialRobsNumber(),
+                ThreadLocalRandom.current().nextLong(), new ThreadLocalRandomSource());
+        this.statistics = new Data(this.robs, this.board);
+        this.pool = new ForkJoinPool(configuration.concurrentThreadsNumber());
+        this.birthLists = new ConcurrentLinkedQueue<>();
+        this.births = ThreadLocal.withInitial(() -> {
+            ArrayList<Rob> list = new ArrayList<>();
+            this.birthLists.add(list);
+            return list;
+        });
+    }
+
+    /**
+     * Przeprowadza całą symulację określoną liczbę razy, lub do momentu wyginęcia wszystkich robów.
+     */
+    public void runSimulation() {
+        try (RoundOutput output = new RoundOutput(this.configuration.outputBufferSize())) {
+            for (int i = 1; i <= this.configuration.roundsNumber(); i++) {
+                if (!simulateRound()) {
+                    output.print("Tura " + i + ". Brak żyjących robów. Zakończenie symulacji.");
+                    break;
+                }
+                RoundStatistics roundStatistics = this.statistics.collectStatistics(i);
+                output.print(() -> Data.printStatistics(roundStatistics));
+
+                if (i % this.configuration.printingFrequence() == 0)
+                    output.print(PopulationSnapshot.of(this.robs)::print);
+            }
+            // Jeśli statystyki nie zostały wypisane po ostatniej turze.
+            if (this.configuration.roundsNumber() % this.configuration.printingFrequence() != 0)
+                output.print(PopulationSnapshot.of(this.robs)::print);
+        }
+        finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Przeprowadza jedną turę symulacji bez wypisywania danych.
+     *
+     * @return prawda, wtedy i tylko wtedy, gdy po turze pozostał co najmniej jeden żywy rob
+     */
+    boolean simulateRound() {
+        this.board.nextRound();
+        // Jak w zwykłej symulacji kolejność robów jest losowana co turę, aby żaden rob nie miał stale
+        // pierwszeństwa do jedzenia w zadaniach tury.
+        Collections.shuffle(this.robs, ThreadLocalRandom.current());
+        this.pool.invoke(new RoundTask(0, this.robs.size()));
+
+        int alive = 0;
+        for (int i = 0; i < this.robs.size(); i++) {
+            Rob rob = this.robs.get(i);
+            if (rob.isAlive())
+                this.robs.set(alive++, rob);
+            else
+                this.board.removeRob(rob.getX(), rob.getY());
+        }
+        this.robs.subList(alive, this.robs.size()).clear();
+        for (ArrayList<Rob> list : this.birthLists) {
+            for (int i = 0; i < list.size(); i++) {
+                this.robs.add(list.get(i));
+            }
+            list.clear();
+        }
+        return !this.robs.isEmpty();
+    }
+
+    RoundStatistics collectStatistics(int roundNumber) {
+        return this.statistics.collectStatistics(roundNumber);
+    }
+
+    List<Rob> robs() {
+        return this.robs;
+    }
+
+    Board board() {
+        return this.board;
+    }
+
+    /**
+     * Kończy działanie wątków symulacji. Symulacji nie można potem kontynuować.
+     */
+    void shutdown() {
+        this.pool.shutdown();
+    }
+
+    /**
+     * Tura robów o indeksach od {@code from} do {@code to} (bez {@code to}).
+     */
+    private class RoundTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+
+        RoundTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > TASK_SIZE) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(new RoundTask(this.from, middle), new RoundTask(middle, this.to));
+                return;
+            }
+            ArrayList<Rob> births = ConcurrentSimulation.this.births.get();
+            for (int i = this.from; i < this.to; i++) {
+                Rob rob = ConcurrentSimulation.this.robs.get(i);
+                rob.newRound(ConcurrentSimulation.this.board);
+                if (rob.willMultiply()) {
+                    Rob child = rob.multiply();
+                    ConcurrentSimulation.this.board.addRob(child.getX(), child.getY());
+                    births.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Generator liczb losowych wspólny dla robów, który w każdym wątku korzysta z {@link ThreadLocalRandom}, aby
+     * wątki nie rywalizowały o jedno ziarno.
+     */
+    private static final class ThreadLocalRandomSource extends Random {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected int next(int bits) {
+            return ThreadLocalRandom.current().nextInt() >>> (32 - bits);
+        }
+
+        @Override
+        public int nextInt(int bound) {
+            return ThreadLocalRandom.current().nextInt(bound);
+        }
+
+        @Override
+        public double nextDouble() {
+            return ThreadLocalRandom.current().nextDouble();
+        }
+    }
+}
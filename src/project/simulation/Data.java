@@ -3,7 +3,7 @@ package project.simulation;
 import project.simulation.rob.Rob;
 import project.simulation.universe.Board;
 
-import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Klasa stworzona w celu wypisywania danych o symulacji.
@@ -11,73 +11,103 @@ import java.util.ArrayList;
  * @author Katarzyna Mielnik
  */
 class Data {
-    private final ArrayList<Rob> robs;
+    private final List<Rob> robs;
     private final Board board;
+    /**
+     * Źródło przybliżonych statystyk lub {@code null}, jeśli statystyki są zawsze dokładne.
+     */
+    private final StatisticsSampler sampler;
 
-    public Data(ArrayList<Rob> robs, Board board) {
+    public Data(List<Rob> robs, Board board) {
+        this(robs, board, null);
+    }
+
+    Data(List<Rob> robs, Board board, StatisticsSampler sampler) {
         this.robs = robs;
         this.board = board;
+        this.sampler = sampler;
     }
 
-    void printSimulationState() {
+    static void printSimulationState(Iterable<Rob> robs) {
         System.out.println("* Stan symulacji.");
-        for (Rob rob : this.robs) {
+        for (Rob rob : robs) {
             System.out.println("* " + rob);
         }
     }
 
-    void printStatistics(int roundNumber) {
-        String food = "żyw: " + board.foodSquaresNumber();
-        System.out.println(roundNumber + ", " + food + ", " + "roby: " + this.robs.size() + ", " + programStatistics() +
-                ", " + energyStatistics() + ", " + ageStatistics());
+    static void printStatistics(RoundStatistics statistics) {
+        System.out.println(formatStatistics(statistics));
     }
 
-    String programStatistics() {
-        String statProgram = "prog: ";
-        if (this.robs.size() == 0)
-            return statProgram += "0/0/0";
-        double lenSum = 0, maxLen = 0, minLen = Double.MAX_VALUE;
+    /**
+     * Zbiera statystyki populacji oraz planszy po turze {@code roundNumber}.
+     */
+    RoundStatistics collectStatistics(int roundNumber) {
+        return collectStatistics(roundNumber, true);
+    }
+
+    /**
+     * Zbiera statystyki populacji oraz planszy po turze {@code roundNumber}. Jeśli włączone są statystyki
+     * przybliżone, a {@code exact} jest fałszem, statystyki mogą zostać oszacowane na podstawie próbki.
+     */
+    RoundStatistics collectStatistics(int roundNumber, boolean exact) {
+        if (this.sampler != null && !exact && !this.sampler.needsExact(roundNumber, this.robs.size()))
+            return this.sampler.sample(roundNumber, this.board.foodSquaresNumber(), this.robs);
+
+        RoundStatistics statistics = new RoundStatistics(roundNumber, this.board.foodSquaresNumber());
         for (Rob rob : this.robs) {
-            double programLength = rob.getProgramLength();
-            lenSum += programLength;
-            maxLen = Math.max(maxLen, programLength);
-            minLen = Math.min(minLen, programLength);
+            statistics.add(rob);
         }
-        double meanLength = lenSum / this.robs.size();
-        statProgram += minLen+ "/" + String.format("%.2f", meanLength) + "/" + maxLen;
+        if (this.sampler != null)
+            this.sampler.exactCollected(statistics);
+        return statistics;
+    }
+
+    /**
+     * Tworzy linię ze statystykami tury w postaci wypisywanej przez symulację.
+     */
+    static String formatStatistics(RoundStatistics statistics) {
+        String food = "żyw: " + statistics.foodSquaresNumber();
+        return statistics.roundNumber() + ", " + food + ", " + "roby: " + statistics.robsNumber() + ", " +
+                programStatistics(statistics) + ", " + energyStatistics(statistics) + ", " + ageStatistics(statistics);
+    }
+
+    static String programStatistics(RoundStatistics statistics) {
+        String statProgram = "prog: ";
+        if (statistics.robsNumber() == 0)
+            return statProgram += "0/0/0";
+        double minLen = statistics.minProgramLength(), maxLen = statistics.maxProgramLength();
+        statProgram += minLen + "/" + mean(statistics.meanProgramLength(), statistics.programLengthMargin()) + "/" +
+                maxLen;
         return statProgram;
     }
 
-    String energyStatistics() {
-        if (this.robs.size() == 0)
+    static String energyStatistics(RoundStatistics statistics) {
+        if (statistics.robsNumber() == 0)
             return "ener : 0/0/0";
 
         String statEnergy = "ener: ";
-        double enerSum = 0, maxEner = 0, minEner = Double.MAX_VALUE;
-        for (Rob rob : this.robs) {
-            double energy = rob.getEnergyLevel();
-            enerSum += energy;
-            maxEner = Math.max(maxEner, energy);
-            minEner = Math.min(minEner, energy);
-        }
-        double meanEnergyLevel = enerSum / this.robs.size();
-        statEnergy += minEner + "/" + String.format("%.2f", meanEnergyLevel) + "/" + maxEner;
+        double minEner = statistics.minEnergy(), maxEner = statistics.maxEnergy();
+        statEnergy += minEner + "/" + mean(statistics.meanEnergy(), statistics.energyMargin()) + "/" + maxEner;
         return statEnergy;
     }
 
-    String ageStatistics() {
+    static String ageStatistics(RoundStatistics statistics) {
         String statAge = "wiek: ";
-        if (this.robs.size() == 0)
+        if (statistics.robsNumber() == 0)
             return statAge += "0/0/0";
-        double ageSum = 0, maxAge = 0, minAge = Double.MAX_VALUE;
-        for (Rob rob : this.robs) {
-            double robAge = rob.getAge();
-            ageSum += robAge;
-            maxAge = Math.max(maxAge, robAge);
-            minAge = Math.min(minAge, robAge);
-        }
-        double meanAge = ageSum / this.robs.size();
-        statAge += minAge + "/" + String.format("%.2f", meanAge) + "/" + maxAge;
+        double minAge = statistics.minAge(), maxAge = statistics.maxAge();
+        statAge += minAge + "/" + mean(statistics.meanAge(), statistics.ageMargin()) + "/" + maxAge;
         return statAge;
     }
+
+    /**
+     * Zapis średniej, a dla średniej oszacowanej z próbki także promienia przedziału ufności.
+     */
+    private static String mean(double mean, double margin) {
+        String text = String.format("%.2f", mean);
+        if (margin > 0)
+            text += "±" + String.format("%.2f", margin);
+        return text;
+    }
 }
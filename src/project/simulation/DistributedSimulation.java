@@ -0,0 +1,395 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Koordynator symulacji rozproszonej między {@code ile_procesów} procesów roboczych na tej samej maszynie.
+ * <p>Plansza jest dzielona na poziome pasy wierszy, a każdy pas należy do jednego procesu roboczego
+ * ({@link DistributedWorker}), który symuluje roby znajdujące się w jego pasie. Każdy proces przechowuje pełną kopię
+ * planszy, dzięki czemu rob może w trakcie tury dowolnie daleko wyjść poza pas swojego procesu. Po każdej turze
+ * koordynator zbiera od procesów statystyki, zjedzone pola i roby, które zmieniły pas, a przed kolejną turą rozsyła
+ * zjedzone pola wszystkim procesom, a roby ich nowym właścicielom.</p>
+ * <p>Roby różnych procesów w tej samej turze nie widzą nawzajem zjedzonego jedzenia, dlatego w rzadkich
+ * przypadkach roby kilku procesów zjadają to samo jedzenie. Koordynator rozstrzyga takie pola przed zebraniem
+ * statystyk tury: jedzenie dostaje rob, który ma najwcześniejsze miejsce w kolejności tury swojego procesu
+ * ({@link DistributedWorker#priority}), a robom pozostałych procesów i ich dzieciom urodzonym w tej turze energia
+ * z tego jedzenia jest odbierana. Rozstrzygnięcie następuje dopiero po turze, więc nie cofa ruchów, zjedzenia
+ * innego jedzenia ani powielenia, do których rob doszedł dzięki tej energii.</p>
+ * <p>Kanały procesów roboczych są nieblokujące i obsługiwane przez jeden selektor, zarówno przy odczycie, jak
+ * i przy zapisie.</p>
+ *
+ * @author Katarzyna Mielnik
+ * @see Protocol
+ */
+public class DistributedSimulation {
+    /**
+     * Najdłuższy czas oczekiwania na połączenie wszystkich procesów roboczych.
+     */
+    private static final long STARTUP_TIMEOUT_MILLIS = 60_000;
+    /**
+     * Odstęp, co jaki w czasie oczekiwania na połączenia sprawdzane jest, czy procesy robocze nadal działają.
+     */
+    private static final long STARTUP_POLL_MILLIS = 100;
+
+    private final Configuration configuration;
+    private final Board board;
+    private final File parametersFile;
+    private final File boardFile;
+    private final int workersNumber;
+
+    private final SocketChannel[] workers;
+    private final SelectionKey[] keys;
+    private final List<List<Rob>> arriving;
+    // Roby odczytane przez koordynatora nie wykonują tur, generator jest im potrzebny tylko do utworzenia.
+    private final Random random = new Random();
+    private int[] eatenSquares = new int[0];
+
+    public DistributedSimulation(Configuration configuration, Board board, File parametersFile, File boardFile) {
+        this.configuration = configuration;
+        this.board = board;
+        this.parametersFile = parametersFile;
+        this.boardFile = boardFile;
+        this.workersNumber = configuration.processesNumber();
+        this.workers = new SocketChannel[this.workersNumber];
+        this.keys = new SelectionKey[this.workersNumber];
+        this.arriving = new ArrayList<>();
+        for (int i = 0; i < this.workersNumber; i++) {
+            this.arriving.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Pierwszy wiersz pasa planszy należącego do procesu {@code index}.
+     */
+    static int firstRow(int index, int workersNumber, int rowsNumber) {
+        return (int) ((long) index * rowsNumber / workersNumber);
+    }
+
+    /**
+     * Uruchamia procesy robocze i przeprowadza całą symulację określoną liczbę razy, lub do momentu wyginęcia
+     * wszystkich robów.
+     *
+     * @throws IOException błąd komunikacji z procesami roboczymi, proces roboczy zakończył działanie przed
+     *                     połączeniem się z koordynatorem lub procesy nie połączyły się w wyznaczonym czasie
+     */
+    public void runSimulation() throws IOException {
+        List<Process> processes = new ArrayList<>();
+        try (ServerSocketChannel server = ServerSocketChannel.open();
+             Selector selector = Selector.open()) {
+            server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+            for (int i = 0; i < this.workersNumber; i++) {
+                processes.add(startWorker(port, i));
+            }
+            server.configureBlocking(false);
+            SelectionKey acceptKey = server.register(selector, SelectionKey.OP_ACCEPT);
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(STARTUP_TIMEOUT_MILLIS);
+            for (int i = 0; i < this.workersNumber; i++) {
+                SocketChannel channel = acceptWorker(server, selector, processes, deadline);
+                ByteBuffer hello = Protocol.receive(channel);
+                hello.get();
+                int index = hello.getInt();
+                channel.configureBlocking(false);
+                this.keys[index] = channel.register(selector, 0, index);
+                this.workers[index] = channel;
+            }
+            acceptKey.cancel();
+
+            runSimulation(selector);
+
+            ByteBuffer[] stops = new ByteBuffer[this.workersNumber];
+            for (int i = 0; i < this.workersNumber; i++) {
+                stops[i] = Protocol.frame(Protocol.STOP, 0);
+            }
+            sendAll(selector, stops);
+        }
+        finally {
+            for (SocketChannel channel : this.workers) {
+                if (channel != null)
+                    channel.close();
+            }
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    private void runSimulation(Selector selector) throws IOException {
+        for (int i = 1; i <= this.configuration.roundsNumber(); i++) {
+            RoundStatistics statistics = simulateRound(selector, i);
+            if (statistics.robsNumber() == 0) {
+                System.out.println("Tura " + i + ". Brak żyjących robów. Zakończenie symulacji.");
+                break;
+            }
+            Data.printStatistics(statistics);
+
+            if (i % configuration.printingFrequence() == 0)
+                Data.printSimulationState(collectRobs(selector));
+        }
+        // Jeśli statystyki nie zostały wypisane po ostatniej turze.
+        if (configuration.roundsNumber() % configuration.printingFrequence() != 0)
+            Data.printSimulationState(collectRobs(selector));
+    }
+
+    /**
+     * Czeka na połączenie kolejnego procesu roboczego, sprawdzając w tym czasie, czy wszystkie procesy nadal
+     * działają.
+     *
+     * @param deadline chwila ({@link System#nanoTime()}), po której oczekiwanie jest przerywane
+     * @return kanał połączenia w trybie blokującym
+     * @throws IOException któryś proces roboczy zakończył działanie lub minął czas oczekiwania
+     */
+    private SocketChannel acceptWorker(ServerSocketChannel server, Selector selector, List<Process> processes,
+                                       long deadline) throws IOException {
+        while (true) {
+            SocketChannel channel = server.accept();
+            if (channel != null)
+                return channel;
+            for (int i = 0; i < processes.size(); i++) {
+                if (!processes.get(i).isAlive())
+                    throw new IOException("Proces roboczy " + i + " zakończył działanie z kodem "
+                            + processes.get(i).exitValue() + " przed połączeniem się z koordynatorem.");
+            }
+            if (System.nanoTime() - deadline >= 0)
+                throw new IOException("Procesy robocze nie połączyły się z koordynatorem w ciągu "
+                        + STARTUP_TIMEOUT_MILLIS / 1000 + " s.");
+            selector.select(STARTUP_POLL_MILLIS);
+            selector.selectedKeys().clear();
+        }
+    }
+
+    private Process startWorker(int port, int index) throws IOException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        return new ProcessBuilder(java, "-Dfile.encoding=" + System.getProperty("file.encoding"),
+                "-cp", System.getProperty("java.class.path"), DistributedWorker.class.getName(),
+                String.valueOf(port), String.valueOf(index), String.valueOf(this.workersNumber),
+                this.parametersFile.getAbsolutePath(), this.boardFile.getAbsolutePath())
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+    }
+
+    /**
+     * Przeprowadza turę na wszystkich procesach roboczych, rozstrzyga pola zjedzone przez roby kilku procesów
+     * i łączy statystyki procesów.
+     */
+    private RoundStatistics simulateRound(Selector selector, int roundNumber) throws IOException {
+        ByteBuffer[] frames = new ByteBuffer[this.workersNumber];
+        for (int i = 0; i < this.workersNumber; i++) {
+            List<Rob> robs = this.arriving.get(i);
+            frames[i] = Protocol.frame(Protocol.ROUND,
+                    Integer.BYTES + Protocol.size(this.eatenSquares) + Protocol.size(robs));
+            frames[i].putInt(roundNumber);
+            Protocol.putInts(frames[i], this.eatenSquares);
+            Protocol.putRobs(frames[i], robs);
+            robs.clear();
+        }
+        sendAll(selector, frames);
+
+        ByteBuffer[] responses = receiveAll(selector);
+        int[][] eaten = new int[this.workersNumber][];
+        int[][] priorities = new int[this.workersNumber][];
+        for (int i = 0; i < this.workersNumber; i++) {
+            responses[i].get();
+            eaten[i] = Protocol.getInts(responses[i]);
+            priorities[i] = Protocol.getInts(responses[i]);
+        }
+        int[][] denied = new int[this.workersNumber][];
+        this.eatenSquares = resolveClaims(eaten, priorities, denied);
+        for (int i = 0; i < this.workersNumber; i++) {
+            frames[i] = Protocol.frame(Protocol.RESOLVE, Protocol.size(denied[i]));
+            Protocol.putInts(frames[i], denied[i]);
+        }
+        sendAll(selector, frames);
+
+        responses = receiveAll(selector);
+        RoundStatistics merged = null;
+        int foodAfterRegrowth = 0;
+        for (int i = 0; i < this.workersNumber; i++) {
+            ByteBuffer response = responses[i];
+            response.get();
+            RoundStatistics statistics = RoundStatistics.read(response);
+            if (merged == null)
+                merged = statistics;
+            else
+                merged.merge(statistics);
+            foodAfterRegrowth = response.getInt();
+            for (Rob rob : Protocol.getRobs(response, this.configuration, this.random)) {
+                this.arriving.get(owner(rob.getY())).add(rob);
+            }
+        }
+        merged.setFoodSquaresNumber(foodAfterRegrowth - this.eatenSquares.length);
+        return merged;
+    }
+
+    /**
+     * Pobiera od procesów roboczych wszystkie roby, łącznie z robami zmieniającymi właśnie pas.
+     */
+    private List<Rob> collectRobs(Selector selector) throws IOException {
+        ByteBuffer[] frames = new ByteBuffer[this.workersNumber];
+        for (int i = 0; i < this.workersNumber; i++) {
+            frames[i] = Protocol.frame(Protocol.STATE, 0);
+        }
+        sendAll(selector, frames);
+        ByteBuffer[] responses = receiveAll(selector);
+        List<Rob> robs = new ArrayList<>();
+        for (int i = 0; i < this.workersNumber; i++) {
+            responses[i].get();
+            robs.addAll(Protocol.getRobs(responses[i], this.configuration, this.random));
+            robs.addAll(this.arriving.get(i));
+        }
+        return robs;
+    }
+
+    /**
+     * Wysyła ramkę {@code frames[i]} procesowi roboczemu {@code i}, zapisując je równolegle, gdy kanały są gotowe
+     * do zapisu.
+     */
+    private void sendAll(Selector selector, ByteBuffer[] frames) throws IOException {
+        for (int i = 0; i < this.workersNumber; i++) {
+            frames[i].flip();
+            this.keys[i].interestOps(SelectionKey.OP_WRITE);
+        }
+
+        int completed = 0;
+        while (completed < this.workersNumber) {
+            selector.select();
+            for (SelectionKey key : selector.selectedKeys()) {
+                int index = (int) key.attachment();
+                ((SocketChannel) key.channel()).write(frames[index]);
+                if (!frames[index].hasRemaining()) {
+                    key.interestOps(0);
+                    completed++;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+    }
+
+    /**
+     * Czeka na odpowiedzi wszystkich procesów roboczych, odczytując je równolegle w miarę napływania danych.
+     */
+    private ByteBuffer[] receiveAll(Selector selector) throws IOException {
+        ByteBuffer[] lengths = new ByteBuffer[this.workersNumber];
+        ByteBuffer[] responses = new ByteBuffer[this.workersNumber];
+        for (int i = 0; i < this.workersNumber; i++) {
+            lengths[i] = ByteBuffer.allocate(Integer.BYTES);
+            this.keys[i].interestOps(SelectionKey.OP_READ);
+        }
+
+        int completed = 0;
+        while (completed < this.workersNumber) {
+            selector.select();
+            for (SelectionKey key : selector.selectedKeys()) {
+                int index = (int) key.attachment();
+                SocketChannel channel = (SocketChannel) key.channel();
+                if (responses[index] == null) {
+                    if (channel.read(lengths[index]) < 0)
+                        throw new IOException("Proces roboczy " + index + " zakończył działanie.");
+                    if (lengths[index].hasRemaining())
+                        continue;
+                    responses[index] = ByteBuffer.allocate(lengths[index].getInt(0));
+                }
+                if (channel.read(responses[index]) < 0)
+                    throw new IOException("Proces roboczy " + index + " zakończył działanie.");
+                if (!responses[index].hasRemaining()) {
+                    responses[index].flip();
+                    key.interestOps(0);
+                    completed++;
+                }
+            }
+            selector.selectedKeys().clear();
+        }
+        return responses;
+    }
+
+    private int owner(int row) {
+        int owner = 0;
+        while (owner + 1 < this.workersNumber && firstRow(owner + 1, this.workersNumber, this.board.sizeY()) <= row)
+            owner++;
+        return owner;
+    }
+
+    /**
+     * Rozstrzyga, który proces zjadł jedzenie z pól zjedzonych w tej samej turze przez roby kilku procesów. Jedzenie
+     * dostaje proces, którego rob ma najmniejsze pierwszeństwo; przy równych pierwszeństwach kolejność procesów
+     * jest przesunięta cyklicznie o numer pola, aby żaden proces nie był stale uprzywilejowany.
+     *
+     * @param eaten      pola zjedzone przez roby kolejnych procesów
+     * @param priorities pierwszeństwa robów, które zjadły jedzenie z pól {@code eaten}
+     *                   ({@link DistributedWorker#priority})
+     * @param denied     tablica, do której trafiają posortowane pola, których zjedzenie zostało odebrane kolejnym
+     *                   procesom
+     * @return posortowana tablica pól występujących w co najmniej jednej z tablic {@code eaten}
+     */
+    static int[] resolveClaims(int[][] eaten, int[][] priorities, int[][] denied) {
+        int length = 0;
+        for (int[] squares : eaten) {
+            length += squares.length;
+        }
+        // Pole w starszych bitach, numer zgłoszenia w młodszych, więc po posortowaniu zgłoszenia tego samego pola
+        // sąsiadują ze sobą.
+        long[] claims = new long[length];
+        int[] claimWorkers = new int[length];
+        int[] claimPriorities = new int[length];
+        int position = 0;
+        for (int worker = 0; worker < eaten.length; worker++) {
+            for (int i = 0; i < eaten[worker].length; i++) {
+                claims[position] = (long) eaten[worker][i] << Integer.SIZE | position;
+                claimWorkers[position] = worker;
+                claimPriorities[position++] = priorities[worker][i];
+            }
+        }
+        Arrays.sort(claims);
+
+        int[] deniedNumbers = new int[eaten.length];
+        for (int worker = 0; worker < eaten.length; worker++) {
+            denied[worker] = new int[eaten[worker].length];
+        }
+        int[] squares = new int[length];
+        int distinct = 0;
+        for (int first = 0, end; first < claims.length; first = end) {
+            int square = (int) (claims[first] >>> Integer.SIZE);
+            end = first + 1;
+            while (end < claims.length && (int) (claims[end] >>> Integer.SIZE) == square) {
+                end++;
+            }
+            int winner = (int) claims[first];
+            for (int k = first + 1; k < end; k++) {
+                int claim = (int) claims[k];
+                int difference = claimPriorities[claim] - claimPriorities[winner];
+                if (difference < 0 || difference == 0 && Math.floorMod(claimWorkers[claim] - square, eaten.length)
+                        < Math.floorMod(claimWorkers[winner] - square, eaten.length))
+                    winner = claim;
+            }
+            for (int k = first; k < end; k++) {
+                int claim = (int) claims[k];
+                if (claim != winner)
+                    denied[claimWorkers[claim]][deniedNumbers[claimWorkers[claim]]++] = square;
+            }
+            squares[distinct++] = square;
+        }
+        for (int worker = 0; worker < eaten.length; worker++) {
+            denied[worker] = Arrays.copyOf(denied[worker], deniedNumbers[worker]);
+        }
+        return Arrays.copyOf(squares, distinct);
+    }
+}
@@ -0,0 +1,178 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Proces roboczy symulacji rozproszonej.
+ * <p>Proces przechowuje pełną kopię planszy, ale jest właścicielem jedynie robów znajdujących się w jego pasie
+ * wierszy planszy. Po każdej turze odsyła koordynatorowi pola, z których jego roby zjadły jedzenie, wraz z miejscem
+ * roba w kolejności tury. Gdy koordynator rozstrzygnie, które z tych pól przypadły robom innych procesów, odbiera
+ * energię z tych pól robom, które je zjadły, i ich dzieciom urodzonym w tej turze, a następnie odsyła statystyki
+ * oraz roby, które opuściły jego pas. Przed kolejną turą nanosi na swoją kopię planszy pola zjedzone przez roby
+ * innych procesów.</p>
+ *
+ * @author Katarzyna Mielnik
+ * @see DistributedSimulation
+ */
+public class DistributedWorker {
+    private final Configuration configuration;
+    private final Board board;
+    private final ActualSimulation simulation;
+    private final int index;
+    private final int firstRow;
+    private final int lastRow;
+
+    private int[] eatenSquares = new int[16];
+    /**
+     * Roby, które zjadły jedzenie z pól {@code eatenSquares}, i ich pierwszeństwo ({@link #priority}).
+     */
+    private Rob[] eaters = new Rob[16];
+    private int[] priorities = new int[16];
+    private int eatenSquaresNumber;
+    private int roundNumber;
+
+    DistributedWorker(Configuration configuration, Board board, int index, int workersNumber) {
+        this.configuration = configuration;
+        this.board = board;
+        this.index = index;
+        this.firstRow = DistributedSimulation.firstRow(index, workersNumber, board.sizeY());
+        this.lastRow = DistributedSimulation.firstRow(index + 1, workersNumber, board.sizeY());
+
+        int robsNumber = configuration.initialRobsNumber() / workersNumber;
+        if (index < configuration.initialRobsNumber() % workersNumber)
+            robsNumber++;
+        this.simulation = new ActualSimulation(configuration, board, robsNumber,
+                ActualSimulation.seededRandom(configuration, index));
+        this.board.observeEatenSquares(this::recordEatenSquare);
+    }
+
+    /**
+     * Uruchamia proces roboczy.
+     * <p>Argumenty: port koordynatora, numer procesu, liczba procesów, plik z parametrami, plik z planszą.</p>
+     */
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        int index = Integer.parseInt(args[1]);
+        int workersNumber = Integer.parseInt(args[2]);
+        Configuration configuration = new Configuration(new File(args[3]));
+        configuration.parseData();
+        Board board = Board.createBoard(new File(args[4]), configuration);
+
+        DistributedWorker worker = new DistributedWorker(configuration, board, index, workersNumber);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress(InetAddress.getLoopbackAddress(), port))) {
+            worker.run(channel);
+        }
+    }
+
+    /**
+     * Odpowiada na polecenia koordynatora do momentu otrzymania polecenia {@link Protocol#STOP}.
+     */
+    void run(SocketChannel channel) throws IOException {
+        ByteBuffer hello = Protocol.frame(Protocol.HELLO, Integer.BYTES);
+        hello.putInt(this.index);
+        Protocol.send(channel, hello);
+
+        while (true) {
+            ByteBuffer message = Protocol.receive(channel);
+            switch (message.get()) {
+                case Protocol.ROUND:
+                    Protocol.send(channel, simulateRound(message));
+                    break;
+                case Protocol.RESOLVE:
+                    Protocol.send(channel, finishRound(message));
+                    break;
+                case Protocol.STATE:
+                    List<Rob> robs = this.simulation.robs();
+                    ByteBuffer state = Protocol.frame(Protocol.STATE, Protocol.size(robs));
+                    Protocol.putRobs(state, robs);
+                    Protocol.send(channel, state);
+                    break;
+                case Protocol.STOP:
+                    return;
+            }
+        }
+    }
+
+    private ByteBuffer simulateRound(ByteBuffer message) {
+        this.roundNumber = message.getInt();
+        for (int square : Protocol.getInts(message)) {
+            this.board.applyEatenSquare(square);
+        }
+        this.simulation.immigrate(Protocol.getRobs(message, this.configuration, this.simulation.random()));
+
+        this.eatenSquaresNumber = 0;
+        this.simulation.simulateRound();
+        int[] eaten = Arrays.copyOf(this.eatenSquares, this.eatenSquaresNumber);
+        int[] priorities = Arrays.copyOf(this.priorities, this.eatenSquaresNumber);
+
+        ByteBuffer response = Protocol.frame(Protocol.ROUND, Protocol.size(eaten) + Protocol.size(priorities));
+        Protocol.putInts(response, eaten);
+        Protocol.putInts(response, priorities);
+        return response;
+    }
+
+    /**
+     * Odbiera energię robom, które zjadły jedzenie z odebranych procesowi pól, i kończy turę.
+     */
+    private ByteBuffer finishRound(ByteBuffer message) {
+        int[] denied = Protocol.getInts(message);
+        List<Rob> eaters = new ArrayList<>(denied.length);
+        for (int i = 0; i < this.eatenSquaresNumber; i++) {
+            // Jedzenie z pola może być zjedzone tylko raz w turze, więc każde pole ma jednego roba.
+            if (Arrays.binarySearch(denied, this.eatenSquares[i]) >= 0)
+                eaters.add(this.eaters[i]);
+        }
+        this.simulation.revokeFood(eaters);
+        Arrays.fill(this.eaters, 0, this.eatenSquaresNumber, null);
+
+        RoundStatistics statistics = this.simulation.collectStatistics(this.roundNumber);
+        // Każde zjedzenie zmniejsza liczbę pól z jedzeniem o jeden.
+        int foodAfterRegrowth = this.board.foodSquaresNumber() + this.eatenSquaresNumber;
+        List<Rob> leaving = this.simulation.emigrate(rob -> !ownsRow(rob.getY()));
+
+        ByteBuffer response = Protocol.frame(Protocol.RESOLVE,
+                RoundStatistics.BYTES + Integer.BYTES + Protocol.size(leaving));
+        statistics.write(response);
+        response.putInt(foodAfterRegrowth);
+        Protocol.putRobs(response, leaving);
+        return response;
+    }
+
+    private boolean ownsRow(int row) {
+        return this.firstRow <= row && row < this.lastRow;
+    }
+
+    private void recordEatenSquare(int square) {
+        if (this.eatenSquaresNumber == this.eatenSquares.length) {
+            this.eatenSquares = Arrays.copyOf(this.eatenSquares, 2 * this.eatenSquares.length);
+            this.eaters = Arrays.copyOf(this.eaters, 2 * this.eaters.length);
+            this.priorities = Arrays.copyOf(this.priorities, 2 * this.priorities.length);
+        }
+        this.eaters[this.eatenSquaresNumber] = this.simulation.activeRob();
+        this.priorities[this.eatenSquaresNumber] = priority(this.simulation.activeRobPosition(),
+                this.simulation.robs().size());
+        this.eatenSquares[this.eatenSquaresNumber++] = square;
+    }
+
+    /**
+     * Pierwszeństwo roba, który jest {@code position}-ty na potasowanej liście {@code robsNumber} robów procesu:
+     * oczekiwane miejsce roba w losowej kolejności wszystkich robów, przeskalowane do przedziału liczb
+     * {@code int}. Mniejsza wartość oznacza wcześniejszą turę roba. Pierwszeństwo nie zależy od numeru procesu, więc
+     * żaden proces nie jest uprzywilejowany.
+     */
+    static int priority(int position, int robsNumber) {
+        return (int) ((position + 1L) * Integer.MAX_VALUE / (robsNumber + 1));
+    }
+}
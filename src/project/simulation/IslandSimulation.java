@@ -0,0 +1,176 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Symulacja w modelu wyspowym.
+ * <p>Na każdej z {@code ile_wysp} wysp niezależnie przebiega zwykła symulacja ({@link ActualSimulation}) na własnej
+ * kopii planszy, z początkową populacją określoną w konfiguracji. Każda wyspa jest symulowana w osobnym wątku.
+ * Co {@code co_ile_migracja} tur ułamek {@code ułamek_migracji} robów każdej wyspy przenosi się na następną wyspę
+ * (wyspy tworzą cykl). Roby przekazywane są przez nieblokujące kolejki, a wątki synchronizują się wyłącznie na
+ * końcu okresu między migracjami lub wypisaniem stanu symulacji.</p>
+ * <p>Statystyki wszystkich wysp są łączone i wypisywane w takim samym formacie jak w zwykłej symulacji.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class IslandSimulation {
+    private final Configuration configuration;
+    private final ActualSimulation[] islands;
+    private final List<ConcurrentLinkedQueue<Rob>> arrivals;
+
+    public IslandSimulation(Configuration configuration, Board board) {
+        this.configuration = configuration;
+        this.islands = new ActualSimulation[configuration.islandsNumber()];
+        this.arrivals = new ArrayList<>(this.islands.length);
+        for (int i = 0; i < this.islands.length; i++) {
+            this.islands[i] = new ActualSimulation(configuration, board.copy(), configuration.initialRobsNumber(),
+                    ActualSimulation.seededRandom(configuration, i));
+            this.arrivals.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    /**
+     * Przeprowadza całą symulację określoną liczbę razy, lub do momentu wyginęcia robów na wszystkich wyspach.
+     */
+    public void runSimulation() {
+        ExecutorService executor = Executors.newFixedThreadPool(this.islands.length);
+        try {
+            runSimulation(executor);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void runSimulation(ExecutorService executor) throws InterruptedException, ExecutionException {
+        int roundsNumber = this.configuration.roundsNumber();
+        int printingFrequence = this.configuration.printingFrequence();
+        int migrationFrequence = this.configuration.migrationFrequence();
+
+        int round = 1;
+        while (round <= roundsNumber) {
+            int lastRound = lastRoundOfPeriod(round);
+            List<Future<RoundStatistics[]>> results = executor.invokeAll(periodTasks(round, lastRound));
+
+            RoundStatistics[] merged = results.get(0).get();
+            for (int i = 1; i < results.size(); i++) {
+                RoundStatistics[] islandStatistics = results.get(i).get();
+                for (int j = 0; j < merged.length; j++) {
+                    merged[j].merge(islandStatistics[j]);
+                }
+            }
+
+            for (RoundStatistics statistics : merged) {
+                if (statistics.robsNumber() == 0) {
+                    System.out.println("Tura " + statistics.roundNumber() + ". Brak żyjących robów. Zakończenie symulacji.");
+                    round = roundsNumber + 1;
+                    break;
+                }
+                Data.printStatistics(statistics);
+            }
+            if (round > roundsNumber)
+                break;
+
+            if (lastRound % printingFrequence == 0)
+                Data.printSimulationState(allRobs());
+
+            if (migrationFrequence > 0 && lastRound % migrationFrequence == 0)
+                executor.invokeAll(migrationTasks());
+
+            round = lastRound + 1;
+        }
+        // Jeśli statystyki nie zostały wypisane po ostatniej turze.
+        if (roundsNumber % printingFrequence != 0)
+            Data.printSimulationState(allRobs());
+    }
+
+    /**
+     * Wyznacza ostatnią turę okresu zaczynającego się w turze {@code firstRound}. Okres kończy się przed migracją,
+     * wypisaniem stanu symulacji lub na końcu symulacji.
+     */
+    private int lastRoundOfPeriod(int firstRound) {
+        int lastRound = this.configuration.roundsNumber();
+        int printingFrequence = this.configuration.printingFrequence();
+        lastRound = Math.min(lastRound, nextMultiple(firstRound, printingFrequence));
+        int migrationFrequence = this.configuration.migrationFrequence();
+        if (migrationFrequence > 0)
+            lastRound = Math.min(lastRound, nextMultiple(firstRound, migrationFrequence));
+        return lastRound;
+    }
+
+    /**
+     * Najmniejsza wielokrotność {@code k} nie mniejsza niż {@code x}.
+     */
+    private static int nextMultiple(int x, int k) {
+        return (int) Math.min(Integer.MAX_VALUE, ((long) x + k - 1) / k * k);
+    }
+
+    /**
+     * Tworzy zadania symulujące tury od {@code firstRound} do {@code lastRound} na każdej z wysp. Przed pierwszą
+     * turą każda wyspa przyjmuje roby, które do niej przybyły.
+     */
+    private List<Callable<RoundStatistics[]>> periodTasks(int firstRound, int lastRound) {
+        List<Callable<RoundStatistics[]>> tasks = new ArrayList<>();
+        for (int i = 0; i < this.islands.length; i++) {
+            ActualSimulation island = this.islands[i];
+            ConcurrentLinkedQueue<Rob> arrived = this.arrivals.get(i);
+            tasks.add(() -> {
+                List<Rob> immigrants = new ArrayList<>();
+                for (Rob rob = arrived.poll(); rob != null; rob = arrived.poll()) {
+                    immigrants.add(rob);
+                }
+                island.immigrate(immigrants);
+
+                RoundStatistics[] statistics = new RoundStatistics[lastRound - firstRound + 1];
+                for (int round = firstRound; round <= lastRound; round++) {
+                    island.simulateRound();
+                    statistics[round - firstRound] = island.collectStatistics(round);
+                }
+                return statistics;
+            });
+        }
+        return tasks;
+    }
+
+    /**
+     * Tworzy zadania, w których każda wyspa wysyła część swoich robów do następnej wyspy.
+     */
+    private List<Callable<Void>> migrationTasks() {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int i = 0; i < this.islands.length; i++) {
+            ActualSimulation island = this.islands[i];
+            ConcurrentLinkedQueue<Rob> destination = this.arrivals.get((i + 1) % this.islands.length);
+            tasks.add(() -> {
+                int count = (int) (island.robs().size() * this.configuration.migrationPart());
+                destination.addAll(island.emigrate(count));
+                return null;
+            });
+        }
+        return tasks;
+    }
+
+    private List<Rob> allRobs() {
+        List<Rob> robs = new ArrayList<>();
+        for (ActualSimulation island : this.islands) {
+            robs.addAll(island.robs());
+        }
+        return robs;
+    }
+}
@@ -0,0 +1,150 @@
+package project.simulation;
+
+import project.simulation.universe.Board;
+
+/**
+ * Niezmienny stan symulacji po zakończonej turze, udostępniany wątkom monitorującym przez {@link LiveView}.
+ * <p>Zawiera statystyki populacji, histogram energii robów i stan jedzenia na planszy, zapisany w kwadratowych
+ * obszarach o boku {@link Board#tileSize()} pól, po jednym bicie na pole. Obszary, w których od poprzedniej tury nic
+ * się nie zmieniło, są wspólne z poprzednią migawką. Migawki można bezpiecznie odczytywać z dowolnego wątku.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class LiveSnapshot {
+    private static final int TILE_SIZE = Board.tileSize();
+    private static final int TILE_WORDS = TILE_SIZE * TILE_SIZE / Long.SIZE;
+    private static final int ROWS_PER_WORD = Long.SIZE / TILE_SIZE;
+
+    private final int roundNumber;
+    private final int robsNumber;
+    private final int foodSquaresNumber;
+    private final long energySum;
+    private final int minEnergy;
+    private final int maxEnergy;
+    private final int histogramBinWidth;
+    private final int[] energyHistogram;
+    private final int sizeX;
+    private final int sizeY;
+    private final int tilesX;
+    /**
+     * Bity pól z jedzeniem obszaru (tx, ty) w {@code tiles[ty * tilesX + tx]}: pole (x, y) obszaru w bicie
+     * {@code (y * TILE_SIZE + x) % 64} słowa {@code (y * TILE_SIZE + x) / 64}.
+     */
+    private final long[][] tiles;
+
+    LiveSnapshot(int roundNumber, int robsNumber, int foodSquaresNumber, long energySum, int minEnergy,
+                 int maxEnergy, int histogramBinWidth, int[] energyHistogram, Board board, long[][] tiles) {
+        this.roundNumber = roundNumber;
+        this.robsNumber = robsNumber;
+        this.foodSquaresNumber = foodSquaresNumber;
+        this.energySum = energySum;
+        this.minEnergy = minEnergy;
+        this.maxEnergy = maxEnergy;
+        this.histogramBinWidth = histogramBinWidth;
+        this.energyHistogram = energyHistogram;
+        this.sizeX = board.sizeX();
+        this.sizeY = board.sizeY();
+        this.tilesX = board.tilesX();
+        this.tiles = tiles;
+    }
+
+    long[][] tiles() {
+        return this.tiles;
+    }
+
+    /**
+     * Tworzy bity pól z jedzeniem obszaru planszy {@code board} o numerze {@code tile}.
+     */
+    static long[] tile(Board board, int tile) {
+        long[] bits = new long[TILE_WORDS];
+        int left = tile % board.tilesX() * TILE_SIZE, top = tile / board.tilesX() * TILE_SIZE;
+        for (int y = top; y < Math.min(board.sizeY(), top + TILE_SIZE); y++) {
+            for (int x = left; x < Math.min(board.sizeX(), left + TILE_SIZE); x++) {
+                if (board.foodAt(x, y)) {
+                    int bit = (y - top) * TILE_SIZE + (x - left);
+                    bits[bit / Long.SIZE] |= 1L << bit;
+                }
+            }
+        }
+        return bits;
+    }
+
+    /**
+     * Numer tury, po której utworzono migawkę; {@code 0} oznacza stan początkowy.
+     */
+    public int roundNumber() {
+        return this.roundNumber;
+    }
+
+    public int robsNumber() {
+        return this.robsNumber;
+    }
+
+    public int foodSquaresNumber() {
+        return this.foodSquaresNumber;
+    }
+
+    public double meanEnergy() {
+        return this.robsNumber == 0 ? 0 : (double) this.energySum / this.robsNumber;
+    }
+
+    /**
+     * Najmniejsza energia roba lub {@code 0}, jeśli nie ma robów.
+     */
+    public int minEnergy() {
+        return this.robsNumber == 0 ? 0 : this.minEnergy;
+    }
+
+    /**
+     * Największa energia roba lub {@code 0}, jeśli nie ma robów.
+     */
+    public int maxEnergy() {
+        return this.robsNumber == 0 ? 0 : this.maxEnergy;
+    }
+
+    public int histogramBinWidth() {
+        return this.histogramBinWidth;
+    }
+
+    /**
+     * Liczby robów w kolejnych przedziałach energii o szerokości {@link #histogramBinWidth()}, tak jak w eksporcie
+     * statystyk: ostatni przedział obejmuje również wszystkie większe wartości, a pierwszy wszystkie mniejsze od zera.
+     *
+     * @return kopia histogramu; pusta tablica, jeśli histogram nie jest zbierany
+     */
+    public int[] energyHistogram() {
+        return this.energyHistogram.clone();
+    }
+
+    /**
+     * Sprawdza, czy na polu ({@code x}, {@code y}) było jedzenie.
+     */
+    public boolean foodAt(int x, int y) {
+        if (x < 0 || y < 0 || x >= this.sizeX || y >= this.sizeY)
+            throw new IllegalArgumentException("Pole poza planszą.");
+        long[] tile = this.tiles[(y / TILE_SIZE) * this.tilesX + x / TILE_SIZE];
+        int bit = (y % TILE_SIZE) * TILE_SIZE + x % TILE_SIZE;
+        return (tile[bit / Long.SIZE] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Liczba pól z jedzeniem w prostokącie pól o współrzędnych {@code x} od {@code fromX} do {@code toX} i {@code y}
+     * od {@code fromY} do {@code toY} (bez {@code toX} i {@code toY}). Pola wiersza obszaru są zliczane naraz.
+     */
+    public int foodInRegion(int fromX, int fromY, int toX, int toY) {
+        if (fromX < 0 || fromY < 0 || toX > this.sizeX || toY > this.sizeY)
+            throw new IllegalArgumentException("Prostokąt wykracza poza planszę.");
+        int food = 0;
+        for (int y = fromY; y < toY; y++) {
+            int row = y % TILE_SIZE;
+            for (int tileX = fromX / TILE_SIZE; tileX * TILE_SIZE < toX; tileX++) {
+                int left = Math.max(fromX - tileX * TILE_SIZE, 0);
+                int right = Math.min(toX - tileX * TILE_SIZE, TILE_SIZE);
+                long columns = ((1L << right) - 1) & -(1L << left);
+                long word = this.tiles[(y / TILE_SIZE) * this.tilesX + tileX][row / ROWS_PER_WORD];
+                food += Long.bitCount((word >>> (row % ROWS_PER_WORD * TILE_SIZE)) & columns);
+            }
+        }
+        return food;
+    }
+}
@@ -0,0 +1,148 @@
+package project.simulation;
+
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Udostępnia wątkom monitorującym stan symulacji po ostatniej zakończonej turze ({@link LiveSnapshot}), bez blokad
+ * i bez wstrzymywania symulacji.
+ * <p>Po każdej turze (epoce) wątek symulacji tworzy nową migawkę i publikuje ją przez pole {@code volatile}; wątki
+ * czytające otrzymują zawsze kompletną migawkę jednej tury i mogą jej używać dowolnie długo. Statystyki populacji
+ * i histogram energii są zliczane w roboczym histogramie wątku symulacji i kopiowane do migawki. Stan jedzenia jest
+ * przechowywany w obszarach planszy kopiowanych przy zapisie: nowa kopia powstaje tylko dla obszarów, w których
+ * od ostatniej epoki zjedzono jedzenie lub mogło ono odrosnąć, pozostałe są wspólne z poprzednią migawką.</p>
+ * <p>Tworzony przez {@link ActualSimulation#startLiveView}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class LiveView {
+    private final Board board;
+    private final int histogramBinWidth;
+    private final int[] histogram;
+    /**
+     * Numer tury, w której ostatnio zjedzono jedzenie w obszarze planszy. Jedzenie w obszarze może się zmieniać
+     * jeszcze przez {@link Board#ripeningTime()} tur, aż odrośnie.
+     */
+    private final int[] tileEatenRound;
+    /**
+     * Obszary, które trzeba skopiować w kolejnych epokach, i oznaczenie obszarów na tej liście.
+     */
+    private final int[] changingTiles;
+    private int changingTilesNumber;
+    private final boolean[] changing;
+
+    private volatile LiveSnapshot current;
+
+    /**
+     * @param histogramBinWidth szerokość przedziału histogramu energii, 0 oznacza brak histogramu
+     * @param histogramBins     liczba przedziałów histogramu energii
+     */
+    LiveView(Board board, int histogramBinWidth, int histogramBins) {
+        this.board = board;
+        this.histogramBinWidth = histogramBinWidth;
+        this.histogram = new int[histogramBinWidth > 0 ? histogramBins : 0];
+        int tilesNumber = board.tilesX() * board.tilesY();
+        this.tileEatenRound = new int[tilesNumber];
+        this.changingTiles = new int[tilesNumber];
+        this.changing = new boolean[tilesNumber];
+        board.trackEatenTiles();
+    }
+
+    /**
+     * Zwraca migawkę stanu po ostatniej zakończonej turze. Można ją wywoływać z dowolnego wątku.
+     */
+    public LiveSnapshot current() {
+        return this.current;
+    }
+
+    /**
+     * Tworzy i publikuje migawkę stanu po turze {@code roundNumber}, w której żyją roby {@code robs}. Wywoływana
+     * przez wątek symulacji po każdej turze; migawka tury {@code 0} zawiera cały stan planszy.
+     */
+    void publish(int roundNumber, List<Rob> robs) {
+        Arrays.fill(this.histogram, 0);
+        long energySum = 0;
+        int minEnergy = Integer.MAX_VALUE, maxEnergy = Integer.MIN_VALUE;
+        for (int i = 0; i < robs.size(); i++) {
+            int energy = robs.get(i).getEnergyLevel();
+            energySum += energy;
+            minEnergy = Math.min(minEnergy, energy);
+            maxEnergy = Math.max(maxEnergy, energy);
+            if (this.histogram.length > 0)
+                this.histogram[Math.max(0, Math.min(this.histogram.length - 1, energy / this.histogramBinWidth))]++;
+        }
+
+        LiveSnapshot previous = this.current;
+        this.current = new LiveSnapshot(roundNumber, robs.size(), this.board.foodSquaresNumber(), energySum,
+                minEnergy, maxEnergy, this.histogramBinWidth, this.histogram.clone(), this.board,
+                previous == null ? allTiles(roundNumber) : changedTiles(roundNumber, previous));
+    }
+
+    /**
+     * Kopiuje wszystkie obszary. Obszary, w których odrasta jedzenie zjedzone przed utworzeniem widoku, są kopiowane
+     * także w najbliższych {@link Board#ripeningTime()} epokach.
+     */
+    private long[][] allTiles(int roundNumber) {
+        long[][] tiles = new long[this.tileEatenRound.length][];
+        for (int tile = 0; tile < tiles.length; tile++) {
+            tiles[tile] = LiveSnapshot.tile(this.board, tile);
+            if (regrowing(tile)) {
+                this.tileEatenRound[tile] = roundNumber;
+                this.changingTiles[this.changingTilesNumber++] = tile;
+                this.changing[tile] = true;
+            }
+        }
+        this.board.drainEatenTiles(tile -> { });
+        return tiles;
+    }
+
+    /**
+     * Sprawdza, czy w obszarze {@code tile} jest pole z niedojrzałym jedzeniem.
+     */
+    private boolean regrowing(int tile) {
+        int tileSize = Board.tileSize();
+        int left = tile % this.board.tilesX() * tileSize, top = tile / this.board.tilesX() * tileSize;
+        for (int y = top; y < Math.min(this.board.sizeY(), top + tileSize); y++) {
+            for (int x = left; x < Math.min(this.board.sizeX(), left + tileSize); x++) {
+                int ripeness = this.board.foodRipeness(y * this.board.sizeX() + x);
+                if (ripeness != Board.NO_FOOD && ripeness != this.board.ripeningTime())
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Kopiuje obszary, które mogły się zmienić od poprzedniej migawki, i usuwa z listy obszarów do kopiowania te,
+     * w których jedzenie już odrosło.
+     */
+    private long[][] changedTiles(int roundNumber, LiveSnapshot previous) {
+        this.board.drainEatenTiles(tile -> {
+            this.tileEatenRound[tile] = roundNumber;
+            if (!this.changing[tile]) {
+                this.changing[tile] = true;
+                this.changingTiles[this.changingTilesNumber++] = tile;
+            }
+        });
+
+        long[][] tiles = previous.tiles();
+        if (this.changingTilesNumber == 0)
+            return tiles;
+        tiles = tiles.clone();
+        int stillChanging = 0;
+        for (int i = 0; i < this.changingTilesNumber; i++) {
+            int tile = this.changingTiles[i];
+            tiles[tile] = LiveSnapshot.tile(this.board, tile);
+            // Jedzenie zjedzone w turze r odrasta na początku tury r + ripeningTime.
+            if (this.tileEatenRound[tile] + this.board.ripeningTime() > roundNumber)
+                this.changingTiles[stillChanging++] = tile;
+            else
+                this.changing[tile] = false;
+        }
+        this.changingTilesNumber = stillChanging;
+        return tiles;
+    }
+}
@@ -0,0 +1,57 @@
+package project.simulation;
+
+import project.simulation.rob.Rob;
+
+import java.util.List;
+
+/**
+ * Niezmienna kopia stanu populacji potrzebnego do wypisania stanu symulacji. Można ją wypisać w innym wątku, podczas
+ * gdy symulacja zmienia już roby.
+ *
+ * @author Katarzyna Mielnik
+ */
+class PopulationSnapshot {
+    private final int[] ages;
+    private final int[] energies;
+    private final int[] xCoordinates;
+    private final int[] yCoordinates;
+
+    private PopulationSnapshot(List<Rob> robs) {
+        int size = robs.size();
+        this.ages = new int[size];
+        this.energies = new int[size];
+        this.xCoordinates = new int[size];
+        this.yCoordinates = new int[size];
+        for (int i = 0; i < size; i++) {
+            Rob rob = robs.get(i);
+            this.ages[i] = rob.getAge();
+            this.energies[i] = rob.getEnergyLevel();
+            this.xCoordinates[i] = rob.getX();
+            this.yCoordinates[i] = rob.getY();
+        }
+    }
+
+    static PopulationSnapshot of(List<Rob> robs) {
+        return new PopulationSnapshot(robs);
+    }
+
+    /**
+     * Wypisuje stan symulacji w takiej samej postaci jak {@link Data#printSimulationState(Iterable)}.
+     */
+    void print() {
+        System.out.print(text());
+    }
+
+    /**
+     * Tworzy tekst wypisywany przez {@link #print()}.
+     */
+    String text() {
+        StringBuilder state = new StringBuilder("* Stan symulacji.").append(System.lineSeparator());
+        for (int i = 0; i < this.ages.length; i++) {
+            state.append("* ")
+                    .append(Rob.describe(this.ages[i], this.energies[i], this.xCoordinates[i], this.yCoordinates[i]))
+                    .append(System.lineSeparator());
+        }
+        return state.toString();
+    }
+}
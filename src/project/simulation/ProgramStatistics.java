@@ -0,0 +1,80 @@
+package project.simulation;
+
+import project.simulation.rob.Instruction;
+import project.simulation.rob.Rob;
+import project.simulation.sketch.HyperLogLog;
+import project.simulation.sketch.SpaceSaving;
+
+import java.util.List;
+
+/**
+ * Przybliżone statystyki wykonywanych programów: najczęściej wykonywane programy oraz liczba różnych programów.
+ * <p>Każde wykonanie programu przez roba jest zliczane w szkicach o stałym rozmiarze wynikającym z dopuszczalnego
+ * błędu względnego, więc koszt nie zależy od liczby różnych programów w populacji. Raport obejmuje tury od
+ * poprzedniego raportu.</p>
+ *
+ * @author Katarzyna Mielnik
+ * @see SpaceSaving
+ * @see HyperLogLog
+ */
+class ProgramStatistics {
+    private static final double MIN_ERROR = 0.001;
+
+    private final int reportedPrograms;
+    private final SpaceSaving<List<Instruction>> topPrograms;
+    private final HyperLogLog distinctPrograms;
+    private int firstRound;
+
+    ProgramStatistics(int reportedPrograms, double relativeError) {
+        relativeError = Math.max(MIN_ERROR, relativeError);
+        this.reportedPrograms = reportedPrograms;
+        this.topPrograms = SpaceSaving.withRelativeError(relativeError);
+        this.distinctPrograms = HyperLogLog.withRelativeError(relativeError);
+        this.firstRound = 1;
+    }
+
+    /**
+     * Zlicza wykonanie programu przez roba.
+     */
+    void add(Rob rob) {
+        long hash = rob.getProgramHash();
+        if (this.topPrograms.offer(hash))
+            this.topPrograms.setItem(hash, rob.getProgram());
+        this.distinctPrograms.add(hash);
+    }
+
+    /**
+     * Tworzy raport z tur od poprzedniego raportu do tury {@code roundNumber} i zaczyna zliczanie od nowa.
+     *
+     * @return raport w postaci gotowej do wypisania
+     */
+    String report(int roundNumber) {
+        StringBuilder report = new StringBuilder();
+        report.append("* Najczęstsze programy (tury ").append(this.firstRound).append("-").append(roundNumber)
+                .append("), różnych programów: ok. ").append(this.distinctPrograms.estimate())
+                .append(System.lineSeparator());
+        int position = 1;
+        for (SpaceSaving.Counter<List<Instruction>> counter : this.topPrograms.top(this.reportedPrograms)) {
+            report.append("* ").append(position++).append(". ").append(programText(counter.item()))
+                    .append(": wykonań ").append(counter.count());
+            if (counter.error() > 0)
+                report.append(" (błąd do ").append(counter.error()).append(")");
+            report.append(System.lineSeparator());
+        }
+
+        this.topPrograms.clear();
+        this.distinctPrograms.clear();
+        this.firstRound = roundNumber + 1;
+        return report.toString();
+    }
+
+    private static String programText(List<Instruction> program) {
+        if (program.isEmpty())
+            return "(pusty)";
+        StringBuilder text = new StringBuilder();
+        for (Instruction instruction : program) {
+            text.append(instruction.character());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,124 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.rob.Rob;
+import project.simulation.rob.RobCodec;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Binarny protokół wymiany danych między koordynatorem ({@link DistributedSimulation}) a procesami roboczymi
+ * ({@link DistributedWorker}).
+ * <p>Każda wiadomość to ramka: długość treści ({@code int}), a po niej treść zaczynająca się od kodu polecenia.
+ * Koordynator wysyła polecenia, proces roboczy odpowiada na każde z nich jedną ramką.</p>
+ * <ul>
+ *     <li>{@link #HELLO}: numer procesu roboczego (pierwsza ramka procesu roboczego),</li>
+ *     <li>{@link #ROUND}: numer tury, pola zjedzone w poprzedniej turze, przybywające roby; odpowiedź: pola
+ *     zjedzone przez roby procesu i pierwszeństwa robów, które je zjadły,</li>
+ *     <li>{@link #RESOLVE}: pola, których zjedzenie zostało procesowi odebrane, bo w tej samej turze zjadł je rob
+ *     innego procesu o mniejszym pierwszeństwie; odpowiedź: statystyki tury, liczba pól z jedzeniem przed
+ *     zjedzeniem, roby opuszczające pas procesu,</li>
+ *     <li>{@link #STATE}: brak danych; odpowiedź: wszystkie roby procesu,</li>
+ *     <li>{@link #STOP}: brak danych i odpowiedzi, proces roboczy kończy działanie.</li>
+ * </ul>
+ *
+ * @author Katarzyna Mielnik
+ */
+class Protocol {
+    static final byte HELLO = 0;
+    static final byte ROUND = 1;
+    static final byte STATE = 2;
+    static final byte STOP = 3;
+    static final byte RESOLVE = 4;
+
+    private Protocol() {
+    }
+
+    /**
+     * Tworzy bufor na ramkę o treści długości {@code contentSize} bajtów (razem z kodem polecenia).
+     */
+    static ByteBuffer frame(byte command, int contentSize) {
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + 1 + contentSize);
+        buffer.putInt(1 + contentSize);
+        buffer.put(command);
+        return buffer;
+    }
+
+    /**
+     * Wysyła ramkę {@code frame} przez kanał w trybie blokującym.
+     */
+    static void send(SocketChannel channel, ByteBuffer frame) throws IOException {
+        frame.flip();
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+    }
+
+    /**
+     * Odczytuje treść jednej ramki z kanału w trybie blokującym.
+     */
+    static ByteBuffer receive(SocketChannel channel) throws IOException {
+        ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+        readFully(channel, length);
+        ByteBuffer content = ByteBuffer.allocate(length.getInt(0));
+        readFully(channel, content);
+        content.flip();
+        return content;
+    }
+
+    private static void readFully(SocketChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0)
+                throw new EOFException();
+        }
+    }
+
+    static int size(int[] values) {
+        return Integer.BYTES * (1 + values.length);
+    }
+
+    static void putInts(ByteBuffer buffer, int[] values) {
+        buffer.putInt(values.length);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+    }
+
+    static int[] getInts(ByteBuffer buffer) {
+        int[] values = new int[buffer.getInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.getInt();
+        }
+        return values;
+    }
+
+    static int size(List<Rob> robs) {
+        int size = Integer.BYTES;
+        for (Rob rob : robs) {
+            size += RobCodec.size(rob);
+        }
+        return size;
+    }
+
+    static void putRobs(ByteBuffer buffer, List<Rob> robs) {
+        buffer.putInt(robs.size());
+        for (Rob rob : robs) {
+            RobCodec.write(rob, buffer);
+        }
+    }
+
+    static List<Rob> getRobs(ByteBuffer buffer, Configuration configuration, Random random) {
+        int count = buffer.getInt();
+        List<Rob> robs = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            robs.add(RobCodec.read(buffer, configuration, random));
+        }
+        return robs;
+    }
+}
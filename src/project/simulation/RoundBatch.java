@@ -0,0 +1,156 @@
+package project.simulation;
+
+import project.simulation.rob.Rob;
+
+import java.util.List;
+
+/**
+ * Statystyki kolejnych tur przekazywane słuchaczom ({@link RoundListener}) jedną paczką.
+ * <p>Statystyki są przechowywane w tablicach typów prostych, po jednej na każdą wielkość, a odczytuje się je
+ * funkcjami przyjmującymi numer tury w paczce (od {@code 0} do {@code size() - 1}). Paczka jest używana ponownie,
+ * więc jej zawartość jest poprawna tylko w trakcie wywołania słuchacza. Postać tekstowa tury jest tworzona dopiero
+ * na żądanie funkcją {@link #format}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class RoundBatch {
+    private final int[] roundNumbers;
+    private final int[] foodSquaresNumbers;
+    private final int[] robsNumbers;
+    private final int[] minProgramLengths;
+    private final long[] programLengthSums;
+    private final int[] maxProgramLengths;
+    private final int[] minEnergies;
+    private final long[] energySums;
+    private final int[] maxEnergies;
+    private final int[] minAges;
+    private final long[] ageSums;
+    private final int[] maxAges;
+    private int size;
+
+    RoundBatch(int capacity) {
+        this.roundNumbers = new int[capacity];
+        this.foodSquaresNumbers = new int[capacity];
+        this.robsNumbers = new int[capacity];
+        this.minProgramLengths = new int[capacity];
+        this.programLengthSums = new long[capacity];
+        this.maxProgramLengths = new int[capacity];
+        this.minEnergies = new int[capacity];
+        this.energySums = new long[capacity];
+        this.maxEnergies = new int[capacity];
+        this.minAges = new int[capacity];
+        this.ageSums = new long[capacity];
+        this.maxAges = new int[capacity];
+    }
+
+    /**
+     * Dopisuje statystyki tury {@code roundNumber} zebrane z populacji {@code robs}.
+     */
+    void collect(int roundNumber, int foodSquaresNumber, List<Rob> robs) {
+        int i = this.size++;
+        this.roundNumbers[i] = roundNumber;
+        this.foodSquaresNumbers[i] = foodSquaresNumber;
+        this.robsNumbers[i] = robs.size();
+        int minProgramLength = Integer.MAX_VALUE, maxProgramLength = 0;
+        int minEnergy = Integer.MAX_VALUE, maxEnergy = 0;
+        int minAge = Integer.MAX_VALUE, maxAge = 0;
+        long programLengthSum = 0, energySum = 0, ageSum = 0;
+        for (int j = 0; j < robs.size(); j++) {
+            Rob rob = robs.get(j);
+            int programLength = rob.getProgramLength(), energy = rob.getEnergyLevel(), age = rob.getAge();
+            minProgramLength = Math.min(minProgramLength, programLength);
+            programLengthSum += programLength;
+            maxProgramLength = Math.max(maxProgramLength, programLength);
+            minEnergy = Math.min(minEnergy, energy);
+            energySum += energy;
+            maxEnergy = Math.max(maxEnergy, energy);
+            minAge = Math.min(minAge, age);
+            ageSum += age;
+            maxAge = Math.max(maxAge, age);
+        }
+        this.minProgramLengths[i] = minProgramLength;
+        this.programLengthSums[i] = programLengthSum;
+        this.maxProgramLengths[i] = maxProgramLength;
+        this.minEnergies[i] = minEnergy;
+        this.energySums[i] = energySum;
+        this.maxEnergies[i] = maxEnergy;
+        this.minAges[i] = minAge;
+        this.ageSums[i] = ageSum;
+        this.maxAges[i] = maxAge;
+    }
+
+    boolean isFull() {
+        return this.size == this.roundNumbers.length;
+    }
+
+    void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * Liczba tur w paczce.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    public int roundNumber(int i) {
+        return this.roundNumbers[i];
+    }
+
+    public int foodSquaresNumber(int i) {
+        return this.foodSquaresNumbers[i];
+    }
+
+    public int robsNumber(int i) {
+        return this.robsNumbers[i];
+    }
+
+    public int minProgramLength(int i) {
+        return this.minProgramLengths[i];
+    }
+
+    public double meanProgramLength(int i) {
+        return (double) this.programLengthSums[i] / this.robsNumbers[i];
+    }
+
+    public int maxProgramLength(int i) {
+        return this.maxProgramLengths[i];
+    }
+
+    public int minEnergy(int i) {
+        return this.minEnergies[i];
+    }
+
+    public double meanEnergy(int i) {
+        return (double) this.energySums[i] / this.robsNumbers[i];
+    }
+
+    public int maxEnergy(int i) {
+        return this.maxEnergies[i];
+    }
+
+    public int minAge(int i) {
+        return this.minAges[i];
+    }
+
+    public double meanAge(int i) {
+        return (double) this.ageSums[i] / this.robsNumbers[i];
+    }
+
+    public int maxAge(int i) {
+        return this.maxAges[i];
+    }
+
+    /**
+     * Tworzy linię ze statystykami {@code i}-tej tury paczki w takiej postaci, w jakiej wypisuje ją symulacja.
+     */
+    public String format(int i) {
+        RoundStatistics statistics = new RoundStatistics(this.roundNumbers[i], this.foodSquaresNumbers[i]);
+        if (this.robsNumbers[i] > 0)
+            statistics.setPopulation(this.robsNumbers[i], this.minProgramLengths[i], this.programLengthSums[i],
+                    this.maxProgramLengths[i], this.minEnergies[i], this.energySums[i], this.maxEnergies[i],
+                    this.minAges[i], this.ageSums[i], this.maxAges[i]);
+        return Data.formatStatistics(statistics);
+    }
+}
@@ -0,0 +1,16 @@
+package project.simulation;
+
+/**
+ * Słuchacz statystyk tur symulacji prowadzonej przez {@link SimulationEngine}.
+ *
+ * @author Katarzyna Mielnik
+ */
+@FunctionalInterface
+public interface RoundListener {
+    /**
+     * Wywoływana po kolejnej paczce tur. Paczka jest poprawna tylko w trakcie wywołania.
+     *
+     * @param batch statystyki tur od poprzedniego wywołania
+     */
+    void roundsCompleted(RoundBatch batch);
+}
@@ -0,0 +1,105 @@
+package project.simulation;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Wypisywanie danych o kolejnych turach.
+ * <p>Jeśli rozmiar bufora jest dodatni, dane są wypisywane w osobnym wątku, w kolejności przekazania, równolegle
+ * z symulacją kolejnych tur. Gdy bufor się zapełni, wątek symulacji czeka, aż wypisywanie nadrobi zaległości.
+ * Przy rozmiarze bufora 0 dane są wypisywane od razu w wątku symulacji.</p>
+ * <p>Jeśli wypisywanie zakończy się wyjątkiem, wątek wypisujący odrzuca kolejne dane, a błąd jest zgłaszany
+ * w wątku symulacji przy następnym {@link #print} lub przy {@link #close()}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+class RoundOutput implements AutoCloseable {
+    // Zadanie oznaczające koniec danych do wypisania.
+    private static final Runnable END = () -> {
+    };
+
+    private final BlockingQueue<Runnable> queue;
+    private final Thread printer;
+    /**
+     * Wyjątek, którym zakończyło się wypisywanie w osobnym wątku, lub {@code null}.
+     */
+    private volatile Throwable failure;
+
+    RoundOutput(int bufferSize) {
+        if (bufferSize == 0) {
+            this.queue = null;
+            this.printer = null;
+            return;
+        }
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.printer = new Thread(this::printAll, "wypisywanie");
+        this.printer.start();
+    }
+
+    /**
+     * Przekazuje do wypisania dane, które wypisuje {@code printing}. Zadanie nie może odwoływać się do stanu
+     * symulacji, który zmieni się w kolejnych turach.
+     *
+     * @throws IllegalStateException jeśli wypisywanie wcześniej przekazanych danych zakończyło się wyjątkiem
+     */
+    void print(Runnable printing) {
+        if (this.queue == null) {
+            printing.run();
+            return;
+        }
+        checkFailure();
+        try {
+            this.queue.put(printing);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void print(String line) {
+        print(() -> System.out.println(line));
+    }
+
+    private void printAll() {
+        try {
+            for (Runnable printing = this.queue.take(); printing != END; printing = this.queue.take()) {
+                if (this.failure != null)
+                    continue;
+                try {
+                    printing.run();
+                }
+                catch (RuntimeException | Error e) {
+                    // Kolejka jest dalej opróżniana, aby wątek symulacji nie czekał na miejsce w buforze.
+                    this.failure = e;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Czeka na wypisanie wszystkich przekazanych danych.
+     *
+     * @throws IllegalStateException jeśli wypisywanie zakończyło się wyjątkiem
+     */
+    @Override
+    public void close() {
+        if (this.printer == null)
+            return;
+        try {
+            this.queue.put(END);
+            this.printer.join();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        checkFailure();
+    }
+
+    private void checkFailure() {
+        if (this.failure != null)
+            throw new IllegalStateException("Wypisywanie danych zakończyło się błędem.", this.failure);
+    }
+}
@@ -0,0 +1,237 @@
+package project.simulation;
+
+import project.simulation.rob.Rob;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Zbiorcze statystyki jednej tury: liczba pól z jedzeniem, liczba robów oraz minimum, suma i maksimum długości
+ * programu, energii i wieku robów.
+ * <p>Statystyki kilku rozłącznych populacji (np. wysp) można połączyć funkcją {@link #merge}.</p>
+ * <p>Statystyki przybliżone ({@link StatisticsSampler}) mają dodatkowo promienie 95-procentowych przedziałów ufności
+ * sum, a z nich średnich.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class RoundStatistics {
+    private final int roundNumber;
+    private int foodSquaresNumber;
+    private int robsNumber;
+
+    private int minProgramLength = Integer.MAX_VALUE;
+    private long programLengthSum;
+    private int maxProgramLength;
+
+    private int minEnergy = Integer.MAX_VALUE;
+    private long energySum;
+    private int maxEnergy;
+
+    private int minAge = Integer.MAX_VALUE;
+    private long ageSum;
+    private int maxAge;
+
+    private double programLengthSumMargin;
+    private double energySumMargin;
+    private double ageSumMargin;
+
+    public RoundStatistics(int roundNumber, int foodSquaresNumber) {
+        this.roundNumber = roundNumber;
+        this.foodSquaresNumber = foodSquaresNumber;
+    }
+
+    /**
+     * Uwzględnia roba w statystykach.
+     */
+    public void add(Rob rob) {
+        add(rob.getProgramLength(), rob.getEnergyLevel(), rob.getAge());
+    }
+
+    /**
+     * Uwzględnia w statystykach roba o podanych wartościach.
+     */
+    public void add(int programLength, int energy, int age) {
+        this.robsNumber++;
+        this.minProgramLength = Math.min(this.minProgramLength, programLength);
+        this.programLengthSum += programLength;
+        this.maxProgramLength = Math.max(this.maxProgramLength, programLength);
+        this.minEnergy = Math.min(this.minEnergy, energy);
+        this.energySum += energy;
+        this.maxEnergy = Math.max(this.maxEnergy, energy);
+        this.minAge = Math.min(this.minAge, age);
+        this.ageSum += age;
+        this.maxAge = Math.max(this.maxAge, age);
+    }
+
+    /**
+     * Dołącza statystyki innej populacji z tej samej tury.
+     */
+    public void merge(RoundStatistics other) {
+        this.foodSquaresNumber += other.foodSquaresNumber;
+        this.robsNumber += other.robsNumber;
+        this.minProgramLength = Math.min(this.minProgramLength, other.minProgramLength);
+        this.programLengthSum += other.programLengthSum;
+        this.maxProgramLength = Math.max(this.maxProgramLength, other.maxProgramLength);
+        this.minEnergy = Math.min(this.minEnergy, other.minEnergy);
+        this.energySum += other.energySum;
+        this.maxEnergy = Math.max(this.maxEnergy, other.maxEnergy);
+        this.minAge = Math.min(this.minAge, other.minAge);
+        this.ageSum += other.ageSum;
+        this.maxAge = Math.max(this.maxAge, other.maxAge);
+        // Błędy niezależnych oszacowań sum dodają się jak odchylenia standardowe.
+        this.programLengthSumMargin = Math.hypot(this.programLengthSumMargin, other.programLengthSumMargin);
+        this.energySumMargin = Math.hypot(this.energySumMargin, other.energySumMargin);
+        this.ageSumMargin = Math.hypot(this.ageSumMargin, other.ageSumMargin);
+    }
+
+    /**
+     * Liczba bajtów zajmowana przez zapis statystyk funkcją {@link #write}.
+     */
+    static final int BYTES = 9 * Integer.BYTES + 3 * Long.BYTES + 3 * Double.BYTES;
+
+    /**
+     * Zapisuje statystyki w postaci binarnej.
+     */
+    void write(ByteBuffer buffer) {
+        buffer.putInt(this.roundNumber).putInt(this.foodSquaresNumber).putInt(this.robsNumber);
+        buffer.putInt(this.minProgramLength).putLong(this.programLengthSum).putInt(this.maxProgramLength);
+        buffer.putInt(this.minEnergy).putLong(this.energySum).putInt(this.maxEnergy);
+        buffer.putInt(this.minAge).putLong(this.ageSum).putInt(this.maxAge);
+        buffer.putDouble(this.programLengthSumMargin).putDouble(this.energySumMargin).putDouble(this.ageSumMargin);
+    }
+
+    /**
+     * Odczytuje statystyki zapisane funkcją {@link #write}.
+     */
+    static RoundStatistics read(ByteBuffer buffer) {
+        RoundStatistics statistics = new RoundStatistics(buffer.getInt(), buffer.getInt());
+        statistics.robsNumber = buffer.getInt();
+        statistics.minProgramLength = buffer.getInt();
+        statistics.programLengthSum = buffer.getLong();
+        statistics.maxProgramLength = buffer.getInt();
+        statistics.minEnergy = buffer.getInt();
+        statistics.energySum = buffer.getLong();
+        statistics.maxEnergy = buffer.getInt();
+        statistics.minAge = buffer.getInt();
+        statistics.ageSum = buffer.getLong();
+        statistics.maxAge = buffer.getInt();
+        statistics.programLengthSumMargin = buffer.getDouble();
+        statistics.energySumMargin = buffer.getDouble();
+        statistics.ageSumMargin = buffer.getDouble();
+        return statistics;
+    }
+
+    /**
+     * Ustawia statystyki niepustej populacji złożonej z {@code robsNumber} robów.
+     */
+    void setPopulation(int robsNumber, int minProgramLength, long programLengthSum, int maxProgramLength,
+                       int minEnergy, long energySum, int maxEnergy, int minAge, long ageSum, int maxAge) {
+        this.robsNumber = robsNumber;
+        this.minProgramLength = minProgramLength;
+        this.programLengthSum = programLengthSum;
+        this.maxProgramLength = maxProgramLength;
+        this.minEnergy = minEnergy;
+        this.energySum = energySum;
+        this.maxEnergy = maxEnergy;
+        this.minAge = minAge;
+        this.ageSum = ageSum;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Ustawia promienie przedziałów ufności sum długości programu, energii i wieku oszacowanych na podstawie próbki.
+     */
+    void setMargins(double programLengthSumMargin, double energySumMargin, double ageSumMargin) {
+        this.programLengthSumMargin = programLengthSumMargin;
+        this.energySumMargin = energySumMargin;
+        this.ageSumMargin = ageSumMargin;
+    }
+
+    /**
+     * Ustawia liczbę pól z jedzeniem, np. po połączeniu statystyk populacji żyjących na kopiach tej samej planszy.
+     */
+    void setFoodSquaresNumber(int foodSquaresNumber) {
+        this.foodSquaresNumber = foodSquaresNumber;
+    }
+
+    public int roundNumber() {
+        return this.roundNumber;
+    }
+
+    public int foodSquaresNumber() {
+        return this.foodSquaresNumber;
+    }
+
+    public int robsNumber() {
+        return this.robsNumber;
+    }
+
+    public int minProgramLength() {
+        return this.minProgramLength;
+    }
+
+    public double meanProgramLength() {
+        return (double) this.programLengthSum / this.robsNumber;
+    }
+
+    public long programLengthSum() {
+        return this.programLengthSum;
+    }
+
+    public int maxProgramLength() {
+        return this.maxProgramLength;
+    }
+
+    public int minEnergy() {
+        return this.minEnergy;
+    }
+
+    public double meanEnergy() {
+        return (double) this.energySum / this.robsNumber;
+    }
+
+    public long energySum() {
+        return this.energySum;
+    }
+
+    public int maxEnergy() {
+        return this.maxEnergy;
+    }
+
+    public int minAge() {
+        return this.minAge;
+    }
+
+    public double meanAge() {
+        return (double) this.ageSum / this.robsNumber;
+    }
+
+    public long ageSum() {
+        return this.ageSum;
+    }
+
+    public int maxAge() {
+        return this.maxAge;
+    }
+
+    /**
+     * Sprawdza, czy statystyki zostały oszacowane na podstawie próbki.
+     */
+    public boolean isApproximate() {
+        return this.programLengthSumMargin > 0 || this.energySumMargin > 0 || this.ageSumMargin > 0;
+    }
+
+    /**
+     * Promień 95-procentowego przedziału ufności średniej długości programu, 0 dla statystyk dokładnych.
+     */
+    public double programLengthMargin() {
+        return this.programLengthSumMargin / this.robsNumber;
+    }
+
+    public double energyMargin() {
+        return this.energySumMargin / this.robsNumber;
+    }
+
+    public double ageMargin() {
+        return this.ageSumMargin / this.robsNumber;
+    }
+}
@@ -0,0 +1,115 @@
+package project.simulation;
+
+import project.parameters.Configuration;
+import project.simulation.universe.Board;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Symulacja do osadzania w innych programach, prowadzona krokami zamiast w całości.
+ * <p>W przeciwieństwie do {@link ActualSimulation#runSimulation()} nic nie jest wypisywane. Statystyki kolejnych tur
+ * są zbierane tylko wtedy, gdy zarejestrowano słuchacza ({@link RoundListener}), i przekazywane mu paczkami
+ * ({@link RoundBatch}) w postaci liczb, po zakończeniu każdego wywołania {@link #step} lub po zapełnieniu paczki.
+ * Konfigurację i planszę można utworzyć bez plików, np. konstruktorem {@link Configuration#Configuration(String)}
+ * i funkcją {@link Board#createBoard(String, Configuration)}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class SimulationEngine {
+    private static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final ActualSimulation simulation;
+    private final Board board;
+    private final List<RoundListener> listeners;
+    private final RoundBatch batch;
+    private boolean extinct;
+
+    public SimulationEngine(Configuration configuration, Board board) {
+        this(configuration, board, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Tworzy symulację, która przekazuje słuchaczom statystyki najwyżej {@code batchSize} tur naraz.
+     */
+    public SimulationEngine(Configuration configuration, Board board, int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("Rozmiar paczki musi być dodatni.");
+        this.simulation = new ActualSimulation(configuration, board);
+        this.board = board;
+        this.listeners = new ArrayList<>();
+        this.batch = new RoundBatch(batchSize);
+        this.extinct = false;
+    }
+
+    public void addListener(RoundListener listener) {
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(RoundListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Przeprowadza {@code rounds} kolejnych tur, lub mniej, jeśli wcześniej wyginą wszystkie roby.
+     *
+     * @return liczba przeprowadzonych tur
+     */
+    public int step(int rounds) {
+        int simulated = 0;
+        boolean collecting = !this.listeners.isEmpty();
+        while (simulated < rounds && !this.extinct) {
+            this.extinct = !this.simulation.simulateRound();
+            simulated++;
+            if (collecting) {
+                this.batch.collect(this.simulation.roundNumber(), this.board.foodSquaresNumber(),
+                        this.simulation.robs());
+                if (this.batch.isFull())
+                    notifyListeners();
+            }
+        }
+        if (collecting && this.batch.size() > 0)
+            notifyListeners();
+        return simulated;
+    }
+
+    private void notifyListeners() {
+        for (RoundListener listener : this.listeners) {
+            listener.roundsCompleted(this.batch);
+        }
+        this.batch.clear();
+    }
+
+    /**
+     * Numer ostatniej przeprowadzonej tury.
+     */
+    public int roundNumber() {
+        return this.simulation.roundNumber();
+    }
+
+    public int robsNumber() {
+        return this.simulation.robs().size();
+    }
+
+    /**
+     * Tworzy opis stanu wszystkich robów w takiej postaci, w jakiej wypisuje go symulacja.
+     */
+    public String describeState() {
+        return PopulationSnapshot.of(this.simulation.robs()).text();
+    }
+
+    /**
+     * Tworzy widok stanu symulacji dla wątków monitorujących ({@link ActualSimulation#startLiveView}). Metodę należy
+     * wywołać w wątku, który wywołuje {@link #step}, między jego wywołaniami.
+     */
+    public LiveView startLiveView(int histogramBinWidth, int histogramBins) {
+        return this.simulation.startLiveView(histogramBinWidth, histogramBins);
+    }
+
+    /**
+     * Sprawdza, czy wszystkie roby wyginęły. Wtedy kolejne wywołania {@link #step} nie przeprowadzają tur.
+     */
+    public boolean isExtinct() {
+        return this.extinct;
+    }
+}
@@ -0,0 +1,105 @@
+package project.simulation;
+
+import project.simulation.rob.Rob;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Przybliżone statystyki populacji liczone na podstawie losowej próbki robów o stałej wielkości.
+ * <p>Średnie są szacowane ze średnich w próbce losowanej ze zwracaniem, razem z promieniami 95-procentowych
+ * przedziałów ufności. Minima i maksima pochodzą z ostatnich dokładnych statystyk, poszerzonych o skrajne wartości
+ * z próbki. Dokładne statystyki są liczone co {@code co_ile_dokładne_statystyki} tur, a także wtedy, gdy populacja
+ * nie jest większa od próbki.</p>
+ * <p>Próbka jest losowana własnym generatorem, a nie generatorem symulacji, więc włączenie przybliżonych statystyk
+ * nie zmienia przebiegu symulacji o ustalonym ziarnie.</p>
+ *
+ * @author Katarzyna Mielnik
+ * @see Data#collectStatistics(int, boolean)
+ */
+class StatisticsSampler {
+    /**
+     * Kwantyl rozkładu normalnego dla 95-procentowego przedziału ufności.
+     */
+    private static final double Z = 1.96;
+
+    private final int sampleSize;
+    private final int exactFrequence;
+    private final SplittableRandom random;
+    private RoundStatistics lastExact;
+
+    StatisticsSampler(int sampleSize, int exactFrequence, SplittableRandom random) {
+        this.sampleSize = sampleSize;
+        this.exactFrequence = exactFrequence;
+        this.random = random;
+    }
+
+    /**
+     * Sprawdza, czy statystyki tury {@code roundNumber} populacji złożonej z {@code populationSize} robów należy
+     * policzyć dokładnie.
+     */
+    boolean needsExact(int roundNumber, int populationSize) {
+        return populationSize <= this.sampleSize || this.lastExact == null ||
+                (this.exactFrequence > 0 && roundNumber - this.lastExact.roundNumber() >= this.exactFrequence);
+    }
+
+    /**
+     * Zapamiętuje dokładne statystyki, z których pochodzą minima i maksima kolejnych statystyk przybliżonych.
+     */
+    void exactCollected(RoundStatistics statistics) {
+        this.lastExact = statistics;
+    }
+
+    /**
+     * Szacuje statystyki tury {@code roundNumber} na podstawie próbki populacji {@code robs}.
+     */
+    RoundStatistics sample(int roundNumber, int foodSquaresNumber, List<Rob> robs) {
+        int populationSize = robs.size();
+        int minProgramLength = this.lastExact.minProgramLength(), maxProgramLength = this.lastExact.maxProgramLength();
+        int minEnergy = this.lastExact.minEnergy(), maxEnergy = this.lastExact.maxEnergy();
+        int minAge = this.lastExact.minAge(), maxAge = this.lastExact.maxAge();
+        double programLengthSum = 0, energySum = 0, ageSum = 0;
+        double programLengthSquares = 0, energySquares = 0, ageSquares = 0;
+        for (int i = 0; i < this.sampleSize; i++) {
+            Rob rob = robs.get(this.random.nextInt(populationSize));
+            int programLength = rob.getProgramLength(), energy = rob.getEnergyLevel(), age = rob.getAge();
+            minProgramLength = Math.min(minProgramLength, programLength);
+            maxProgramLength = Math.max(maxProgramLength, programLength);
+            minEnergy = Math.min(minEnergy, energy);
+            maxEnergy = Math.max(maxEnergy, energy);
+            minAge = Math.min(minAge, age);
+            maxAge = Math.max(maxAge, age);
+            programLengthSum += programLength;
+            programLengthSquares += (double) programLength * programLength;
+            energySum += energy;
+            energySquares += (double) energy * energy;
+            ageSum += age;
+            ageSquares += (double) age * age;
+        }
+
+        RoundStatistics statistics = new RoundStatistics(roundNumber, foodSquaresNumber);
+        statistics.setPopulation(populationSize,
+                minProgramLength, estimateSum(programLengthSum, populationSize), maxProgramLength,
+                minEnergy, estimateSum(energySum, populationSize), maxEnergy,
+                minAge, estimateSum(ageSum, populationSize), maxAge);
+        statistics.setMargins(
+                populationSize * meanMargin(programLengthSum, programLengthSquares),
+                populationSize * meanMargin(energySum, energySquares),
+                populationSize * meanMargin(ageSum, ageSquares));
+        return statistics;
+    }
+
+    private long estimateSum(double sampleSum, int populationSize) {
+        return Math.round(sampleSum / this.sampleSize * populationSize);
+    }
+
+    /**
+     * Promień przedziału ufności średniej na podstawie sumy wartości i sumy ich kwadratów w próbce.
+     */
+    private double meanMargin(double sum, double squares) {
+        int n = this.sampleSize;
+        double mean = sum / n;
+        double variance = Math.max(0, (squares - n * mean * mean) / (n - 1));
+        return Z * Math.sqrt(variance / n);
+    }
+}
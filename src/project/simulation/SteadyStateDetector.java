@@ -0,0 +1,108 @@
+package project.simulation;
+
+/**
+ * Wykrywa stan równowagi symulacji na podstawie statystyk kolejnych tur.
+ * <p>Dla liczby robów, liczby pól z jedzeniem i średniej energii robów przechowywane są wartości z ostatnich
+ * {@code 2 * window} tur, podzielone na dwa sąsiednie okna. Symulacja jest w równowadze, gdy dla każdej z tych
+ * wielkości średnie oraz odchylenia standardowe w obu oknach różnią się najwyżej o {@code threshold} średniej
+ * w starszym oknie (lub o {@code threshold}, jeśli średnia jest mniejsza od 1). Za początek równowagi przyjmuje się
+ * pierwszą turę starszego okna. Sumy w oknach są aktualizowane co turę, więc koszt nie zależy od rozmiaru okna.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+class SteadyStateDetector {
+    private final int window;
+    private final double threshold;
+    private final Window robs;
+    private final Window food;
+    private final Window energy;
+    private int firstRound;
+    private int rounds;
+
+    SteadyStateDetector(int window, double threshold) {
+        this.window = window;
+        this.threshold = threshold;
+        this.robs = new Window(window);
+        this.food = new Window(window);
+        this.energy = new Window(window);
+    }
+
+    /**
+     * Uwzględnia statystyki kolejnej tury.
+     *
+     * @return prawda, wtedy i tylko wtedy, gdy symulacja jest w stanie równowagi
+     */
+    boolean add(RoundStatistics statistics) {
+        if (this.rounds == 0)
+            this.firstRound = statistics.roundNumber();
+        this.rounds++;
+        this.robs.add(statistics.robsNumber());
+        this.food.add(statistics.foodSquaresNumber());
+        this.energy.add(statistics.robsNumber() == 0 ? 0 : statistics.meanEnergy());
+        return this.rounds >= 2 * this.window && this.robs.isStable(this.threshold) &&
+                this.food.isStable(this.threshold) && this.energy.isStable(this.threshold);
+    }
+
+    /**
+     * Numer pierwszej tury stanu równowagi, jeśli ostatnie wywołanie {@link #add} go wykryło.
+     */
+    int equilibriumStart() {
+        return this.firstRound + this.rounds - 2 * this.window;
+    }
+
+    /**
+     * Wartości jednej wielkości z ostatnich {@code 2 * size} tur w buforze cyklicznym. Starsze okno to wartości
+     * od {@code next} (najstarsza), nowsze od {@code next + size}.
+     */
+    private static class Window {
+        private final int size;
+        private final double[] values;
+        private int next;
+        private double olderSum;
+        private double olderSquares;
+        private double newerSum;
+        private double newerSquares;
+
+        Window(int size) {
+            this.size = size;
+            this.values = new double[2 * size];
+        }
+
+        void add(double value) {
+            double leaving = this.values[this.next];
+            double crossing = this.values[(this.next + this.size) % this.values.length];
+            this.olderSum += crossing - leaving;
+            this.olderSquares += crossing * crossing - leaving * leaving;
+            this.newerSum += value - crossing;
+            this.newerSquares += value * value - crossing * crossing;
+            this.values[this.next] = value;
+            this.next = (this.next + 1) % this.values.length;
+            // Po każdym pełnym obiegu bufora sumy są liczone od nowa, aby nie kumulować błędów zaokrągleń.
+            if (this.next == 0)
+                recalculate();
+        }
+
+        private void recalculate() {
+            this.olderSum = this.olderSquares = this.newerSum = this.newerSquares = 0;
+            for (int i = 0; i < this.size; i++) {
+                double older = this.values[i], newer = this.values[i + this.size];
+                this.olderSum += older;
+                this.olderSquares += older * older;
+                this.newerSum += newer;
+                this.newerSquares += newer * newer;
+            }
+        }
+
+        boolean isStable(double threshold) {
+            double olderMean = this.olderSum / this.size;
+            double newerMean = this.newerSum / this.size;
+            double tolerance = threshold * Math.max(1, Math.abs(olderMean));
+            double deviationChange = deviation(this.newerSquares, newerMean) - deviation(this.olderSquares, olderMean);
+            return Math.abs(newerMean - olderMean) <= tolerance && Math.abs(deviationChange) <= tolerance;
+        }
+
+        private double deviation(double squares, double mean) {
+            return Math.sqrt(Math.max(0, squares / this.size - mean * mean));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package project.simulation.export;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stałe i kodowanie liczb wspólne dla {@link StatisticsExporter} i {@link StatisticsExportReader}.
+ * <p>Plik zaczyna się nagłówkiem: {@link #MAGIC}, {@link #VERSION}, liczba kolumn, szerokość i liczba przedziałów
+ * histogramu energii (liczby {@code int}). Dalej następują bloki skompresowane algorytmem Deflate. Blok zawiera
+ * kolejno wszystkie kolumny dla najwyżej {@link #BLOCK_ROUNDS} tur, a każda kolumna to różnice kolejnych wartości
+ * w kodowaniu zigzag i postaci zmiennej długości. Plik kończy się spisem bloków (liczba bloków, a dla każdego
+ * pierwsza tura, liczba tur, położenie w pliku, długość po kompresji i przed kompresją), położeniem spisu
+ * i ponownie {@link #MAGIC}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+final class ExportFormat {
+    static final int MAGIC = 0x52535441;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 5 * Integer.BYTES;
+    static final int BLOCK_INDEX_BYTES = 2 * Integer.BYTES + Long.BYTES + 2 * Integer.BYTES;
+    static final int FOOTER_TAIL_BYTES = Long.BYTES + Integer.BYTES;
+    static final int BLOCK_ROUNDS = 4096;
+
+    /**
+     * Największa liczba bajtów zajmowana przez liczbę {@code long} w postaci zmiennej długości.
+     */
+    static final int MAX_VARLONG_BYTES = 10;
+
+    private ExportFormat() {
+    }
+
+    static void putSignedVarlong(ByteBuffer buffer, long value) {
+        value = (value << 1) ^ (value >> 63);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static long getSignedVarlong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return (value >>> 1) ^ -(value & 1);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package project.simulation.export;
+
+import project.simulation.RoundStatistics;
+
+/**
+ * Kolumny eksportu statystyk tur ({@link StatisticsExporter}). Średnie nie są zapisywane, bo wynikają z sum
+ * i liczby robów, a sumy kodują się dokładnie i zwięźle.
+ *
+ * @author Katarzyna Mielnik
+ */
+public enum StatisticsColumn {
+    ROUND,
+    FOOD_SQUARES,
+    ROBS,
+    MIN_PROGRAM_LENGTH,
+    PROGRAM_LENGTH_SUM,
+    MAX_PROGRAM_LENGTH,
+    MIN_ENERGY,
+    ENERGY_SUM,
+    MAX_ENERGY,
+    MIN_AGE,
+    AGE_SUM,
+    MAX_AGE;
+
+    /**
+     * Wartość kolumny w statystykach {@code statistics}.
+     */
+    long valueOf(RoundStatistics statistics) {
+        switch (this) {
+            case ROUND:
+                return statistics.roundNumber();
+            case FOOD_SQUARES:
+                return statistics.foodSquaresNumber();
+            case ROBS:
+                return statistics.robsNumber();
+            case MIN_PROGRAM_LENGTH:
+                return statistics.minProgramLength();
+            case PROGRAM_LENGTH_SUM:
+                return statistics.programLengthSum();
+            case MAX_PROGRAM_LENGTH:
+                return statistics.maxProgramLength();
+            case MIN_ENERGY:
+                return statistics.minEnergy();
+            case ENERGY_SUM:
+                return statistics.energySum();
+            case MAX_ENERGY:
+                return statistics.maxEnergy();
+            case MIN_AGE:
+                return statistics.minAge();
+            case AGE_SUM:
+                return statistics.ageSum();
+            default:
+                return statistics.maxAge();
+        }
+    }
+}
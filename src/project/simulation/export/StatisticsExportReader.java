@@ -0,0 +1,199 @@
+package project.simulation.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Odczytuje statystyki tur zapisane przez {@link StatisticsExporter}.
+ * <p>Kolumny odczytuje się w całości lub dla przedziału tur; dzięki spisowi bloków rozpakowywane są tylko bloki
+ * zawierające żądane tury.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class StatisticsExportReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final int columnsNumber;
+    private final int histogramBinWidth;
+    private final int histogramBins;
+    private final int[] blockFirstRounds;
+    private final int[] blockRows;
+    private final long[] blockOffsets;
+    private final int[] blockCompressedLengths;
+    private final int[] blockLengths;
+    private final Inflater inflater;
+
+    // Ostatnio rozpakowany blok.
+    private int cachedBlock = -1;
+    private final long[][] cachedColumns;
+
+    /**
+     * Otwiera plik {@code file} z eksportem statystyk.
+     *
+     * @throws IOException nie udało się odczytać pliku lub plik nie jest eksportem statystyk
+     */
+    public StatisticsExportReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = this.channel.size();
+        ByteBuffer header = read(0, ExportFormat.HEADER_BYTES);
+        ByteBuffer tail = read(size - ExportFormat.FOOTER_TAIL_BYTES, ExportFormat.FOOTER_TAIL_BYTES);
+        if (header.getInt() != ExportFormat.MAGIC || tail.getInt(Long.BYTES) != ExportFormat.MAGIC)
+            throw new IOException("Niepoprawny plik ze statystykami.");
+        if (header.getInt() != ExportFormat.VERSION)
+            throw new IOException("Nieobsługiwana wersja pliku ze statystykami.");
+        this.columnsNumber = header.getInt();
+        this.histogramBinWidth = header.getInt();
+        this.histogramBins = header.getInt();
+
+        long footer = tail.getLong();
+        ByteBuffer index = read(footer, (int) (size - ExportFormat.FOOTER_TAIL_BYTES - footer));
+        int blocksNumber = index.getInt();
+        this.blockFirstRounds = new int[blocksNumber];
+        this.blockRows = new int[blocksNumber];
+        this.blockOffsets = new long[blocksNumber];
+        this.blockCompressedLengths = new int[blocksNumber];
+        this.blockLengths = new int[blocksNumber];
+        for (int i = 0; i < blocksNumber; i++) {
+            this.blockFirstRounds[i] = index.getInt();
+            this.blockRows[i] = index.getInt();
+            this.blockOffsets[i] = index.getLong();
+            this.blockCompressedLengths[i] = index.getInt();
+            this.blockLengths[i] = index.getInt();
+        }
+        this.inflater = new Inflater();
+        this.cachedColumns = new long[this.columnsNumber][ExportFormat.BLOCK_ROUNDS];
+    }
+
+    /**
+     * Liczba zapisanych tur.
+     */
+    public int roundsNumber() {
+        int rounds = 0;
+        for (int rows : this.blockRows) {
+            rounds += rows;
+        }
+        return rounds;
+    }
+
+    public int histogramBinWidth() {
+        return this.histogramBinWidth;
+    }
+
+    public int histogramBins() {
+        return this.histogramBins;
+    }
+
+    /**
+     * Odczytuje wszystkie wartości kolumny {@code column}.
+     *
+     * @throws IOException błąd odczytu pliku
+     */
+    public long[] column(StatisticsColumn column) throws IOException {
+        return column(column.ordinal(), 0, roundsNumber());
+    }
+
+    /**
+     * Odczytuje liczby robów w przedziale {@code bin} histogramu energii we wszystkich turach.
+     *
+     * @throws IOException błąd odczytu pliku
+     */
+    public long[] histogram(int bin) throws IOException {
+        if (bin < 0 || bin >= this.histogramBins)
+            throw new IllegalArgumentException("Brak przedziału histogramu " + bin + ".");
+        return column(StatisticsColumn.values().length + bin, 0, roundsNumber());
+    }
+
+    /**
+     * Odczytuje średnie wielkości, której sumy zawiera kolumna {@code sumColumn}, we wszystkich turach.
+     * W turach bez robów średnia wynosi {@code NaN}.
+     *
+     * @throws IOException błąd odczytu pliku
+     */
+    public double[] mean(StatisticsColumn sumColumn) throws IOException {
+        long[] sums = column(sumColumn);
+        long[] robs = column(StatisticsColumn.ROBS);
+        double[] means = new double[sums.length];
+        for (int i = 0; i < means.length; i++) {
+            means[i] = (double) sums[i] / robs[i];
+        }
+        return means;
+    }
+
+    /**
+     * Odczytuje wartości kolumny o numerze {@code column} z zapisanych tur o numerach kolejnych od {@code from}
+     * (włącznie) do {@code to} (wyłącznie), licząc od zera.
+     *
+     * @throws IOException błąd odczytu pliku
+     */
+    public long[] column(int column, int from, int to) throws IOException {
+        long[] values = new long[to - from];
+        int blockStart = 0;
+        for (int block = 0; block < this.blockRows.length && blockStart < to; block++) {
+            int blockEnd = blockStart + this.blockRows[block];
+            if (blockEnd > from) {
+                long[] decoded = decodeBlock(block)[column];
+                int first = Math.max(from, blockStart), last = Math.min(to, blockEnd);
+                System.arraycopy(decoded, first - blockStart, values, first - from, last - first);
+            }
+            blockStart = blockEnd;
+        }
+        return values;
+    }
+
+    private long[][] decodeBlock(int block) throws IOException {
+        if (block == this.cachedBlock)
+            return this.cachedColumns;
+
+        ByteBuffer compressed = read(this.blockOffsets[block], this.blockCompressedLengths[block]);
+        byte[] encoded = new byte[this.blockLengths[block]];
+        this.inflater.reset();
+        this.inflater.setInput(compressed.array());
+        try {
+            int length = 0;
+            while (length < encoded.length && !this.inflater.finished()) {
+                int inflated = this.inflater.inflate(encoded, length, encoded.length - length);
+                // Bez postępu przy wyczerpanych danych blok jest ucięty.
+                if (inflated == 0 && (this.inflater.needsInput() || this.inflater.needsDictionary()))
+                    break;
+                length += inflated;
+            }
+            if (length < encoded.length)
+                throw new IOException("Uszkodzony blok pliku ze statystykami.");
+        }
+        catch (DataFormatException e) {
+            throw new IOException("Uszkodzony blok pliku ze statystykami.", e);
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(encoded);
+        int rows = this.blockRows[block];
+        for (long[] column : this.cachedColumns) {
+            long last = 0;
+            for (int i = 0; i < rows; i++) {
+                last += ExportFormat.getSignedVarlong(buffer);
+                column[i] = last;
+            }
+        }
+        this.cachedBlock = block;
+        return this.cachedColumns;
+    }
+
+    private ByteBuffer read(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (this.channel.read(buffer, position + buffer.position()) < 0)
+                throw new IOException("Niepoprawny plik ze statystykami.");
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.inflater.end();
+        this.channel.close();
+    }
+}
@@ -0,0 +1,166 @@
+package project.simulation.export;
+
+import project.simulation.RoundStatistics;
+import project.simulation.rob.Rob;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Zapisuje statystyki kolejnych tur do pliku binarnego, po jednej kolumnie na każdą wielkość
+ * ({@link StatisticsColumn}), do odczytu przez {@link StatisticsExportReader}.
+ * <p>Wiersze są gromadzone w pamięci i zapisywane blokami po {@link ExportFormat#BLOCK_ROUNDS} tur, skompresowanymi
+ * po zakodowaniu różnic kolejnych wartości, więc zapis tury nie wymaga formatowania tekstu. Opcjonalnie zapisywany
+ * jest też histogram energii robów w postaci dodatkowych kolumn z liczbą robów w kolejnych przedziałach energii;
+ * ostatni przedział obejmuje również wszystkie większe wartości, a pierwszy wszystkie mniejsze od zera.
+ * Format pliku opisuje {@link ExportFormat}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class StatisticsExporter implements AutoCloseable {
+    private static final StatisticsColumn[] COLUMNS = StatisticsColumn.values();
+
+    private final FileChannel channel;
+    private final int histogramBinWidth;
+    private final int histogramBins;
+    private final long[][] columns;
+    private int rows;
+
+    private final Deflater deflater;
+    private ByteBuffer encoded;
+    private byte[] compressed;
+
+    private int[] blockFirstRounds = new int[16];
+    private int[] blockRows = new int[16];
+    private long[] blockOffsets = new long[16];
+    private int[] blockCompressedLengths = new int[16];
+    private int[] blockLengths = new int[16];
+    private int blocksNumber;
+
+    /**
+     * Tworzy plik {@code file} z eksportem statystyk.
+     *
+     * @param histogramBinWidth szerokość przedziału histogramu energii, 0 oznacza brak histogramu
+     * @param histogramBins     liczba przedziałów histogramu energii
+     * @throws IOException nie udało się utworzyć pliku
+     */
+    public StatisticsExporter(Path file, int histogramBinWidth, int histogramBins) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.histogramBinWidth = histogramBinWidth;
+        this.histogramBins = histogramBinWidth > 0 ? histogramBins : 0;
+        this.columns = new long[COLUMNS.length + this.histogramBins][ExportFormat.BLOCK_ROUNDS];
+        this.deflater = new Deflater();
+        this.encoded = ByteBuffer.allocate(this.columns.length * ExportFormat.BLOCK_ROUNDS * 2);
+        this.compressed = new byte[this.encoded.capacity()];
+
+        ByteBuffer header = ByteBuffer.allocate(ExportFormat.HEADER_BYTES);
+        header.putInt(ExportFormat.MAGIC).putInt(ExportFormat.VERSION).putInt(this.columns.length)
+                .putInt(this.histogramBinWidth).putInt(this.histogramBins);
+        write(header.flip());
+    }
+
+    /**
+     * Sprawdza, czy do zapisu tury potrzebne są roby (do histogramu energii).
+     */
+    public boolean needsRobs() {
+        return this.histogramBins > 0;
+    }
+
+    /**
+     * Zapisuje statystyki tury. Roby {@code robs} są potrzebne tylko wtedy, gdy zapisywany jest histogram.
+     *
+     * @throws IOException błąd zapisu pliku
+     */
+    public void write(RoundStatistics statistics, List<Rob> robs) throws IOException {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            this.columns[i][this.rows] = COLUMNS[i].valueOf(statistics);
+        }
+        if (this.histogramBins > 0) {
+            for (int i = 0; i < this.histogramBins; i++) {
+                this.columns[COLUMNS.length + i][this.rows] = 0;
+            }
+            for (int i = 0; i < robs.size(); i++) {
+                int bin = Math.max(0, Math.min(this.histogramBins - 1,
+                        robs.get(i).getEnergyLevel() / this.histogramBinWidth));
+                this.columns[COLUMNS.length + bin][this.rows]++;
+            }
+        }
+        if (++this.rows == ExportFormat.BLOCK_ROUNDS)
+            writeBlock();
+    }
+
+    private void writeBlock() throws IOException {
+        this.encoded.clear();
+        for (long[] column : this.columns) {
+            long last = 0;
+            for (int i = 0; i < this.rows; i++) {
+                if (this.encoded.remaining() < ExportFormat.MAX_VARLONG_BYTES)
+                    this.encoded = ByteBuffer.allocate(2 * this.encoded.capacity()).put(this.encoded.flip());
+                ExportFormat.putSignedVarlong(this.encoded, column[i] - last);
+                last = column[i];
+            }
+        }
+
+        this.deflater.reset();
+        this.deflater.setInput(this.encoded.array(), 0, this.encoded.position());
+        this.deflater.finish();
+        int length = 0;
+        while (!this.deflater.finished()) {
+            if (length == this.compressed.length)
+                this.compressed = Arrays.copyOf(this.compressed, 2 * this.compressed.length);
+            length += this.deflater.deflate(this.compressed, length, this.compressed.length - length);
+        }
+
+        if (this.blocksNumber == this.blockOffsets.length) {
+            int capacity = 2 * this.blocksNumber;
+            this.blockFirstRounds = Arrays.copyOf(this.blockFirstRounds, capacity);
+            this.blockRows = Arrays.copyOf(this.blockRows, capacity);
+            this.blockOffsets = Arrays.copyOf(this.blockOffsets, capacity);
+            this.blockCompressedLengths = Arrays.copyOf(this.blockCompressedLengths, capacity);
+            this.blockLengths = Arrays.copyOf(this.blockLengths, capacity);
+        }
+        this.blockFirstRounds[this.blocksNumber] = (int) this.columns[StatisticsColumn.ROUND.ordinal()][0];
+        this.blockRows[this.blocksNumber] = this.rows;
+        this.blockOffsets[this.blocksNumber] = this.channel.position();
+        this.blockCompressedLengths[this.blocksNumber] = length;
+        this.blockLengths[this.blocksNumber] = this.encoded.position();
+        this.blocksNumber++;
+
+        write(ByteBuffer.wrap(this.compressed, 0, length));
+        this.rows = 0;
+    }
+
+    /**
+     * Zapisuje niepełny ostatni blok oraz spis bloków i zamyka plik.
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.rows > 0)
+            writeBlock();
+        long footer = this.channel.position();
+        ByteBuffer index = ByteBuffer.allocate(Integer.BYTES + this.blocksNumber * ExportFormat.BLOCK_INDEX_BYTES +
+                ExportFormat.FOOTER_TAIL_BYTES);
+        index.putInt(this.blocksNumber);
+        for (int i = 0; i < this.blocksNumber; i++) {
+            index.putInt(this.blockFirstRounds[i]).putInt(this.blockRows[i]).putLong(this.blockOffsets[i])
+                    .putInt(this.blockCompressedLengths[i]).putInt(this.blockLengths[i]);
+        }
+        index.putLong(footer).putInt(ExportFormat.MAGIC);
+        write(index.flip());
+        this.deflater.end();
+        this.channel.close();
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+    }
+}
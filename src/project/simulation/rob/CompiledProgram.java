@@ -0,0 +1,16 @@
+package project.simulation.rob;
+
+import project.simulation.universe.Board;
+
+/**
+ * Program roba skompilowany do kodu bajtowego przez {@link ProgramCompiler}.
+ *
+ * @author Katarzyna Mielnik
+ */
+interface CompiledProgram {
+    /**
+     * Wykonuje cały program roba {@code rob}, bez sprawdzania ani zmniejszania energii. Wywołujący sprawdza
+     * wcześniej, że energii wystarczy na cały program, i odejmuje jego koszt.
+     */
+    void execute(Rob rob, Board board);
+}
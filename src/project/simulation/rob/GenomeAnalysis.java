@@ -0,0 +1,216 @@
+package project.simulation.rob;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Statyczna analiza programu roba, wyznaczająca fragmenty, których jedynym skutkiem jest zużycie energii.
+ * <p>Każdy ciąg co najmniej dwóch kolejnych obrotów ({@code l}, {@code p}) jest zastępowany jednym obrotem o
+ * wypadkowy kąt (w prawo o 0 - 3 ćwiartki), kosztującym tyle energii, ile instrukcji ma ciąg. Dotyczy to np.
+ * par {@code lp}, czterech obrotów w jedną stronę, a także pełnego obrotu po {@code w}. Samego wąchania nie można
+ * pominąć, ponieważ jego wynik zależy od jedzenia na planszy.</p>
+ * <p>Program roba nie zmienia się po jego utworzeniu, więc analiza jest wykonywana raz na program. Analiza zlicza
+ * też wykonania programu i po {@link ProgramCompiler#COMPILATION_THRESHOLD} wykonaniach kompiluje go.</p>
+ *
+ * @author Katarzyna Mielnik
+ * @see Rob#executeProgram
+ */
+final class GenomeAnalysis {
+    private static final VarHandle EXECUTIONS;
+
+    static {
+        try {
+            EXECUTIONS = MethodHandles.lookup().findVarHandle(GenomeAnalysis.class, "executions", int.class);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Kolejne operacje programu po analizie. {@code null} oznacza obrót o {@code rotations[i]} ćwiartek w prawo.
+     */
+    private final Instruction[] instructions;
+    /**
+     * Liczba instrukcji programu, które zastępuje operacja, czyli jej koszt energii.
+     */
+    private final int[] costs;
+    private final int[] rotations;
+    /**
+     * Indeks pierwszej instrukcji programu zastąpionej przez operację.
+     */
+    private final int[] starts;
+    private final int instructionsNumber;
+    private final int deadInstructions;
+    /**
+     * Czy program składa się tylko z obrotów, czyli nie zależy od planszy ani jej nie zmienia, oraz wypadkowy
+     * obrót całego programu w ćwiartkach w prawo.
+     */
+    private final boolean inert;
+    private final int netRotation;
+    /**
+     * Liczba wykonań programu przez roby korzystające z tej analizy oraz program skompilowany po przekroczeniu
+     * progu kompilacji. Analiza jest wspólna dla robów działających w różnych wątkach, więc licznik jest zwiększany
+     * atomowo ({@link #EXECUTIONS}), a skompilowany program jest publikowany przez pole {@code volatile}.
+     */
+    private int executions;
+    private volatile CompiledProgram compiled;
+
+    private GenomeAnalysis(Instruction[] instructions, int[] costs, int[] rotations, int[] starts) {
+        this.instructions = instructions;
+        this.costs = costs;
+        this.rotations = rotations;
+        this.starts = starts;
+        int instructionsNumber = 0;
+        int deadInstructions = 0;
+        boolean inert = true;
+        int netRotation = 0;
+        for (int op = 0; op < instructions.length; op++) {
+            instructionsNumber += costs[op];
+            deadInstructions += deadInstructions(op);
+            if (instructions[op] == null)
+                netRotation += rotations[op];
+            else if (isTurn(instructions[op]))
+                netRotation += instructions[op] == Instruction.RIGHT ? 1 : 3;
+            else
+                inert = false;
+        }
+        this.instructionsNumber = instructionsNumber;
+        this.deadInstructions = deadInstructions;
+        this.inert = inert;
+        this.netRotation = netRotation % 4;
+    }
+
+    /**
+     * Analizuje program {@code program}.
+     */
+    static GenomeAnalysis of(List<Instruction> program) {
+        // Operacji jest co najwyżej tyle, ile instrukcji, więc tablice są przycinane do liczby operacji na końcu.
+        Instruction[] instructions = new Instruction[program.size()];
+        int[] costs = new int[program.size()];
+        int[] rotations = new int[program.size()];
+        int[] starts = new int[program.size()];
+        int index = 0;
+        int size = 0;
+        while (index < program.size()) {
+            int start = index;
+            int rotation = 0;
+            while (index < program.size() && isTurn(program.get(index))) {
+                rotation += program.get(index) == Instruction.RIGHT ? 1 : 3;
+                index++;
+            }
+            int op = size++;
+            if (index - start >= 2) {
+                costs[op] = index - start;
+                rotations[op] = rotation % 4;
+            }
+            else {
+                // Pojedynczy obrót lub inna instrukcja jest wykonywana bez zmian.
+                index = start + 1;
+                instructions[op] = program.get(start);
+                costs[op] = 1;
+            }
+            starts[op] = start;
+        }
+        return new GenomeAnalysis(trim(instructions, size), trim(costs, size), trim(rotations, size),
+                trim(starts, size));
+    }
+
+    private static boolean isTurn(Instruction instruction) {
+        return instruction == Instruction.LEFT || instruction == Instruction.RIGHT;
+    }
+
+    private static int[] trim(int[] array, int size) {
+        return array.length == size ? array : Arrays.copyOf(array, size);
+    }
+
+    private static Instruction[] trim(Instruction[] array, int size) {
+        return array.length == size ? array : Arrays.copyOf(array, size);
+    }
+
+    /**
+     * Liczba operacji programu po analizie.
+     */
+    int size() {
+        return this.instructions.length;
+    }
+
+    /**
+     * Instrukcja wykonywana przez operację {@code op} lub {@code null}, jeśli operacja jest obrotem.
+     */
+    Instruction instruction(int op) {
+        return this.instructions[op];
+    }
+
+    int cost(int op) {
+        return this.costs[op];
+    }
+
+    /**
+     * Wypadkowy obrót operacji {@code op} w ćwiartkach w prawo.
+     */
+    int rotation(int op) {
+        return this.rotations[op];
+    }
+
+    int start(int op) {
+        return this.starts[op];
+    }
+
+    /**
+     * Liczba martwych instrukcji wśród instrukcji zastąpionych przez operację {@code op}.
+     */
+    int deadInstructions(int op) {
+        // Obrót o wypadkowy kąt zastępuje jedna instrukcja, a obrót o kąt pełny żadna.
+        if (this.instructions[op] != null)
+            return 0;
+        return this.costs[op] - (this.rotations[op] == 0 ? 0 : 1);
+    }
+
+    /**
+     * Liczba instrukcji programu.
+     */
+    int instructionsNumber() {
+        return this.instructionsNumber;
+    }
+
+    /**
+     * Liczba martwych instrukcji w całym programie.
+     */
+    int deadInstructions() {
+        return this.deadInstructions;
+    }
+
+    /**
+     * Sprawdza, czy program składa się tylko z obrotów (lub jest pusty). Wynik tury roba z takim programem zależy
+     * tylko od jego energii.
+     */
+    boolean isInert() {
+        return this.inert;
+    }
+
+    /**
+     * Wypadkowy obrót całego programu w ćwiartkach w prawo.
+     */
+    int netRotation() {
+        return this.netRotation;
+    }
+
+    /**
+     * Odnotowuje wykonanie programu i zwraca program skompilowany, lub {@code null}, jeśli program jest jeszcze
+     * (lub ma zostać na stałe) interpretowany.
+     */
+    CompiledProgram profile() {
+        CompiledProgram compiled = this.compiled;
+        if (compiled != null || (int) EXECUTIONS.getOpaque(this) >= ProgramCompiler.COMPILATION_THRESHOLD)
+            return compiled;
+        // Tylko wątek, który osiągnął próg, kompiluje program; pozostałe do tego czasu go interpretują.
+        if ((int) EXECUTIONS.getAndAdd(this, 1) == ProgramCompiler.COMPILATION_THRESHOLD - 1) {
+            compiled = ProgramCompiler.compile(this);
+            this.compiled = compiled;
+        }
+        return compiled;
+    }
+}
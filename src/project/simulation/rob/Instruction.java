@@ -34,6 +34,13 @@ public enum Instruction {
         return null;
     }
 
+    /**
+     * Zwraca znak oznaczający instrukcję w pliku z parametrami.
+     */
+    public char character() {
+        return this.assignedCharacter;
+    }
+
     void executeInstruction(Rob rob, Board board) {
         switch (this) {
             case GO:
@@ -0,0 +1,180 @@
+package project.simulation.rob;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Rejestr rodowodu robów.
+ * <p>Każdy śledzony rob otrzymuje numer, a przy każdym powieleniu ({@link Rob#multiply}) zapisywany jest rekord
+ * (numer dziecka, numer rodzica, tura narodzin, numer genomu). Roby nie przechowują referencji do przodków, a rekordy
+ * trafiają do tablic typu {@code int} zapisywanych w razie potrzeby do pliku ({@link LineageStore}). Genomy, czyli
+ * programy robów, są numerowane tak, że równe programy mają ten sam numer.</p>
+ * <p>Funkcja {@link #prune} usuwa rekordy robów, które nie są przodkami żadnego żyjącego roba, dzięki czemu
+ * zajmowana pamięć zależy od rodowodu żyjącej populacji, a nie od całej historii symulacji.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class LineageRecorder implements AutoCloseable {
+    /**
+     * Numer rodzica robów z początkowej populacji.
+     */
+    public static final int NO_PARENT = -1;
+
+    private final LineageStore store;
+    private int nextId;
+    private int currentRound;
+    private final HashMap<List<Instruction>, Integer> genomeIds;
+    private final ArrayList<List<Instruction>> genomes;
+    private int[] freeGenomeIds;
+    private int freeGenomesNumber;
+
+    public LineageRecorder() {
+        this.store = new LineageStore();
+        this.nextId = 0;
+        this.currentRound = 0;
+        this.genomeIds = new HashMap<>();
+        this.genomes = new ArrayList<>();
+        this.freeGenomeIds = new int[8];
+        this.freeGenomesNumber = 0;
+    }
+
+    /**
+     * Ustawia numer tury, która właśnie się rozpoczyna. Jest on zapisywany jako tura narodzin nowych robów.
+     */
+    public void startRound(int roundNumber) {
+        this.currentRound = roundNumber;
+    }
+
+    /**
+     * Zapisuje narodziny roba o programie {@code program}.
+     *
+     * @param parentId numer rodzica lub {@link #NO_PARENT}
+     * @return numer nowego roba
+     */
+    int recordBirth(int parentId, List<Instruction> program) {
+        int id = this.nextId++;
+        this.store.append(id, parentId, this.currentRound, genomeId(program));
+        return id;
+    }
+
+    private int genomeId(List<Instruction> program) {
+        Integer id = this.genomeIds.get(program);
+        if (id == null) {
+            List<Instruction> genome = List.copyOf(program);
+            if (this.freeGenomesNumber > 0) {
+                id = this.freeGenomeIds[--this.freeGenomesNumber];
+                this.genomes.set(id, genome);
+            }
+            else {
+                id = this.genomes.size();
+                this.genomes.add(genome);
+            }
+            this.genomeIds.put(genome, id);
+        }
+        return id;
+    }
+
+    /**
+     * Liczba przechowywanych rekordów.
+     */
+    public int recordsNumber() {
+        return this.store.size();
+    }
+
+    /**
+     * Zwraca numer rodzica roba {@code id}, {@link #NO_PARENT} dla robów początkowych.
+     *
+     * @throws IllegalArgumentException brak rekordu roba (nie był śledzony lub jego rekord został usunięty)
+     */
+    public int parentId(int id) {
+        return this.store.parentId(position(id));
+    }
+
+    public int birthRound(int id) {
+        return this.store.birthRound(position(id));
+    }
+
+    public int genomeId(int id) {
+        return this.store.genomeId(position(id));
+    }
+
+    /**
+     * Zwraca program o numerze genomu {@code genomeId}.
+     */
+    public List<Instruction> genome(int genomeId) {
+        return this.genomes.get(genomeId);
+    }
+
+    /**
+     * Zwraca numery przodków roba {@code id}, od rodzica do roba z początkowej populacji.
+     */
+    public int[] ancestors(int id) {
+        int[] ancestors = new int[8];
+        int count = 0;
+        for (int parent = parentId(id); parent != NO_PARENT; parent = parentId(parent)) {
+            if (count == ancestors.length)
+                ancestors = Arrays.copyOf(ancestors, 2 * count);
+            ancestors[count++] = parent;
+        }
+        return Arrays.copyOf(ancestors, count);
+    }
+
+    /**
+     * Sprawdza, czy rob {@code ancestorId} jest przodkiem roba {@code id}.
+     */
+    public boolean isAncestor(int ancestorId, int id) {
+        for (int parent = parentId(id); parent != NO_PARENT && parent >= ancestorId; parent = parentId(parent)) {
+            // Przodek ma zawsze mniejszy numer niż jego potomkowie.
+            if (parent == ancestorId)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Usuwa rekordy robów, które nie są żyjącymi robami ani przodkami żyjących robów. Usuwa też genomy, do których
+     * nie odwołuje się żaden pozostały rekord. Ich numery są przydzielane później nowym genomom.
+     *
+     * @param livingIds numery żyjących robów
+     */
+    public void prune(int[] livingIds) {
+        BitSet kept = new BitSet(this.nextId);
+        for (int id : livingIds) {
+            while (id != NO_PARENT && !kept.get(id)) {
+                kept.set(id);
+                id = parentId(id);
+            }
+        }
+
+        this.store.retain(kept::get);
+        BitSet usedGenomes = new BitSet(this.genomes.size());
+        for (int position = 0; position < this.store.size(); position++) {
+            usedGenomes.set(this.store.genomeId(position));
+        }
+
+        for (int genomeId = 0; genomeId < this.genomes.size(); genomeId++) {
+            if (!usedGenomes.get(genomeId) && this.genomes.get(genomeId) != null) {
+                this.genomeIds.remove(this.genomes.get(genomeId));
+                this.genomes.set(genomeId, null);
+                if (this.freeGenomesNumber == this.freeGenomeIds.length)
+                    this.freeGenomeIds = Arrays.copyOf(this.freeGenomeIds, 2 * this.freeGenomesNumber);
+                this.freeGenomeIds[this.freeGenomesNumber++] = genomeId;
+            }
+        }
+    }
+
+    private int position(int id) {
+        int position = this.store.find(id);
+        if (position < 0)
+            throw new IllegalArgumentException("Brak rekordu roba " + id + ".");
+        return position;
+    }
+
+    @Override
+    public void close() {
+        this.store.close();
+    }
+}
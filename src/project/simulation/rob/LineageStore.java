@@ -0,0 +1,193 @@
+package project.simulation.rob;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Dopisywany ciąg rekordów rodowodu (numer roba, numer rodzica, tura narodzin, numer genomu) o rosnących numerach
+ * robów.
+ * <p>Rekordy są przechowywane w tablicach typu {@code int} po {@link #CHUNK_RECORDS} rekordów. Ostatni, niepełny
+ * fragment znajduje się w pamięci, a pełne fragmenty są zapisywane do pliku tymczasowego i odczytywane przez
+ * mapowanie pliku w pamięci. Usuwanie rekordów ({@link #retain}) przesuwa pozostałe rekordy w miejscu, a zwolnione
+ * fragmenty pliku są ponownie wykorzystywane przez kolejne zapisy.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+class LineageStore implements AutoCloseable {
+    static final int CHUNK_RECORDS = 1 << 16;
+    private static final int FIELDS = 4;
+    private static final int ID = 0, PARENT = 1, BIRTH_ROUND = 2, GENOME = 3;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final ArrayList<IntBuffer> spilledChunks;
+    private int[] firstIds;
+    private final int[] tail;
+    private int tailRecords;
+
+    LineageStore() {
+        try {
+            this.file = Files.createTempFile("rodowod", ".bin");
+            this.file.toFile().deleteOnExit();
+            this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.spilledChunks = new ArrayList<>();
+        this.firstIds = new int[8];
+        this.tail = new int[CHUNK_RECORDS * FIELDS];
+        this.tailRecords = 0;
+    }
+
+    /**
+     * Dopisuje rekord. Numer {@code id} musi być większy od numerów wszystkich wcześniej dopisanych rekordów.
+     */
+    void append(int id, int parentId, int birthRound, int genomeId) {
+        if (this.tailRecords == 0) {
+            int chunk = this.spilledChunks.size();
+            if (chunk == this.firstIds.length)
+                this.firstIds = Arrays.copyOf(this.firstIds, 2 * chunk);
+            this.firstIds[chunk] = id;
+        }
+        int offset = this.tailRecords * FIELDS;
+        this.tail[offset + ID] = id;
+        this.tail[offset + PARENT] = parentId;
+        this.tail[offset + BIRTH_ROUND] = birthRound;
+        this.tail[offset + GENOME] = genomeId;
+        if (++this.tailRecords == CHUNK_RECORDS)
+            spillTail();
+    }
+
+    private void spillTail() {
+        long bytes = (long) CHUNK_RECORDS * FIELDS * Integer.BYTES;
+        try {
+            IntBuffer chunk = this.channel.map(FileChannel.MapMode.READ_WRITE, this.spilledChunks.size() * bytes, bytes)
+                    .order(ByteOrder.nativeOrder()).asIntBuffer();
+            chunk.put(this.tail);
+            this.spilledChunks.add(chunk);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.tailRecords = 0;
+    }
+
+    /**
+     * Pozostawia tylko rekordy, których numery spełniają {@code keptId}, zachowując ich kolejność.
+     */
+    void retain(IntPredicate keptId) {
+        int size = size();
+        int kept = 0;
+        for (int position = 0; position < size; position++) {
+            int id = id(position);
+            if (!keptId.test(id))
+                continue;
+            if (kept != position) {
+                int chunk = kept / CHUNK_RECORDS, record = kept % CHUNK_RECORDS;
+                setField(chunk, record, ID, id);
+                setField(chunk, record, PARENT, parentId(position));
+                setField(chunk, record, BIRTH_ROUND, birthRound(position));
+                setField(chunk, record, GENOME, genomeId(position));
+            }
+            kept++;
+        }
+
+        int spilled = kept / CHUNK_RECORDS;
+        int tailRecords = kept % CHUNK_RECORDS;
+        if (spilled < this.spilledChunks.size()) {
+            // Ostatni niepełny fragment wraca do pamięci, a dalsze odwzorowania pliku są porzucane.
+            this.spilledChunks.get(spilled).get(0, this.tail, 0, tailRecords * FIELDS);
+            this.spilledChunks.subList(spilled, this.spilledChunks.size()).clear();
+        }
+        this.tailRecords = tailRecords;
+        int chunksNumber = spilled + (tailRecords > 0 ? 1 : 0);
+        for (int chunk = 0; chunk < chunksNumber; chunk++) {
+            this.firstIds[chunk] = field(chunk, 0, ID);
+        }
+    }
+
+    int size() {
+        return this.spilledChunks.size() * CHUNK_RECORDS + this.tailRecords;
+    }
+
+    /**
+     * Zwraca pozycję rekordu o numerze {@code id} lub -1, jeśli go nie ma.
+     */
+    int find(int id) {
+        int chunksNumber = this.spilledChunks.size() + (this.tailRecords > 0 ? 1 : 0);
+        int chunk = Arrays.binarySearch(this.firstIds, 0, chunksNumber, id);
+        if (chunk < 0)
+            chunk = -chunk - 2;
+        if (chunk < 0)
+            return -1;
+
+        int low = 0, high = chunkRecords(chunk) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int middleId = field(chunk, middle, ID);
+            if (middleId < id)
+                low = middle + 1;
+            else if (middleId > id)
+                high = middle - 1;
+            else
+                return chunk * CHUNK_RECORDS + middle;
+        }
+        return -1;
+    }
+
+    int id(int position) {
+        return field(position / CHUNK_RECORDS, position % CHUNK_RECORDS, ID);
+    }
+
+    int parentId(int position) {
+        return field(position / CHUNK_RECORDS, position % CHUNK_RECORDS, PARENT);
+    }
+
+    int birthRound(int position) {
+        return field(position / CHUNK_RECORDS, position % CHUNK_RECORDS, BIRTH_ROUND);
+    }
+
+    int genomeId(int position) {
+        return field(position / CHUNK_RECORDS, position % CHUNK_RECORDS, GENOME);
+    }
+
+    private int chunkRecords(int chunk) {
+        return chunk < this.spilledChunks.size() ? CHUNK_RECORDS : this.tailRecords;
+    }
+
+    private int field(int chunk, int record, int field) {
+        int index = record * FIELDS + field;
+        if (chunk < this.spilledChunks.size())
+            return this.spilledChunks.get(chunk).get(index);
+        return this.tail[index];
+    }
+
+    private void setField(int chunk, int record, int field, int value) {
+        int index = record * FIELDS + field;
+        if (chunk < this.spilledChunks.size())
+            this.spilledChunks.get(chunk).put(index, value);
+        else
+            this.tail[index] = value;
+    }
+
+    @Override
+    public void close() {
+        try {
+            this.channel.close();
+            Files.deleteIfExists(this.file);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
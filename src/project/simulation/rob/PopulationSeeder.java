@@ -0,0 +1,214 @@
+package project.simulation.rob;
+
+import project.parameters.Configuration;
+import project.simulation.universe.Board;
+import project.simulation.universe.spatial.Direction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tworzy początkową populację robów naraz.
+ * <p>Parametry z konfiguracji, program początkowy i jego analiza ({@link GenomeAnalysis}) są tworzone raz i wspólne
+ * dla wszystkich robów. Pozycje, kierunki i pierwsze losowania powielenia są losowane z ziarna populacji, osobnym
+ * generatorem dla każdej paczki {@value #CHUNK_SIZE} robów, więc duże populacje są tworzone równolegle, a wynik
+ * zależy tylko od ziarna, a nie od liczby wątków. Roby są umieszczane na planszy po utworzeniu całej populacji.</p>
+ * <p>Sposób rozmieszczenia robów na planszy określa {@link Placement}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public final class PopulationSeeder {
+    /**
+     * Liczba robów losowanych jednym generatorem i najmniejsza liczba robów w zadaniu wątku.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+    private static final Direction[] DIRECTIONS = Direction.values();
+
+    /**
+     * Sposoby rozmieszczenia robów początkowej populacji.
+     */
+    public enum Placement {
+        /**
+         * Każde pole planszy z jednakowym prawdopodobieństwem.
+         */
+        UNIFORM,
+        /**
+         * Wokół losowo wybranych środków skupisk, z przesunięciem z rozkładu normalnego.
+         */
+        CLUSTERED,
+        /**
+         * Na losowo wybranym polu, na którym rośnie jedzenie, lub na jednym z sąsiednich pól. Jeśli na planszy
+         * nie ma jedzenia, jak {@link #UNIFORM}.
+         */
+        FOOD_PROXIMAL
+    }
+
+    private final Configuration configuration;
+    private final Board board;
+    private final Placement placement;
+    private final int clustersNumber;
+    private final double clusterSpread;
+    private final int initialEnergy;
+
+    /**
+     * Tworzy populacje rozmieszczone zgodnie z konfiguracją ({@link Configuration#robsPlacement()}).
+     */
+    public PopulationSeeder(Configuration configuration, Board board) {
+        this(configuration, board, configuration.robsPlacement(), configuration.clustersNumber(),
+                configuration.clusterSpread());
+    }
+
+    /**
+     * @param clustersNumber liczba skupisk przy rozmieszczeniu {@link Placement#CLUSTERED}
+     * @param clusterSpread  odchylenie standardowe odległości robów od środka skupiska w każdej osi; wartość 0
+     *                       oznacza jedną ósmą krótszego boku planszy
+     */
+    public PopulationSeeder(Configuration configuration, Board board, Placement placement, int clustersNumber,
+                            double clusterSpread) {
+        if (clustersNumber <= 0 || clusterSpread < 0)
+            throw new IllegalArgumentException("Niepoprawne parametry skupisk.");
+        this.configuration = configuration;
+        this.board = board;
+        this.placement = placement;
+        this.initialEnergy = configuration.initialEnergy();
+        this.clustersNumber = clustersNumber;
+        this.clusterSpread = clusterSpread > 0 ? clusterSpread :
+                Math.max(1, Math.min(board.sizeX(), board.sizeY()) / 8.0);
+    }
+
+    /**
+     * Tworzy {@code robsNumber} robów, rozmieszczonych na planszy na podstawie ziarna {@code seed}. Roby losują
+     * swoje zachowanie w symulacji generatorem {@code random}.
+     *
+     * @return lista utworzonych robów
+     */
+    public ArrayList<Rob> seed(int robsNumber, long seed, Random random) {
+        SplittableRandom populationRandom = new SplittableRandom(seed);
+        int[] centers = this.placement == Placement.CLUSTERED ? clusterCenters(populationRandom) : null;
+        int[] foodSquares = this.placement == Placement.FOOD_PROXIMAL ? foodSquares() : null;
+        SplittableRandom[] chunkRandoms = new SplittableRandom[(robsNumber + CHUNK_SIZE - 1) / CHUNK_SIZE];
+        for (int i = 0; i < chunkRandoms.length; i++) {
+            chunkRandoms[i] = populationRandom.split();
+        }
+
+        RobParameters parameters = new RobParameters(this.configuration);
+        ArrayList<Instruction> program = this.configuration.initialProgram();
+        Rob[] robs = new Rob[robsNumber];
+        SeedingTask task = new SeedingTask(0, chunkRandoms.length, chunkRandoms, robs, parameters, program,
+                GenomeAnalysis.of(program), centers, foodSquares, random);
+        if (chunkRandoms.length > 1)
+            ForkJoinPool.commonPool().invoke(task);
+        else
+            task.compute();
+
+        for (Rob rob : robs) {
+            this.board.addRob(rob.getX(), rob.getY());
+        }
+        return new ArrayList<>(Arrays.asList(robs));
+    }
+
+    /**
+     * Losuje środki skupisk, jako numery pól ({@code y * sizeX + x}).
+     */
+    private int[] clusterCenters(SplittableRandom random) {
+        int[] centers = new int[this.clustersNumber];
+        for (int i = 0; i < centers.length; i++) {
+            centers[i] = random.nextInt(this.board.sizeY()) * this.board.sizeX() + random.nextInt(this.board.sizeX());
+        }
+        return centers;
+    }
+
+    /**
+     * Numery ({@code y * sizeX + x}) pól, na których rośnie jedzenie.
+     */
+    private int[] foodSquares() {
+        int[] squares = new int[this.board.sizeX() * this.board.sizeY()];
+        int count = 0;
+        for (int i = 0; i < squares.length; i++) {
+            if (this.board.foodRipeness(i) != Board.NO_FOOD)
+                squares[count++] = i;
+        }
+        return Arrays.copyOf(squares, count);
+    }
+
+    /**
+     * Tworzy roby paczek o numerach od {@code from} do {@code to} (bez {@code to}).
+     */
+    private final class SeedingTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final SplittableRandom[] chunkRandoms;
+        private final Rob[] robs;
+        private final RobParameters parameters;
+        private final ArrayList<Instruction> program;
+        private final GenomeAnalysis analysis;
+        private final int[] centers;
+        private final int[] foodSquares;
+        private final Random random;
+
+        SeedingTask(int from, int to, SplittableRandom[] chunkRandoms, Rob[] robs, RobParameters parameters,
+                    ArrayList<Instruction> program, GenomeAnalysis analysis, int[] centers, int[] foodSquares,
+                    Random random) {
+            this.from = from;
+            this.to = to;
+            this.chunkRandoms = chunkRandoms;
+            this.robs = robs;
+            this.parameters = parameters;
+            this.program = program;
+            this.analysis = analysis;
+            this.centers = centers;
+            this.foodSquares = foodSquares;
+            this.random = random;
+        }
+
+        private SeedingTask subtask(int from, int to) {
+            return new SeedingTask(from, to, this.chunkRandoms, this.robs, this.parameters, this.program,
+                    this.analysis, this.centers, this.foodSquares, this.random);
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from > 1) {
+                int middle = (this.from + this.to) >>> 1;
+                invokeAll(subtask(this.from, middle), subtask(middle, this.to));
+                return;
+            }
+            for (int chunk = this.from; chunk < this.to; chunk++) {
+                SplittableRandom random = this.chunkRandoms[chunk];
+                for (int i = chunk * CHUNK_SIZE; i < Math.min(this.robs.length, (chunk + 1) * CHUNK_SIZE); i++) {
+                    this.robs[i] = createRob(random);
+                }
+            }
+        }
+
+        private Rob createRob(SplittableRandom random) {
+            Board board = PopulationSeeder.this.board;
+            int x, y;
+            if (this.centers != null) {
+                int center = this.centers[random.nextInt(this.centers.length)];
+                double spread = PopulationSeeder.this.clusterSpread;
+                x = board.wrapX(center % board.sizeX() + (int) Math.round(random.nextGaussian() * spread));
+                y = board.wrapY(center / board.sizeX() + (int) Math.round(random.nextGaussian() * spread));
+            }
+            else if (this.foodSquares != null && this.foodSquares.length > 0) {
+                int square = this.foodSquares[random.nextInt(this.foodSquares.length)];
+                x = board.wrapX(square % board.sizeX() + random.nextInt(3) - 1);
+                y = board.wrapY(square / board.sizeX() + random.nextInt(3) - 1);
+            }
+            else {
+                x = random.nextInt(board.sizeX());
+                y = random.nextInt(board.sizeY());
+            }
+            Direction direction = DIRECTIONS[random.nextInt(DIRECTIONS.length)];
+            int multiplicationLots = Rob.trialsToSuccess(this.parameters.multiplicationOdds, random.nextDouble());
+            return new Rob(this.parameters, PopulationSeeder.this.initialEnergy, this.program,
+                    this.analysis, direction, x, y, multiplicationLots, this.random);
+        }
+    }
+}
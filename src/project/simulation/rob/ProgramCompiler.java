@@ -0,0 +1,218 @@
+package project.simulation.rob;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.HashMap;
+
+/**
+ * Kompiluje często wykonywane programy robów do kodu bajtowego JVM, ładowanego jako klasa ukryta
+ * ({@link MethodHandles.Lookup#defineHiddenClass}).
+ * <p>Skompilowany program to ciąg wywołań metod roba, bez pętli ani rozgałęzień. Dzięki temu JIT może wstawić
+ * w miejscu wywołania metody roba i planszy. Energia jest sprawdzana raz przed całym programem
+ * ({@link Rob#executeProgram}): instrukcje nie zmniejszają energii, więc jeśli energii wystarczy na ostatnią
+ * instrukcję, wystarczy też na wszystkie wcześniejsze.</p>
+ * <p>Klasa ukryta nie jest silnie związana ze swoim programem ładującym, więc zostaje usunięta z pamięci razem
+ * z analizą programu, gdy wyginą wszystkie roby o tym programie.</p>
+ *
+ * @author Katarzyna Mielnik
+ * @see GenomeAnalysis
+ */
+final class ProgramCompiler {
+    /**
+     * Liczba wykonań programu, po której jest on kompilowany.
+     */
+    static final int COMPILATION_THRESHOLD = 1000;
+    /**
+     * Największa liczba operacji kompilowanego programu. Każda operacja zajmuje co najwyżej 5 bajtów kodu, a kod
+     * metody nie może przekraczać 65535 bajtów.
+     */
+    static final int MAX_OPERATIONS = 8192;
+
+    private static final String ROB = "project/simulation/rob/Rob";
+    private static final String BOARD_DESCRIPTOR = "(Lproject/simulation/universe/Board;)V";
+
+    private ProgramCompiler() {
+    }
+
+    /**
+     * Kompiluje program przeanalizowany w {@code analysis}.
+     *
+     * @return skompilowany program lub {@code null}, jeśli programu nie można skompilować; program jest wtedy
+     * dalej interpretowany
+     */
+    static CompiledProgram compile(GenomeAnalysis analysis) {
+        if (analysis.size() == 0 || analysis.size() > MAX_OPERATIONS)
+            return null;
+        try {
+            Class<?> compiled = MethodHandles.lookup().defineHiddenClass(classFile(analysis), true).lookupClass();
+            return (CompiledProgram) compiled.getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Tworzy plik klasy implementującej {@link CompiledProgram}.
+     */
+    private static byte[] classFile(GenomeAnalysis analysis) {
+        ConstantPool pool = new ConstantPool();
+        int thisClass = pool.classInfo("project/simulation/rob/CompiledProgram$Genome");
+        int superClass = pool.classInfo("java/lang/Object");
+        int programInterface = pool.classInfo("project/simulation/rob/CompiledProgram");
+        int objectConstructor = pool.methodRef(superClass, "<init>", "()V");
+        int code = pool.utf8("Code");
+
+        ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+        constructor.write(0x2a); // aload_0
+        writeInvoke(constructor, 0xb7, objectConstructor); // invokespecial
+        constructor.write(0xb1); // return
+
+        ByteArrayOutputStream execute = new ByteArrayOutputStream();
+        for (int op = 0; op < analysis.size(); op++) {
+            Instruction instruction = analysis.instruction(op);
+            if (instruction == null) {
+                int rotation = analysis.rotation(op);
+                String turn = rotation == 3 ? "turnLeft" : "turnRight";
+                for (int i = 0; i < (rotation == 3 ? 1 : rotation); i++) {
+                    execute.write(0x2b); // aload_1
+                    writeInvoke(execute, 0xb6, pool.methodRef(pool.classInfo(ROB), turn, "()V"));
+                }
+                continue;
+            }
+            execute.write(0x2b); // aload_1
+            switch (instruction) {
+                case GO:
+                case EAT:
+                case SNIFF:
+                    execute.write(0x2c); // aload_2
+                    writeInvoke(execute, 0xb6, pool.methodRef(pool.classInfo(ROB),
+                            instruction.name().toLowerCase(), BOARD_DESCRIPTOR));
+                    break;
+                case LEFT:
+                    writeInvoke(execute, 0xb6, pool.methodRef(pool.classInfo(ROB), "turnLeft", "()V"));
+                    break;
+                case RIGHT:
+                    writeInvoke(execute, 0xb6, pool.methodRef(pool.classInfo(ROB), "turnRight", "()V"));
+                    break;
+            }
+        }
+        execute.write(0xb1); // return
+
+        int constructorName = pool.utf8("<init>");
+        int constructorDescriptor = pool.utf8("()V");
+        int executeName = pool.utf8("execute");
+        int executeDescriptor = pool.utf8("(L" + ROB + ";Lproject/simulation/universe/Board;)V");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(0xcafebabe);
+            out.writeShort(0);
+            // Wersja 52 (Java 8). Kod bez rozgałęzień nie wymaga atrybutu StackMapTable.
+            out.writeShort(52);
+            pool.write(out);
+            out.writeShort(0x0030); // ACC_FINAL | ACC_SUPER
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(1);
+            out.writeShort(programInterface);
+            out.writeShort(0);
+            out.writeShort(2);
+            writeMethod(out, constructorName, constructorDescriptor, code, 1, 1, constructor.toByteArray());
+            writeMethod(out, executeName, executeDescriptor, code, 2, 3, execute.toByteArray());
+            out.writeShort(0);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void writeInvoke(ByteArrayOutputStream code, int opcode, int method) {
+        code.write(opcode);
+        code.write(method >>> 8);
+        code.write(method);
+    }
+
+    private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeAttribute,
+                                    int maxStack, int maxLocals, byte[] code) throws IOException {
+        out.writeShort(0x0001); // ACC_PUBLIC
+        out.writeShort(name);
+        out.writeShort(descriptor);
+        out.writeShort(1);
+        out.writeShort(codeAttribute);
+        out.writeInt(12 + code.length);
+        out.writeShort(maxStack);
+        out.writeShort(maxLocals);
+        out.writeInt(code.length);
+        out.write(code);
+        out.writeShort(0);
+        out.writeShort(0);
+    }
+
+    /**
+     * Pula stałych pliku klasy. Każda stała jest zapisywana raz.
+     */
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(this.entries);
+        private final HashMap<String, Integer> indices = new HashMap<>();
+        private int count = 1;
+
+        int utf8(String value) {
+            return entry("U" + value, () -> {
+                this.out.writeByte(1);
+                this.out.writeUTF(value);
+            });
+        }
+
+        int classInfo(String name) {
+            int nameIndex = utf8(name);
+            return entry("C" + name, () -> {
+                this.out.writeByte(7);
+                this.out.writeShort(nameIndex);
+            });
+        }
+
+        int methodRef(int owner, String name, String descriptor) {
+            int nameIndex = utf8(name);
+            int descriptorIndex = utf8(descriptor);
+            int nameAndType = entry("N" + name + descriptor, () -> {
+                this.out.writeByte(12);
+                this.out.writeShort(nameIndex);
+                this.out.writeShort(descriptorIndex);
+            });
+            return entry("M" + owner + "." + name + descriptor, () -> {
+                this.out.writeByte(10);
+                this.out.writeShort(owner);
+                this.out.writeShort(nameAndType);
+            });
+        }
+
+        void write(DataOutputStream target) throws IOException {
+            target.writeShort(this.count);
+            this.entries.writeTo(target);
+        }
+
+        private int entry(String key, Entry entry) {
+            Integer index = this.indices.get(key);
+            if (index != null)
+                return index;
+            try {
+                entry.write();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            this.indices.put(key, this.count);
+            return this.count++;
+        }
+
+        private interface Entry {
+            void write() throws IOException;
+        }
+    }
+}
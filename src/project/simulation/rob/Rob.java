@@ -6,6 +6,8 @@ import project.simulation.universe.spatial.Direction;
 import project.simulation.universe.Board;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Random;
 
 public class Rob {
@@ -17,35 +19,68 @@ public class Rob {
     private boolean willMultiply;
     private final ArrayList<Instruction> program;
     private Direction direction;
-    private Coordinates coordinates;
-
-    private final int singleRoundEnergyCost;
-    private final double partOfParentEnergy;
-    private final int multiplicationLimit;
-    private final double multiplicationOdds;
+    private int x;
+    private int y;
+    /**
+     * Generator liczb losowych, z którego korzysta rob i jego potomkowie.
+     */
+    private final Random random;
+    /**
+     * Rejestr rodowodu, w którym zapisywane są dzieci roba, oraz numer roba w tym rejestrze.
+     */
+    private LineageRecorder lineage;
+    private int lineageId;
+    /**
+     * Skrót programu, obliczany przy pierwszym użyciu. Program roba nie zmienia się po jego utworzeniu.
+     */
+    private long programHash;
+    private boolean programHashComputed;
+    /**
+     * Analiza programu, obliczana przy pierwszym wykonaniu programu lub przejmowana od rodzica, jeśli program
+     * dziecka nie został zmieniony przez mutację.
+     */
+    private GenomeAnalysis analysis;
+    /**
+     * Liczba instrukcji wykonanych w ostatniej turze oraz liczba martwych instrukcji wśród nich.
+     */
+    private int executedInstructions;
+    private int deadInstructions;
+    /**
+     * Liczba losowań powielenia, łącznie z najbliższym, do najbliższego udanego losowania, lub 0, jeśli nie została
+     * jeszcze wylosowana. Podobnie liczby potomków do najbliższego usunięcia, dodania i zmiany instrukcji.
+     *
+     * @see #drawTrialsToSuccess
+     */
+    private int multiplicationLotsToSuccess;
+    private int birthsToRemoval;
+    private int birthsToAdding;
+    private int birthsToChange;
 
-    private final double instructionRemovalOdds;
-    private final double instructionChangeOdds;
-    private final double instructionAddingOdds;
-    private final ArrayList<Instruction> instructionSet;
+    /**
+     * Parametry wynikające z konfiguracji, wspólne dla roba i jego potomków.
+     */
+    private final RobParameters parameters;
 
 
     public Rob(Configuration configuration, Board board) {
+        this(configuration, board, new Random());
+    }
+
+    /**
+     * Tworzy roba z początkowej populacji, który losuje swoje zachowanie za pomocą generatora {@code random}.
+     */
+    public Rob(Configuration configuration, Board board, Random random) {
+        this.random = random;
         this.age = 0;
         this.energy = configuration.initialEnergy();
         this.program = configuration.initialProgram();
-        this.singleRoundEnergyCost = configuration.singleRoundEnergyCost();
-        this.partOfParentEnergy = configuration.partOfParentEnergy();
-        this.multiplicationLimit = configuration.multiplicationLimit();
-        this.multiplicationOdds = configuration.multiplicationOdds();
-        this.instructionRemovalOdds = configuration.instructionRemovalOdds();
-        this.instructionChangeOdds = configuration.instructionChangeOdds();
-        this.instructionAddingOdds = configuration.instructionAddingOdds();
-        this.instructionSet = configuration.instructionList();
+        this.parameters = new RobParameters(configuration);
         this.willMultiply = drawMultiplicationLots();
         // Początkowa pozycja oraz kierunek są losowe.
-        this.coordinates = board.getRandomPosition();
-        this.direction = Direction.getRandomDirection();
+        Coordinates coordinates = board.getRandomPosition(random);
+        this.x = coordinates.X();
+        this.y = coordinates.Y();
+        this.direction = Direction.getRandomDirection(random);
     }
 
     /**
@@ -54,22 +89,44 @@ public class Rob {
      *
      * @see #multiply
      */
-    private Rob(int energy, ArrayList<Instruction> program, Direction direction, Coordinates coordinates, int singleRoundEnergyCost,
-                double partOfParentEnergy, int multiplicationLimit, double multiplicationOdds, double instructionRemovalOdds,
-                double instructionChangeOdds, double instructionAddingOdds, ArrayList<Instruction> instructionSet) {
+    private Rob(int energy, ArrayList<Instruction> program, Direction direction, int x, int y, Random random,
+                RobParameters parameters) {
         this.age = 0;
         this.energy = energy;
         this.program = program;
-        this.coordinates = coordinates;
+        this.x = x;
+        this.y = y;
+        this.random = random;
         this.direction = direction;
-        this.singleRoundEnergyCost = singleRoundEnergyCost;
-        this.partOfParentEnergy = partOfParentEnergy;
-        this.multiplicationLimit = multiplicationLimit;
-        this.multiplicationOdds = multiplicationOdds;
-        this.instructionRemovalOdds = instructionRemovalOdds;
-        this.instructionChangeOdds = instructionChangeOdds;
-        this.instructionAddingOdds = instructionAddingOdds;
-        this.instructionSet = instructionSet;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Tworzy roba z początkowej populacji o wylosowanych już pozycji, kierunku i liczbie losowań powielenia do
+     * najbliższego udanego ({@link #drawTrialsToSuccess}). Program, jego analiza i parametry są wspólne dla
+     * wszystkich robów populacji.
+     *
+     * @see PopulationSeeder
+     */
+    Rob(RobParameters parameters, int energy, ArrayList<Instruction> program, GenomeAnalysis analysis,
+        Direction direction, int x, int y, int multiplicationLotsToSuccess, Random random) {
+        this(energy, program, direction, x, y, random, parameters);
+        this.analysis = analysis;
+        this.multiplicationLotsToSuccess = multiplicationLotsToSuccess;
+        this.willMultiply = drawMultiplicationLots();
+    }
+
+
+    /**
+     * Odtwarza roba o podanym stanie. Atrybuty wynikające z konfiguracji są odczytywane z {@code configuration}.
+     *
+     * @see RobCodec
+     */
+    Rob(Configuration configuration, int age, int energy, ArrayList<Instruction> program, Direction direction,
+        int x, int y, boolean willMultiply, Random random) {
+        this(energy, program, direction, x, y, random, new RobParameters(configuration));
+        this.age = age;
+        this.willMultiply = willMultiply;
     }
 
 
@@ -93,7 +150,7 @@ public class Rob {
      * @param board plansza, na której znajduje się rob
      */
     private void eatFromCurrentSquare(Board board) {
-        this.energy += board.eatFoodFromSquare(this.coordinates);
+        this.energy += board.eatFoodFromSquare(this.x, this.y);
     }
 
     /**
@@ -102,8 +159,12 @@ public class Rob {
      * @param board plansza, na której znajduje się rob
      */
     void go(Board board) {
-        this.coordinates = board.calculateCoordinates(this.coordinates, this.direction);
-        if (board.foodAtCoordinates(this.coordinates))
+        int x = board.wrapX(this.x + this.direction.xCoordinate());
+        int y = board.wrapY(this.y + this.direction.yCoordinate());
+        board.moveRob(this.x, this.y, x, y);
+        this.x = x;
+        this.y = y;
+        if (board.foodAt(this.x, this.y))
             this.eatFromCurrentSquare(board);
     }
 
@@ -114,24 +175,21 @@ public class Rob {
      * @param board plansza, na której znajduje się rob
      */
     void eat(Board board) {
-        Coordinates coordinates = null;
-        boolean foundFood = false;
-        loop:
         for (int i = -1; i <= 1; i++) {
+            int x = board.wrapX(this.x + i);
             for (int j = -1; j <= 1; j++) {
                 if (i == 0 && j == 0)
                     continue;
-                coordinates = board.calculateCoordinates(this.coordinates.X() + i, this.coordinates.Y() + j);
-                if (board.foodAtCoordinates(coordinates)) {
-                    foundFood = true;
-                    break loop;
+                int y = board.wrapY(this.y + j);
+                if (board.foodAt(x, y)) {
+                    board.moveRob(this.x, this.y, x, y);
+                    this.x = x;
+                    this.y = y;
+                    this.eatFromCurrentSquare(board);
+                    return;
                 }
             }
         }
-        if (foundFood) {
-            this.coordinates = coordinates;
-            this.eatFromCurrentSquare(board);
-        }
     }
 
     /**
@@ -142,8 +200,9 @@ public class Rob {
     void sniff(Board board) {
         for (int i = 0; i < 4; i++) {
             this.direction = this.direction.turnRight();
-            Coordinates coordinates = board.calculateCoordinates(this.coordinates, this.direction);
-            if (board.foodAtCoordinates(coordinates))
+            int x = board.wrapX(this.x + this.direction.xCoordinate());
+            int y = board.wrapY(this.y + this.direction.yCoordinate());
+            if (board.foodAt(x, y))
                 break;
         }
     }
@@ -164,16 +223,66 @@ public class Rob {
 
     /**
      * Wykonuje program roba do końca, lub do momentu, w którym zabraknie mu energii.
+     * <p>Ciągi obrotów są wykonywane jako jeden obrót ({@link GenomeAnalysis}). Zużycie energii oraz instrukcja, na
+     * której program zostaje przerwany, są takie same, jak przy wykonywaniu instrukcji po kolei. Często wykonywany
+     * program jest kompilowany ({@link ProgramCompiler}) i, jeśli energii wystarczy na cały program, wykonywany
+     * w postaci skompilowanej.</p>
      *
      * @param board plansza, na której znajduje się rob
      */
     public void executeProgram(Board board) {
-        int index = 0;
-        while (this.energy >= 0 && this.program.size() > index) {
-            executeInstruction(index, board);
-            this.energy--;
-            index++;
+        CompiledProgram compiled = analysis().profile();
+        int instructionsNumber = this.analysis.instructionsNumber();
+        if (compiled != null && this.energy >= 0 && this.energy >= instructionsNumber - 1) {
+            compiled.execute(this, board);
+            this.energy -= instructionsNumber;
+            this.executedInstructions = instructionsNumber;
+            this.deadInstructions = this.analysis.deadInstructions();
+            return;
         }
+        this.executedInstructions = 0;
+        this.deadInstructions = 0;
+        for (int op = 0; op < this.analysis.size() && this.energy >= 0; op++) {
+            Instruction instruction = this.analysis.instruction(op);
+            int cost = this.analysis.cost(op);
+            if (instruction != null) {
+                instruction.executeInstruction(this, board);
+            }
+            else if (this.energy >= cost - 1) {
+                // Energii wystarczy na cały ciąg obrotów, więc wystarczy obrót o kąt wypadkowy.
+                for (int i = 0; i < this.analysis.rotation(op); i++) {
+                    this.direction = this.direction.turnRight();
+                }
+                this.deadInstructions += this.analysis.deadInstructions(op);
+            }
+            else {
+                // Energia skończy się w trakcie ciągu obrotów, więc obroty są wykonywane pojedynczo.
+                for (int index = this.analysis.start(op); this.energy >= 0; index++) {
+                    executeInstruction(index, board);
+                    this.energy--;
+                    this.executedInstructions++;
+                }
+                return;
+            }
+            this.energy -= cost;
+            this.executedInstructions += cost;
+        }
+    }
+
+    /**
+     * Liczba instrukcji programu wykonanych w ostatniej turze.
+     */
+    public int executedInstructions() {
+        return this.executedInstructions;
+    }
+
+    /**
+     * Liczba martwych instrukcji wykonanych w ostatniej turze, czyli pominiętych bez zmiany zachowania roba.
+     *
+     * @see GenomeAnalysis
+     */
+    public int deadInstructions() {
+        return this.deadInstructions;
     }
 
     /**
@@ -183,14 +292,82 @@ public class Rob {
      */
     public void newRound(Board board) {
         this.age++;
-        this.energy = this.energy - this.singleRoundEnergyCost;
+        this.energy = this.energy - this.parameters.singleRoundEnergyCost;
+        if (analysis().isInert()) {
+            decay(board);
+            return;
+        }
         executeProgram(board);
-        this.willMultiply = drawMultiplicationLots() && this.energy >= this.multiplicationLimit;
+        this.willMultiply = drawMultiplicationLots() && this.energy >= this.parameters.multiplicationLimit;
+    }
+
+    /**
+     * Przeprowadza turę roba, którego program składa się tylko z obrotów. Taki rob nie porusza się i nie je, więc
+     * jego energia maleje co turę o koszt tury i długość programu, a kierunek zmienia się o wypadkowy obrót
+     * programu.
+     *
+     * @param board plansza, na której znajduje się rob
+     */
+    private void decay(Board board) {
+        int instructionsNumber = this.analysis.instructionsNumber();
+        if (this.energy >= 0 && this.energy >= instructionsNumber - 1) {
+            for (int i = 0; i < this.analysis.netRotation(); i++) {
+                this.direction = this.direction.turnRight();
+            }
+            this.energy -= instructionsNumber;
+            this.executedInstructions = instructionsNumber;
+            this.deadInstructions = this.analysis.deadInstructions();
+        }
+        else {
+            // Rob umiera w tej turze, a jego program nie sięga do planszy.
+            executeProgram(board);
+        }
+
+        this.willMultiply = drawMultiplicationLots() && this.energy >= this.parameters.multiplicationLimit;
+    }
+
+    /**
+     * Zwraca analizę programu roba, obliczając ją przy pierwszym użyciu.
+     */
+    GenomeAnalysis analysis() {
+        if (this.analysis == null)
+            this.analysis = GenomeAnalysis.of(this.program);
+        return this.analysis;
     }
 
-    private boolean drawMultiplicationLots() {
-        Random random = new Random();
-        return random.nextDouble() <= this.multiplicationOdds;
+    /**
+     * Losuje, czy rob się powieli, z prawdopodobieństwem {@code pr_powielenia}.
+     */
+    boolean drawMultiplicationLots() {
+        if (this.multiplicationLotsToSuccess == 0)
+            this.multiplicationLotsToSuccess = drawTrialsToSuccess(this.parameters.multiplicationOdds);
+        return --this.multiplicationLotsToSuccess == 0;
+    }
+
+    /**
+     * Losuje numer pierwszej udanej próby w ciągu niezależnych prób o prawdopodobieństwie sukcesu {@code odds}
+     * (rozkład geometryczny).
+     * <p>Zamiast losowania każdej próby osobno, rob losuje, która z kolejnych prób się uda, i odlicza do niej.
+     * Ponieważ próby są niezależne, każda próba udaje się z tym samym prawdopodobieństwem co przy losowaniu
+     * osobno, a przy małym {@code odds} liczb losowych potrzeba znacznie mniej.</p>
+     */
+    private int drawTrialsToSuccess(double odds) {
+        // Przy pewnym sukcesie lub porażce liczba losowa nie jest potrzebna.
+        return trialsToSuccess(odds, odds >= 1 || odds <= 0 ? 0 : this.random.nextDouble());
+    }
+
+    /**
+     * Numer pierwszej udanej próby, wyznaczony z liczby {@code uniform} z rozkładu jednostajnego na [0, 1).
+     *
+     * @see #drawTrialsToSuccess
+     */
+    static int trialsToSuccess(double odds, double uniform) {
+        if (odds >= 1)
+            return 1;
+        if (odds <= 0)
+            return Integer.MAX_VALUE;
+        double failures = Math.floor(Math.log(1 - uniform) / Math.log(1 - odds));
+        return (int) Math.min(failures + 1, Integer.MAX_VALUE);
     }
 
     /**
@@ -198,20 +375,27 @@ public class Rob {
      *
      * @param program program nowego roba
      */
-    private void mutateProgram(ArrayList<Instruction> program) {
-        Random random = new Random();
+    void mutateProgram(ArrayList<Instruction> program) {
+        Random random = this.random;
+        ArrayList<Instruction> instructionSet = this.parameters.instructionSet;
 
-        if (random.nextDouble() <= this.instructionRemovalOdds && program.size() > 0)
+        if (this.birthsToRemoval == 0)
+            this.birthsToRemoval = drawTrialsToSuccess(this.parameters.instructionRemovalOdds);
+        if (--this.birthsToRemoval == 0 && program.size() > 0)
             program.remove(program.size() - 1);
 
-        if (random.nextDouble() <= this.instructionAddingOdds) {
-            Instruction randomInstruction = this.instructionSet.get(random.nextInt(this.instructionSet.size()));
+        if (this.birthsToAdding == 0)
+            this.birthsToAdding = drawTrialsToSuccess(this.parameters.instructionAddingOdds);
+        if (--this.birthsToAdding == 0) {
+            Instruction randomInstruction = instructionSet.get(random.nextInt(instructionSet.size()));
             program.add(randomInstruction);
         }
 
-        if (random.nextDouble() <= this.instructionChangeOdds && program.size() > 0) {
+        if (this.birthsToChange == 0)
+            this.birthsToChange = drawTrialsToSuccess(this.parameters.instructionChangeOdds);
+        if (--this.birthsToChange == 0 && program.size() > 0) {
             int randomPosition = random.nextInt(program.size());
-            program.set(randomPosition, this.instructionSet.get(random.nextInt(this.instructionSet.size())));
+            program.set(randomPosition, instructionSet.get(random.nextInt(instructionSet.size())));
         }
     }
 
@@ -233,14 +417,55 @@ public class Rob {
      * @return nowy rob
      */
     public Rob multiply() {
-        if (!willMultiply || this.energy < this.multiplicationLimit) return null;
+        if (!willMultiply || this.energy < this.parameters.multiplicationLimit) return null;
 
         ArrayList<Instruction> childProgram = createChildProgram();
-        int childEnergy = (int) (((double) this.energy) * this.partOfParentEnergy);
+        int childEnergy = (int) (((double) this.energy) * this.parameters.partOfParentEnergy);
         this.energy -= childEnergy;
-        return new Rob(childEnergy, childProgram, this.direction.getOpposite(), this.coordinates, this.singleRoundEnergyCost,
-                this.partOfParentEnergy, this.multiplicationLimit, this.multiplicationOdds, this.instructionRemovalOdds,
-                this.instructionChangeOdds, this.instructionAddingOdds, this.instructionSet);
+        Rob child = new Rob(childEnergy, childProgram, this.direction.getOpposite(), this.x, this.y, this.random,
+                this.parameters);
+        if (this.analysis != null && childProgram.equals(this.program))
+            child.analysis = this.analysis;
+        if (this.lineage != null) {
+            child.lineage = this.lineage;
+            child.lineageId = this.lineage.recordBirth(this.lineageId, childProgram);
+        }
+        return child;
+    }
+
+    /**
+     * Zaczyna zapisywać w rejestrze {@code lineage} roba, jako roba bez rodzica, oraz wszystkich jego potomków.
+     */
+    public void trackLineage(LineageRecorder lineage) {
+        this.lineage = lineage;
+        this.lineageId = lineage.recordBirth(LineageRecorder.NO_PARENT, this.program);
+    }
+
+    /**
+     * Numer roba w rejestrze rodowodu; ma znaczenie tylko dla śledzonych robów.
+     *
+     * @see #trackLineage
+     */
+    public int getLineageId() {
+        return this.lineageId;
+    }
+
+    /**
+     * Przenosi roba na planszę {@code board}, zachowując jego współrzędne, o ile mieszczą się na nowej planszy.
+     *
+     * @param board plansza, na którą przenosi się rob
+     */
+    public void relocate(Board board) {
+        this.x = board.wrapX(this.x);
+        this.y = board.wrapY(this.y);
+    }
+
+    /**
+     * Odbiera robowi {@code energy} jednostek energii, np. z jedzenia, którego zjedzenie zostało unieważnione.
+     * Rob, któremu zabraknie energii, przestaje być żywy.
+     */
+    public void revokeEnergy(int energy) {
+        this.energy -= energy;
     }
 
     /**
@@ -262,12 +487,57 @@ public class Rob {
         return this.energy;
     }
 
+    public Coordinates getCoordinates() {
+        return new Coordinates(this.x, this.y);
+    }
+
+    public int getX() {
+        return this.x;
+    }
+
+    public int getY() {
+        return this.y;
+    }
+
+    Direction getDirection() {
+        return this.direction;
+    }
+
+    /**
+     * Zwraca niemodyfikowalny widok programu roba.
+     */
+    public List<Instruction> getProgram() {
+        return Collections.unmodifiableList(this.program);
+    }
+
+    /**
+     * Zwraca 64-bitowy skrót programu. Równe programy mają równe skróty.
+     */
+    public long getProgramHash() {
+        if (!this.programHashComputed) {
+            long hash = 0xcbf29ce484222325L;
+            for (Instruction instruction : this.program) {
+                hash = (hash ^ (instruction.ordinal() + 1)) * 0x100000001b3L;
+            }
+            this.programHash = hash;
+            this.programHashComputed = true;
+        }
+        return this.programHash;
+    }
+
     /**
      * Tworzy opis stanu roba
      */
     @Override
     public String toString() {
-        return "Rob: " + "wiek: " + this.age + ", " + "energia: " + this.energy + ", " +
-                "pozycja " + "(" + this.coordinates.X() + ", " + this.coordinates.Y() + ")";
+        return describe(this.age, this.energy, this.x, this.y);
+    }
+
+    /**
+     * Tworzy opis stanu roba o podanych atrybutach, taki sam jak {@link #toString}.
+     */
+    public static String describe(int age, int energy, int x, int y) {
+        return "Rob: " + "wiek: " + age + ", " + "energia: " + energy + ", " +
+                "pozycja " + "(" + x + ", " + y + ")";
     }
 }
@@ -0,0 +1,61 @@
+package project.simulation.rob;
+
+import project.parameters.Configuration;
+import project.simulation.universe.spatial.Direction;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Zapis stanu roba w postaci binarnej, np. w celu przesłania go do innego procesu.
+ * <p>Zapisywane są tylko atrybuty zmieniające się w trakcie symulacji. Atrybuty wynikające z konfiguracji są przy
+ * odczycie pobierane z konfiguracji, która musi być taka sama jak w miejscu zapisu.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class RobCodec {
+    private static final Direction[] DIRECTIONS = Direction.values();
+    private static final Instruction[] INSTRUCTIONS = Instruction.values();
+
+    private RobCodec() {
+    }
+
+    /**
+     * Liczba bajtów zajmowana przez zapis roba.
+     */
+    public static int size(Rob rob) {
+        return 5 * Integer.BYTES + 2 + rob.getProgramLength();
+    }
+
+    public static void write(Rob rob, ByteBuffer buffer) {
+        buffer.putInt(rob.getAge());
+        buffer.putInt(rob.getEnergyLevel());
+        buffer.put((byte) (rob.willMultiply() ? 1 : 0));
+        buffer.put((byte) rob.getDirection().ordinal());
+        buffer.putInt(rob.getX());
+        buffer.putInt(rob.getY());
+        buffer.putInt(rob.getProgramLength());
+        for (Instruction instruction : rob.getProgram()) {
+            buffer.put((byte) instruction.ordinal());
+        }
+    }
+
+    /**
+     * Odczytuje roba, który będzie losował swoje zachowanie za pomocą generatora {@code random}.
+     */
+    public static Rob read(ByteBuffer buffer, Configuration configuration, Random random) {
+        int age = buffer.getInt();
+        int energy = buffer.getInt();
+        boolean willMultiply = buffer.get() != 0;
+        Direction direction = DIRECTIONS[buffer.get()];
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int programLength = buffer.getInt();
+        ArrayList<Instruction> program = new ArrayList<>(programLength);
+        for (int i = 0; i < programLength; i++) {
+            program.add(INSTRUCTIONS[buffer.get()]);
+        }
+        return new Rob(configuration, age, energy, program, direction, x, y, willMultiply, random);
+    }
+}
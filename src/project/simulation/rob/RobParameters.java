@@ -0,0 +1,34 @@
+package project.simulation.rob;
+
+import project.parameters.Configuration;
+
+import java.util.ArrayList;
+
+/**
+ * Parametry roba wynikające z konfiguracji. Nie zmieniają się w trakcie symulacji, więc są wspólne dla roba i jego
+ * potomków, a przy tworzeniu populacji przez {@link PopulationSeeder} dla wszystkich robów.
+ *
+ * @author Katarzyna Mielnik
+ */
+final class RobParameters {
+    final int singleRoundEnergyCost;
+    final double partOfParentEnergy;
+    final int multiplicationLimit;
+    final double multiplicationOdds;
+
+    final double instructionRemovalOdds;
+    final double instructionChangeOdds;
+    final double instructionAddingOdds;
+    final ArrayList<Instruction> instructionSet;
+
+    RobParameters(Configuration configuration) {
+        this.singleRoundEnergyCost = configuration.singleRoundEnergyCost();
+        this.partOfParentEnergy = configuration.partOfParentEnergy();
+        this.multiplicationLimit = configuration.multiplicationLimit();
+        this.multiplicationOdds = configuration.multiplicationOdds();
+        this.instructionRemovalOdds = configuration.instructionRemovalOdds();
+        this.instructionChangeOdds = configuration.instructionChangeOdds();
+        this.instructionAddingOdds = configuration.instructionAddingOdds();
+        this.instructionSet = configuration.instructionList();
+    }
+}
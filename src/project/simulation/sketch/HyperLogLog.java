@@ -0,0 +1,80 @@
+package project.simulation.sketch;
+
+import java.util.Arrays;
+
+/**
+ * Szkic HyperLogLog przybliżający liczbę różnych elementów strumienia w stałej pamięci.
+ * <p>Elementy są podawane jako 64-bitowe skróty. Przy {@code 2^precision} rejestrach błąd względny oszacowania
+ * wynosi około {@code 1.04 / sqrt(2^precision)}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class HyperLogLog {
+    private static final int MIN_PRECISION = 4;
+    private static final int MAX_PRECISION = 18;
+
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION)
+            throw new IllegalArgumentException("Niepoprawna precyzja: " + precision + ".");
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    /**
+     * Tworzy szkic o najmniejszej liczbie rejestrów, dla której błąd względny nie przekracza {@code relativeError}.
+     */
+    public static HyperLogLog withRelativeError(double relativeError) {
+        double registers = Math.pow(1.04 / relativeError, 2);
+        int precision = (int) Math.ceil(Math.log(registers) / Math.log(2));
+        return new HyperLogLog(Math.max(MIN_PRECISION, Math.min(MAX_PRECISION, precision)));
+    }
+
+    public void add(long hash) {
+        hash = mix(hash);
+        int register = (int) (hash >>> (Long.SIZE - this.precision));
+        // Pozycja pierwszej jedynki w pozostałych bitach; dopisana jedynka ogranicza wynik.
+        long rest = (hash << this.precision) | (1L << (this.precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > this.registers[register])
+            this.registers[register] = rank;
+    }
+
+    /**
+     * Oszacowanie liczby różnych dodanych elementów.
+     */
+    public long estimate() {
+        int m = this.registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : this.registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0)
+                zeros++;
+        }
+        double alpha = m == 16 ? 0.673 : m == 32 ? 0.697 : m == 64 ? 0.709 : 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        // Dla małych liczności dokładniejsze jest zliczanie pustych rejestrów.
+        if (estimate <= 2.5 * m && zeros > 0)
+            estimate = m * Math.log((double) m / zeros);
+        return Math.round(estimate);
+    }
+
+    public void clear() {
+        Arrays.fill(this.registers, (byte) 0);
+    }
+
+    /**
+     * Miesza bity skrótu, aby słabe skróty (np. różniące się na kilku bitach) rozkładały się równomiernie.
+     */
+    static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,232 @@
+package project.simulation.sketch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Szkic Space-Saving wyznaczający najczęstsze elementy strumienia w stałej pamięci.
+ * <p>Szkic przechowuje co najwyżej {@code capacity} liczników. Gdy pojawia się nowy element, a wszystkie liczniki są
+ * zajęte, przejmuje on licznik o najmniejszej wartości. Liczba wystąpień każdego elementu jest zawyżona co najwyżej
+ * o {@code n / capacity}, gdzie {@code n} to długość strumienia, a każdy element występujący częściej niż
+ * {@code n / capacity} razy ma swój licznik.</p>
+ * <p>Elementy są identyfikowane 64-bitowymi kluczami. Do klucza można dołączyć obiekt opisujący element.</p>
+ *
+ * @param <T> typ obiektu opisującego element
+ * @author Katarzyna Mielnik
+ */
+public class SpaceSaving<T> {
+
+    /**
+     * Licznik elementu: oszacowanie liczby wystąpień oraz maksymalne zawyżenie tego oszacowania.
+     */
+    public static class Counter<T> {
+        private final T item;
+        private final long count;
+        private final long error;
+
+        private Counter(T item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public T item() {
+            return this.item;
+        }
+
+        public long count() {
+            return this.count;
+        }
+
+        public long error() {
+            return this.error;
+        }
+    }
+
+    private final int capacity;
+    private int size;
+    private long streamLength;
+
+    private final long[] keys;
+    private final long[] counts;
+    private final long[] errors;
+    private final Object[] items;
+
+    // Kopiec minimalny numerów liczników względem ich wartości oraz pozycje liczników w kopcu.
+    private final int[] heap;
+    private final int[] heapPositions;
+
+    // Tablica z adresowaniem otwartym: numer licznika + 1 dla klucza, 0 oznacza puste miejsce.
+    private final int[] table;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.keys = new long[capacity];
+        this.counts = new long[capacity];
+        this.errors = new long[capacity];
+        this.items = new Object[capacity];
+        this.heap = new int[capacity];
+        this.heapPositions = new int[capacity];
+        this.table = new int[Integer.highestOneBit(Math.max(1, 2 * capacity - 1)) << 1];
+    }
+
+    /**
+     * Tworzy szkic, w którym oszacowania liczby wystąpień są zawyżone co najwyżej o {@code relativeError * n}.
+     */
+    public static <T> SpaceSaving<T> withRelativeError(double relativeError) {
+        return new SpaceSaving<>((int) Math.ceil(1 / relativeError));
+    }
+
+    /**
+     * Zlicza wystąpienie elementu o kluczu {@code key}.
+     *
+     * @return prawda, wtedy i tylko wtedy, gdy element nie miał wcześniej licznika; należy wtedy dołączyć do niego
+     * obiekt funkcją {@link #setItem}
+     */
+    public boolean offer(long key) {
+        this.streamLength++;
+        int counter = find(key);
+        if (counter >= 0) {
+            this.counts[counter]++;
+            siftDown(this.heapPositions[counter]);
+            return false;
+        }
+
+        if (this.size < this.capacity) {
+            counter = this.size++;
+            this.counts[counter] = 1;
+            this.errors[counter] = 0;
+            this.heap[counter] = counter;
+            this.heapPositions[counter] = counter;
+            siftUp(counter);
+        }
+        else {
+            counter = this.heap[0];
+            remove(this.keys[counter]);
+            this.errors[counter] = this.counts[counter];
+            this.counts[counter]++;
+            siftDown(0);
+        }
+        this.keys[counter] = key;
+        this.items[counter] = null;
+        insert(key, counter);
+        return true;
+    }
+
+    /**
+     * Dołącza obiekt {@code item} do licznika elementu o kluczu {@code key}, jeśli taki licznik istnieje.
+     */
+    public void setItem(long key, T item) {
+        int counter = find(key);
+        if (counter >= 0)
+            this.items[counter] = item;
+    }
+
+    /**
+     * Zwraca co najwyżej {@code k} liczników o największych wartościach, od największej.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Counter<T>> top(int k) {
+        Integer[] order = new Integer[this.size];
+        for (int i = 0; i < this.size; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(this.counts[b], this.counts[a]));
+
+        List<Counter<T>> top = new ArrayList<>();
+        for (int i = 0; i < Math.min(k, this.size); i++) {
+            int counter = order[i];
+            top.add(new Counter<>((T) this.items[counter], this.counts[counter], this.errors[counter]));
+        }
+        return top;
+    }
+
+    /**
+     * Liczba zliczonych wystąpień wszystkich elementów.
+     */
+    public long streamLength() {
+        return this.streamLength;
+    }
+
+    public void clear() {
+        this.size = 0;
+        this.streamLength = 0;
+        Arrays.fill(this.items, null);
+        Arrays.fill(this.table, 0);
+    }
+
+    private int slot(long key) {
+        return (int) HyperLogLog.mix(key) & (this.table.length - 1);
+    }
+
+    private int find(long key) {
+        for (int slot = slot(key); this.table[slot] != 0; slot = (slot + 1) & (this.table.length - 1)) {
+            if (this.keys[this.table[slot] - 1] == key)
+                return this.table[slot] - 1;
+        }
+        return -1;
+    }
+
+    private void insert(long key, int counter) {
+        int slot = slot(key);
+        while (this.table[slot] != 0)
+            slot = (slot + 1) & (this.table.length - 1);
+        this.table[slot] = counter + 1;
+    }
+
+    /**
+     * Usuwa klucz z tablicy, przesuwając wstecz kolejne elementy tego samego ciągu.
+     */
+    private void remove(long key) {
+        int mask = this.table.length - 1;
+        int slot = slot(key);
+        while (this.keys[this.table[slot] - 1] != key)
+            slot = (slot + 1) & mask;
+
+        int next = (slot + 1) & mask;
+        while (this.table[next] != 0) {
+            int home = slot(this.keys[this.table[next] - 1]);
+            // Element można przesunąć na zwolnione miejsce, jeśli nie leży ono między jego miejscem docelowym a nim.
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                this.table[slot] = this.table[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        this.table[slot] = 0;
+    }
+
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (this.counts[this.heap[parent]] <= this.counts[this.heap[position]])
+                return;
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1, right = left + 1;
+            if (left < this.size && this.counts[this.heap[left]] < this.counts[this.heap[smallest]])
+                smallest = left;
+            if (right < this.size && this.counts[this.heap[right]] < this.counts[this.heap[smallest]])
+                smallest = right;
+            if (smallest == position)
+                return;
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int counter = this.heap[a];
+        this.heap[a] = this.heap[b];
+        this.heap[b] = counter;
+        this.heapPositions[this.heap[a]] = a;
+        this.heapPositions[this.heap[b]] = b;
+    }
+}
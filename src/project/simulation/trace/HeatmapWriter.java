@@ -0,0 +1,113 @@
+package project.simulation.trace;
+
+import project.simulation.universe.Board;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Zapisuje co {@code frequence} tur pomniejszone mapy gęstości robów i jedzenia na planszy.
+ * <p>Plansza jest dzielona na kwadraty o boku {@code scale} pól (ostatnie w wierszu i kolumnie mogą być mniejsze).
+ * Plik zaczyna się nagłówkiem: {@link #MAGIC}, {@link #VERSION}, szerokość i wysokość planszy, {@code scale}
+ * oraz szerokość i wysokość mapy (liczby {@code int}). Każda mapa to numer tury ({@code int}), a po nim liczba robów
+ * oraz liczba pól z jedzeniem w każdym kwadracie, wiersz po wierszu, w postaci liczb zmiennej długości (varint).
+ * Liczby robów pochodzą z indeksu zajętości pól planszy ({@link Board#robsInRegion}), więc nie wymagają
+ * przeglądania robów.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class HeatmapWriter implements AutoCloseable {
+    static final int MAGIC = 0x524F4248;
+    static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Board board;
+    private final int scale;
+    private final int frequence;
+    private final int width;
+    private final int height;
+
+    /**
+     * Tworzy plik {@code file} z mapami gęstości planszy {@code board}.
+     *
+     * @param scale     bok kwadratu pól odpowiadającego jednemu punktowi mapy
+     * @param frequence co ile tur zapisywana jest mapa
+     * @throws IOException nie udało się utworzyć pliku
+     */
+    public HeatmapWriter(Path file, Board board, int scale, int frequence) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.board = board;
+        this.scale = Math.max(1, scale);
+        this.frequence = Math.max(1, frequence);
+        this.width = (board.sizeX() + this.scale - 1) / this.scale;
+        this.height = (board.sizeY() + this.scale - 1) / this.scale;
+
+        this.buffer.putInt(MAGIC).putInt(VERSION).putInt(board.sizeX()).putInt(board.sizeY()).putInt(this.scale)
+                .putInt(this.width).putInt(this.height);
+    }
+
+    /**
+     * Zapisuje mapy po turze {@code roundNumber}, jeśli przypada na nią zapis.
+     *
+     * @throws IOException błąd zapisu pliku
+     */
+    public void writeRound(int roundNumber) throws IOException {
+        if (roundNumber % this.frequence != 0)
+            return;
+        ensure(Integer.BYTES);
+        this.buffer.putInt(roundNumber);
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                ensure(TraceFormat.MAX_VARINT_BYTES);
+                TraceFormat.putVarint(this.buffer, this.board.robsInRegion(x * this.scale, y * this.scale,
+                        Math.min(this.board.sizeX(), (x + 1) * this.scale),
+                        Math.min(this.board.sizeY(), (y + 1) * this.scale)));
+            }
+        }
+        for (int y = 0; y < this.height; y++) {
+            for (int x = 0; x < this.width; x++) {
+                ensure(TraceFormat.MAX_VARINT_BYTES);
+                TraceFormat.putVarint(this.buffer, foodInSquare(x, y));
+            }
+        }
+    }
+
+    private int foodInSquare(int mapX, int mapY) {
+        int food = 0;
+        int toX = Math.min(this.board.sizeX(), (mapX + 1) * this.scale);
+        int toY = Math.min(this.board.sizeY(), (mapY + 1) * this.scale);
+        for (int y = mapY * this.scale; y < toY; y++) {
+            for (int x = mapX * this.scale; x < toX; x++) {
+                if (this.board.foodAt(x, y))
+                    food++;
+            }
+        }
+        return food;
+    }
+
+    @Override
+    public void close() throws IOException {
+        flush();
+        this.channel.close();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (this.buffer.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}
@@ -0,0 +1,73 @@
+package project.simulation.trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stałe i kodowanie liczb wspólne dla {@link TraceWriter} i {@link TraceReader}.
+ * <p>Plik śladu zaczyna się nagłówkiem: {@link #MAGIC}, {@link #VERSION}, szerokość i wysokość planszy, czas wzrostu
+ * jedzenia i odstęp między klatkami kluczowymi (liczby {@code int}). Dalej następują zapisy kolejnych tur, każdy
+ * zaczynający się rodzajem zapisu (bajt) i numerem tury:</p>
+ * <ul>
+ *     <li>{@link #KEYFRAME}: stan każdego pola planszy, liczba robów i położenie oraz energia każdego z nich,</li>
+ *     <li>{@link #DELTA}: pola zjedzone w tej turze, numery robów, które zginęły, zmiana położenia i energii
+ *     pozostałych robów oraz położenie i energia robów, które się urodziły.</li>
+ * </ul>
+ * <p>Odrastanie jedzenia nie jest zapisywane, bo wynika z tur, w których jedzenie zjedzono. Liczby są zapisywane
+ * w postaci zmiennej długości (varint), liczby mogące być ujemne dodatkowo w kodowaniu zigzag, a rosnące ciągi
+ * numerów jako różnice kolejnych wartości. Plik kończy się spisem klatek kluczowych (liczba klatek, a dla każdej
+ * numer tury i położenie w pliku), numerem ostatniej tury, położeniem spisu i ponownie {@link #MAGIC}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+final class TraceFormat {
+    static final int MAGIC = 0x524F4254;
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+    static final int FOOTER_TAIL_BYTES = Integer.BYTES + Long.BYTES + Integer.BYTES;
+
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+
+    /**
+     * Największa liczba bajtów zajmowana przez liczbę {@code int} w postaci zmiennej długości.
+     */
+    static final int MAX_VARINT_BYTES = 5;
+
+    private TraceFormat() {
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return value;
+        }
+    }
+
+    static void putSignedVarint(ByteBuffer buffer, int value) {
+        putVarint(buffer, (value << 1) ^ (value >> 31));
+    }
+
+    static int getSignedVarint(ByteBuffer buffer) {
+        int value = getVarint(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Najkrótsza zmiana współrzędnej na planszy zawiniętej w torus o obwodzie {@code size}.
+     */
+    static int wrappedDelta(int from, int to, int size) {
+        int delta = Math.floorMod(to - from, size);
+        return delta > size / 2 ? delta - size : delta;
+    }
+}
@@ -0,0 +1,231 @@
+package project.simulation.trace;
+
+import project.simulation.universe.Board;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Odtwarza przebieg symulacji zapisany przez {@link TraceWriter}.
+ * <p>Plik jest odwzorowywany w pamięci. Funkcja {@link #seek} przechodzi do dowolnej tury, zaczynając od najbliższej
+ * wcześniejszej klatki kluczowej, a {@link #next} do kolejnej tury. Stan bieżącej tury udostępniają funkcje
+ * {@link #robsNumber}, {@link #robX}, {@link #robY}, {@link #robEnergy} i {@link #foodAt}. Numer roba w turze
+ * nie zmienia się aż do jego śmierci lub do najbliższej klatki kluczowej.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class TraceReader implements AutoCloseable {
+    private final FileChannel channel;
+    private final ByteBuffer data;
+    private final int sizeX;
+    private final int sizeY;
+    private final int ripeningTime;
+    private final int[] keyframeRounds;
+    private final int[] keyframeOffsets;
+    private final int lastRound;
+
+    private final int[] foodRipeness;
+    private int round = -1;
+    private int robsNumber;
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private int[] energies = new int[0];
+    // Numery robów, które zginęły w odczytywanej turze.
+    private int[] dead = new int[0];
+
+    /**
+     * Otwiera plik śladu {@code file} i przechodzi do stanu początkowego symulacji.
+     *
+     * @throws IOException nie udało się odczytać pliku lub plik nie jest plikiem śladu
+     */
+    public TraceReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        long size = this.channel.size();
+        if (size > Integer.MAX_VALUE)
+            throw new IOException("Plik śladu jest zbyt duży.");
+        this.data = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+        if (size < TraceFormat.HEADER_BYTES + TraceFormat.FOOTER_TAIL_BYTES ||
+                this.data.getInt(0) != TraceFormat.MAGIC ||
+                this.data.getInt((int) size - Integer.BYTES) != TraceFormat.MAGIC)
+            throw new IOException("Niepoprawny plik śladu.");
+        if (this.data.getInt(Integer.BYTES) != TraceFormat.VERSION)
+            throw new IOException("Nieobsługiwana wersja pliku śladu.");
+        this.sizeX = this.data.getInt(2 * Integer.BYTES);
+        this.sizeY = this.data.getInt(3 * Integer.BYTES);
+        this.ripeningTime = this.data.getInt(4 * Integer.BYTES);
+
+        int tail = (int) size - TraceFormat.FOOTER_TAIL_BYTES;
+        this.lastRound = this.data.getInt(tail);
+        this.data.position((int) this.data.getLong(tail + Integer.BYTES));
+        int keyframesNumber = this.data.getInt();
+        this.keyframeRounds = new int[keyframesNumber];
+        this.keyframeOffsets = new int[keyframesNumber];
+        for (int i = 0; i < keyframesNumber; i++) {
+            this.keyframeRounds[i] = this.data.getInt();
+            this.keyframeOffsets[i] = (int) this.data.getLong();
+        }
+
+        this.foodRipeness = new int[this.sizeX * this.sizeY];
+        seek(this.keyframeRounds[0]);
+    }
+
+    /**
+     * Przechodzi do stanu symulacji po turze {@code roundNumber}.
+     *
+     * @throws IllegalArgumentException w śladzie nie ma takiej tury
+     */
+    public void seek(int roundNumber) {
+        if (roundNumber < this.keyframeRounds[0] || roundNumber > this.lastRound)
+            throw new IllegalArgumentException("Brak tury " + roundNumber + " w śladzie.");
+        int keyframe = Arrays.binarySearch(this.keyframeRounds, roundNumber);
+        if (keyframe < 0)
+            keyframe = -keyframe - 2;
+        // Z bieżącej tury można dojść dalej bez czytania klatki kluczowej.
+        if (this.round > roundNumber || this.round < this.keyframeRounds[keyframe]) {
+            this.data.position(this.keyframeOffsets[keyframe]);
+            readRecord();
+        }
+        while (this.round < roundNumber) {
+            readRecord();
+        }
+    }
+
+    /**
+     * Przechodzi do kolejnej tury.
+     *
+     * @return fałsz, jeśli bieżąca tura była ostatnią zapisaną turą
+     */
+    public boolean next() {
+        if (this.round >= this.lastRound)
+            return false;
+        readRecord();
+        return true;
+    }
+
+    private void readRecord() {
+        byte kind = this.data.get();
+        this.round = TraceFormat.getVarint(this.data);
+        if (kind == TraceFormat.KEYFRAME)
+            readKeyframe();
+        else
+            readDelta();
+    }
+
+    private void readKeyframe() {
+        for (int i = 0; i < this.foodRipeness.length; i++) {
+            this.foodRipeness[i] = TraceFormat.getVarint(this.data) + Board.NO_FOOD;
+        }
+        this.robsNumber = TraceFormat.getVarint(this.data);
+        ensureCapacity(this.robsNumber);
+        for (int i = 0; i < this.robsNumber; i++) {
+            this.xs[i] = TraceFormat.getVarint(this.data);
+            this.ys[i] = TraceFormat.getVarint(this.data);
+            this.energies[i] = TraceFormat.getSignedVarint(this.data);
+        }
+    }
+
+    private void readDelta() {
+        // Odrastanie jedzenia na początku tury, tak jak na planszy.
+        for (int i = 0; i < this.foodRipeness.length; i++) {
+            if (Integer.compareUnsigned(this.foodRipeness[i], this.ripeningTime) < 0)
+                this.foodRipeness[i]++;
+        }
+        int eaten = TraceFormat.getVarint(this.data);
+        int square = 0;
+        for (int i = 0; i < eaten; i++) {
+            square += TraceFormat.getVarint(this.data);
+            this.foodRipeness[square] = this.ripeningTime == 0 ? Board.NO_FOOD : 0;
+        }
+
+        int deaths = TraceFormat.getVarint(this.data);
+        if (this.dead.length < deaths)
+            this.dead = new int[Math.max(deaths, 2 * this.dead.length)];
+        int dead = 0;
+        for (int i = 0; i < deaths; i++) {
+            dead += TraceFormat.getVarint(this.data);
+            this.dead[i] = dead;
+        }
+        int alive = 0;
+        int nextDead = 0;
+        for (int i = 0; i < this.robsNumber; i++) {
+            if (nextDead < deaths && this.dead[nextDead] == i) {
+                nextDead++;
+                continue;
+            }
+            this.xs[alive] = Math.floorMod(this.xs[i] + TraceFormat.getSignedVarint(this.data), this.sizeX);
+            this.ys[alive] = Math.floorMod(this.ys[i] + TraceFormat.getSignedVarint(this.data), this.sizeY);
+            this.energies[alive] = this.energies[i] + TraceFormat.getSignedVarint(this.data);
+            alive++;
+        }
+
+        int births = TraceFormat.getVarint(this.data);
+        this.robsNumber = alive + births;
+        ensureCapacity(this.robsNumber);
+        for (int i = alive; i < this.robsNumber; i++) {
+            this.xs[i] = TraceFormat.getVarint(this.data);
+            this.ys[i] = TraceFormat.getVarint(this.data);
+            this.energies[i] = TraceFormat.getSignedVarint(this.data);
+        }
+    }
+
+    private void ensureCapacity(int robsNumber) {
+        if (this.xs.length < robsNumber) {
+            int capacity = Math.max(robsNumber, 2 * this.xs.length);
+            this.xs = Arrays.copyOf(this.xs, capacity);
+            this.ys = Arrays.copyOf(this.ys, capacity);
+            this.energies = Arrays.copyOf(this.energies, capacity);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    public int sizeX() {
+        return this.sizeX;
+    }
+
+    public int sizeY() {
+        return this.sizeY;
+    }
+
+    public int lastRound() {
+        return this.lastRound;
+    }
+
+    /**
+     * Numer bieżącej tury.
+     */
+    public int round() {
+        return this.round;
+    }
+
+    public int robsNumber() {
+        return this.robsNumber;
+    }
+
+    public int robX(int rob) {
+        return this.xs[rob];
+    }
+
+    public int robY(int rob) {
+        return this.ys[rob];
+    }
+
+    public int robEnergy(int rob) {
+        return this.energies[rob];
+    }
+
+    /**
+     * Sprawdza, czy w bieżącej turze na polu o współrzędnych ({@code x}, {@code y}) znajduje się jedzenie.
+     */
+    public boolean foodAt(int x, int y) {
+        return this.foodRipeness[y * this.sizeX + x] == this.ripeningTime;
+    }
+}
@@ -0,0 +1,243 @@
+package project.simulation.trace;
+
+import project.simulation.rob.Rob;
+import project.simulation.universe.Board;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Zapisuje przebieg symulacji do pliku śladu, z którego można go później odtworzyć turą po turze
+ * ({@link TraceReader}).
+ * <p>Dla każdej tury zapisywane są jedynie zmiany względem poprzedniej tury, a co {@code keyframeInterval} tur pełny
+ * stan planszy i robów, od którego można zacząć odtwarzanie. Pisarz obserwuje pola zjadane na planszy, więc w czasie
+ * zapisu nie można ustawić innego obserwatora zjedzonych pól. Format pliku opisuje {@link TraceFormat}.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class TraceWriter implements AutoCloseable {
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Board board;
+    private final int keyframeInterval;
+
+    private int[] keyframeRounds = new int[16];
+    private long[] keyframeOffsets = new long[16];
+    private int keyframesNumber;
+    private int lastRound = -1;
+
+    private int[] eatenSquares = new int[16];
+    private int eatenSquaresNumber;
+
+    // Roby z poprzedniej tury w kolejności ich numerów w śladzie oraz ich ostatnio zapisany stan.
+    private Rob[] robs = new Rob[0];
+    private int[] xs = new int[0];
+    private int[] ys = new int[0];
+    private int[] energies = new int[0];
+    private Set<Rob> previous = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Set<Rob> current = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Tworzy plik śladu {@code file} symulacji przebiegającej na planszy {@code board}.
+     *
+     * @param keyframeInterval co ile tur zapisywany jest pełny stan symulacji
+     * @throws IOException nie udało się utworzyć pliku
+     */
+    public TraceWriter(Path file, Board board, int keyframeInterval) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        this.board = board;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.board.observeEatenSquares(this::recordEatenSquare);
+
+        this.buffer.putInt(TraceFormat.MAGIC).putInt(TraceFormat.VERSION).putInt(board.sizeX()).putInt(board.sizeY())
+                .putInt(board.ripeningTime()).putInt(this.keyframeInterval);
+    }
+
+    /**
+     * Zapisuje stan symulacji po turze {@code roundNumber}, w której żyły roby {@code robs}. Stan początkowy
+     * zapisuje się jako turę {@code 0}. Tury należy zapisywać po kolei.
+     *
+     * @throws IOException błąd zapisu pliku
+     */
+    public void writeRound(int roundNumber, List<Rob> robs) throws IOException {
+        if (roundNumber % this.keyframeInterval == 0 || this.lastRound < 0)
+            writeKeyframe(roundNumber, robs);
+        else
+            writeDelta(roundNumber, robs);
+        this.lastRound = roundNumber;
+        this.eatenSquaresNumber = 0;
+    }
+
+    private void writeKeyframe(int roundNumber, List<Rob> robs) throws IOException {
+        if (this.keyframesNumber == this.keyframeRounds.length) {
+            this.keyframeRounds = Arrays.copyOf(this.keyframeRounds, 2 * this.keyframesNumber);
+            this.keyframeOffsets = Arrays.copyOf(this.keyframeOffsets, 2 * this.keyframesNumber);
+        }
+        this.keyframeRounds[this.keyframesNumber] = roundNumber;
+        this.keyframeOffsets[this.keyframesNumber] = position();
+        this.keyframesNumber++;
+
+        ensure(1 + TraceFormat.MAX_VARINT_BYTES);
+        this.buffer.put(TraceFormat.KEYFRAME);
+        TraceFormat.putVarint(this.buffer, roundNumber);
+        int squares = this.board.sizeX() * this.board.sizeY();
+        for (int i = 0; i < squares; i++) {
+            ensure(TraceFormat.MAX_VARINT_BYTES);
+            // Stan pola bez jedzenia (Board.NO_FOOD) jest zapisywany jako 0.
+            TraceFormat.putVarint(this.buffer, this.board.foodRipeness(i) - Board.NO_FOOD);
+        }
+
+        this.previous.clear();
+        resize(robs.size());
+        ensure(TraceFormat.MAX_VARINT_BYTES);
+        TraceFormat.putVarint(this.buffer, robs.size());
+        for (int i = 0; i < robs.size(); i++) {
+            Rob rob = robs.get(i);
+            remember(i, rob);
+            this.previous.add(rob);
+            ensure(3 * TraceFormat.MAX_VARINT_BYTES);
+            TraceFormat.putVarint(this.buffer, rob.getX());
+            TraceFormat.putVarint(this.buffer, rob.getY());
+            TraceFormat.putSignedVarint(this.buffer, rob.getEnergyLevel());
+        }
+    }
+
+    private void writeDelta(int roundNumber, List<Rob> robs) throws IOException {
+        ensure(1 + 2 * TraceFormat.MAX_VARINT_BYTES);
+        this.buffer.put(TraceFormat.DELTA);
+        TraceFormat.putVarint(this.buffer, roundNumber);
+
+        Arrays.sort(this.eatenSquares, 0, this.eatenSquaresNumber);
+        TraceFormat.putVarint(this.buffer, this.eatenSquaresNumber);
+        int last = 0;
+        for (int i = 0; i < this.eatenSquaresNumber; i++) {
+            ensure(TraceFormat.MAX_VARINT_BYTES);
+            TraceFormat.putVarint(this.buffer, this.eatenSquares[i] - last);
+            last = this.eatenSquares[i];
+        }
+
+        this.current.clear();
+        this.current.addAll(robs);
+        int deaths = 0;
+        for (int i = 0; i < this.robs.length; i++) {
+            if (!this.current.contains(this.robs[i]))
+                deaths++;
+        }
+        ensure(TraceFormat.MAX_VARINT_BYTES);
+        TraceFormat.putVarint(this.buffer, deaths);
+        last = 0;
+        for (int i = 0; i < this.robs.length; i++) {
+            if (!this.current.contains(this.robs[i])) {
+                ensure(TraceFormat.MAX_VARINT_BYTES);
+                TraceFormat.putVarint(this.buffer, i - last);
+                last = i;
+            }
+        }
+
+        // Żyjące roby zachowują kolejność, a nowe roby dostają kolejne numery.
+        Rob[] survivors = this.robs;
+        int previousNumber = survivors.length;
+        int[] previousX = this.xs, previousY = this.ys, previousEnergies = this.energies;
+        resize(robs.size());
+        int sizeX = this.board.sizeX(), sizeY = this.board.sizeY();
+        int index = 0;
+        for (int i = 0; i < previousNumber; i++) {
+            Rob rob = survivors[i];
+            if (!this.current.contains(rob))
+                continue;
+            ensure(3 * TraceFormat.MAX_VARINT_BYTES);
+            TraceFormat.putSignedVarint(this.buffer, TraceFormat.wrappedDelta(previousX[i], rob.getX(), sizeX));
+            TraceFormat.putSignedVarint(this.buffer, TraceFormat.wrappedDelta(previousY[i], rob.getY(), sizeY));
+            TraceFormat.putSignedVarint(this.buffer, rob.getEnergyLevel() - previousEnergies[i]);
+            remember(index++, rob);
+        }
+
+        ensure(TraceFormat.MAX_VARINT_BYTES);
+        TraceFormat.putVarint(this.buffer, robs.size() - index);
+        for (int i = 0; i < robs.size(); i++) {
+            Rob rob = robs.get(i);
+            if (this.previous.contains(rob))
+                continue;
+            ensure(3 * TraceFormat.MAX_VARINT_BYTES);
+            TraceFormat.putVarint(this.buffer, rob.getX());
+            TraceFormat.putVarint(this.buffer, rob.getY());
+            TraceFormat.putSignedVarint(this.buffer, rob.getEnergyLevel());
+            remember(index++, rob);
+        }
+
+        Set<Rob> swap = this.previous;
+        this.previous = this.current;
+        this.current = swap;
+    }
+
+    /**
+     * Zapisuje spis klatek kluczowych i zamyka plik.
+     */
+    @Override
+    public void close() throws IOException {
+        this.board.observeEatenSquares(null);
+        long footer = position();
+        ensure(Integer.BYTES);
+        this.buffer.putInt(this.keyframesNumber);
+        for (int i = 0; i < this.keyframesNumber; i++) {
+            ensure(Integer.BYTES + Long.BYTES);
+            this.buffer.putInt(this.keyframeRounds[i]).putLong(this.keyframeOffsets[i]);
+        }
+        ensure(TraceFormat.FOOTER_TAIL_BYTES);
+        this.buffer.putInt(this.lastRound).putLong(footer).putInt(TraceFormat.MAGIC);
+        flush();
+        this.channel.close();
+    }
+
+    private void remember(int index, Rob rob) {
+        this.robs[index] = rob;
+        this.xs[index] = rob.getX();
+        this.ys[index] = rob.getY();
+        this.energies[index] = rob.getEnergyLevel();
+    }
+
+    private void resize(int robsNumber) {
+        this.robs = new Rob[robsNumber];
+        this.xs = new int[robsNumber];
+        this.ys = new int[robsNumber];
+        this.energies = new int[robsNumber];
+    }
+
+    private void recordEatenSquare(int square) {
+        if (this.eatenSquaresNumber == this.eatenSquares.length)
+            this.eatenSquares = Arrays.copyOf(this.eatenSquares, 2 * this.eatenSquares.length);
+        this.eatenSquares[this.eatenSquaresNumber++] = square;
+    }
+
+    private long position() throws IOException {
+        return this.channel.position() + this.buffer.position();
+    }
+
+    /**
+     * Zapewnia miejsce na {@code bytes} bajtów w buforze, w razie potrzeby zapisując go do pliku.
+     */
+    private void ensure(int bytes) throws IOException {
+        if (this.buffer.remaining() < bytes)
+            flush();
+    }
+
+    private void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+}
@@ -4,10 +4,15 @@ import project.parameters.Configuration;
 import project.simulation.universe.spatial.Direction;
 import project.simulation.universe.spatial.Coordinates;
 
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Random;
 import java.util.Scanner;
+import java.util.function.IntConsumer;
 
 /**
  * Implementacja planszy, na której odbywa się symulacja.
@@ -18,24 +23,57 @@ import java.util.Scanner;
  * @author Katarzyna Mielnik
  */
 public class Board {
+    /**
+     * Stan pola, na którym jedzenie nie rośnie.
+     */
+    public static final int NO_FOOD = -1;
+    /**
+     * Logarytm o podstawie 2 boku kwadratowego obszaru, dla którego zliczane są roby.
+     */
+    private static final int TILE_SHIFT = 4;
+    /**
+     * Największy ułamek pól, na których rośnie jedzenie, przy którym plansza przechowuje tylko stany tych pól
+     * ({@link SparseBoard}).
+     */
+    private static final double SPARSE_DENSITY = 0.05;
+
     private final int sizeX;
     private final int sizeY;
-    private int foodSquaresNumber;
-    // Do pola o współrzędnych (x, y) należy odwoływać się pola[y][x].
+    // Pola dostępne w pakiecie są używane przez ConcurrentBoard.
+    int foodSquaresNumber;
+    // Stan pola o numerze y * sizeX + x znajduje się w foodRipeness[foodIndex(y * sizeX + x)]. Jest to liczba tur od
+    // zjedzenia jedzenia (jedzenie jest dojrzałe, gdy równa się ripeningTime) lub NO_FOOD.
     // Aby przejść do góry (odpowiednio na dół) należy odwołać się do mniejszej (większej) współrzędnej y
-    private final Square[][] squares;
+    final int[] foodRipeness;
+    private final int ripeningTime;
+    final int energyFromFood;
+    private final RegrowthKernel regrowth;
+    // Otrzymuje numer (y * sizeX + x) każdego pola, z którego zjedzono jedzenie.
+    private IntConsumer eatenSquaresObserver;
+    // Liczba robów na każdym polu (pola (x, y) w squareRobs[y * sizeX + x]) oraz w każdym obszarze o boku
+    // 2^TILE_SHIFT pól (obszar (tx, ty) w tileRobs[ty * tilesX + tx]).
+    final int[] squareRobs;
+    final int[] tileRobs;
+    private final int tilesX;
+    // Obszary (numerowane jak w tileRobs), z których zjedzono jedzenie od ostatniego wywołania drainEatenTiles, jako
+    // zbiór bitów, lub null, jeśli nie są śledzone.
+    private long[] eatenTiles;
 
 
-    private Board(Square[][] squares) {
-        this.squares = squares;
-        this.sizeY = squares.length;
-        this.sizeX = squares[0].length;
+    Board(int sizeX, int sizeY, int[] foodRipeness, int ripeningTime, int energyFromFood) {
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.foodRipeness = foodRipeness;
+        this.ripeningTime = ripeningTime;
+        this.energyFromFood = energyFromFood;
+        this.regrowth = RegrowthKernel.best();
+        this.squareRobs = new int[sizeX * sizeY];
+        this.tilesX = (sizeX + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT;
+        this.tileRobs = new int[this.tilesX * ((sizeY + (1 << TILE_SHIFT) - 1) >> TILE_SHIFT)];
         this.foodSquaresNumber = 0;
-        for (int i = 0; i < squares.length; i++) {
-            for (int j = 0; j < squares[i].length; j++) {
-                if (squares[i][j].containsFood())
-                    this.foodSquaresNumber++;
-            }
+        for (int ripeness : foodRipeness) {
+            if (ripeness == ripeningTime)
+                this.foodSquaresNumber++;
         }
     }
 
@@ -51,15 +89,33 @@ public class Board {
      */
     public static Board createBoard(File file, Configuration configuration)
             throws FileNotFoundException, UnknownCharacterOnBoard, UnevenRows {
-        Scanner scanner = new Scanner(file);
-        Square[][] squares = new Square[0][]; // Tablica wierszy.
+        return createBoard(new Scanner(file), configuration);
+    }
+
+    /**
+     * Tworzy planszę zapisaną w tekście {@code text} w takiej samej postaci jak w pliku z planszą.
+     *
+     * @param text          kolejne wiersze planszy oddzielone znakami nowej linii
+     * @param configuration konfiguracja symulacji
+     * @return utworzona plansza
+     * @throws UnknownCharacterOnBoard w tekście znajduje się niepoprawny znak
+     * @throws UnevenRows              wiersze planszy są różnej długości
+     */
+    public static Board createBoard(String text, Configuration configuration)
+            throws UnknownCharacterOnBoard, UnevenRows {
+        return createBoard(new Scanner(text), configuration);
+    }
+
+    private static Board createBoard(Scanner scanner, Configuration configuration)
+            throws UnknownCharacterOnBoard, UnevenRows {
+        int[][] rows = new int[0][]; // Tablica wierszy.
         int arraySize = 0;
         int lastLineLength = 0;
         int lineNumber = 0;
         while (scanner.hasNextLine()) {
             lineNumber++;
             String s = scanner.nextLine();
-            Square[] line;
+            int[] line;
 
             // Próbuje utworzyć kolejny wiersz planszy.
             try {
@@ -78,15 +134,75 @@ public class Board {
 
             if (lineNumber - 1 == arraySize) {
                 arraySize = arraySize * 2 + 1;
-                squares = Arrays.copyOf(squares, arraySize);
+                rows = Arrays.copyOf(rows, arraySize);
             }
 
-            squares[lineNumber - 1] = line;
+            rows[lineNumber - 1] = line;
         }
         scanner.close();
-        // Resize tablicy, aby nie było pustych pól.
-        squares = Arrays.copyOf(squares, lineNumber);
-        return new Board(squares);
+
+        int sizeX = rows[0].length;
+        int[] foodRipeness = new int[lineNumber * sizeX];
+        for (int i = 0; i < lineNumber; i++) {
+            System.arraycopy(rows[i], 0, foodRipeness, i * sizeX, sizeX);
+        }
+        return createBoard(sizeX, lineNumber, foodRipeness, configuration);
+    }
+
+    /**
+     * Tworzy planszę o stanach pól {@code squares} (pole (x, y) w {@code squares[y * sizeX + x]}), wybierając
+     * sposób przechowywania stanów pól na podstawie części pól, na których rośnie jedzenie.
+     */
+    private static Board createBoard(int sizeX, int sizeY, int[] squares, Configuration configuration) {
+        int foodSquares = 0;
+        for (int ripeness : squares) {
+            if (ripeness != NO_FOOD)
+                foodSquares++;
+        }
+        if (foodSquares <= SPARSE_DENSITY * squares.length)
+            return SparseBoard.of(sizeX, sizeY, squares, configuration.foodRipeningTime(),
+                    configuration.energyFromFood());
+        return new Board(sizeX, sizeY, squares, configuration.foodRipeningTime(), configuration.energyFromFood());
+    }
+
+    /**
+     * Zapisuje planszę w stanie początkowym w postaci binarnej, którą odczytuje {@link #readImage}: wymiary planszy
+     * oraz jeden bit na pole, ustawiony, jeśli na polu rośnie jedzenie. Stan dojrzewania jedzenia nie jest zapisywany.
+     */
+    public void writeImage(DataOutputStream out) throws IOException {
+        out.writeInt(this.sizeX);
+        out.writeInt(this.sizeY);
+        int squaresNumber = this.sizeX * this.sizeY;
+        for (int word = 0; word < squaresNumber; word += Long.SIZE) {
+            long bits = 0;
+            for (int i = word; i < Math.min(word + Long.SIZE, squaresNumber); i++) {
+                if (foodRipeness(i) != NO_FOOD)
+                    bits |= 1L << (i - word);
+            }
+            out.writeLong(bits);
+        }
+    }
+
+    /**
+     * Odczytuje planszę zapisaną funkcją {@link #writeImage}. Jedzenie na wszystkich polach, na których rośnie, jest
+     * dojrzałe, tak jak w planszy wczytanej z pliku.
+     *
+     * @throws IllegalArgumentException zapis jest niepoprawny
+     */
+    public static Board readImage(ByteBuffer buffer, Configuration configuration) {
+        int sizeX = buffer.getInt();
+        int sizeY = buffer.getInt();
+        if (sizeX <= 0 || sizeY <= 0 || (long) sizeX * sizeY > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Niepoprawne wymiary planszy.");
+        long[] words = new long[(sizeX * sizeY + Long.SIZE - 1) / Long.SIZE];
+        buffer.asLongBuffer().get(words);
+        buffer.position(buffer.position() + words.length * Long.BYTES);
+        int[] squares = new int[sizeX * sizeY];
+        for (int i = 0; i < squares.length; i++) {
+            boolean food = (words[i / Long.SIZE] & (1L << (i % Long.SIZE))) != 0;
+            squares[i] = food ? configuration.foodRipeningTime() : NO_FOOD;
+        }
+        return createBoard(sizeX, sizeY, squares, configuration);
     }
 
     /**
@@ -94,23 +210,44 @@ public class Board {
      *
      * @param s            zapis wiersza w postaci {@code String}
      * @param configuration konfiguracja symulacji
-     * @return tablica typu {@code Square}
+     * @return stany kolejnych pól wiersza
      * @throws UnknownCharacterOnBoard w wierszu znajduje się niepoprawny znak
-     * @see Square
      */
-    private static Square[] createBoardRow(String s, Configuration configuration) throws UnknownCharacterOnBoard {
-        Square[] row = new Square[s.length()];
+    private static int[] createBoardRow(String s, Configuration configuration) throws UnknownCharacterOnBoard {
+        int[] row = new int[s.length()];
         for (int i = 0; i < s.length(); i++) {
             if (s.charAt(i) == ' ')
-                row[i] = new EmptySquare();
+                row[i] = NO_FOOD;
             else if (s.charAt(i) == 'x')
-                row[i] = new FoodSquare(configuration.energyFromFood(), configuration.foodRipeningTime());
+                row[i] = configuration.foodRipeningTime(); // Na początku jedzenie jest dojrzałe.
             else
                 throw new UnknownCharacterOnBoard(s.charAt(0));
         }
         return row;
     }
 
+    /**
+     * Tworzy niezależną kopię planszy w obecnym stanie. Roby nie są kopiowane, więc na kopii nie ma robów.
+     */
+    public Board copy() {
+        return new Board(this.sizeX, this.sizeY, this.foodRipeness.clone(), this.ripeningTime, this.energyFromFood);
+    }
+
+    /**
+     * Tworzy niezależną kopię planszy w obecnym stanie, która przechowuje stany tylko pól z jedzeniem
+     * ({@code sparse}) albo wszystkich pól, niezależnie od tego, na jakiej części pól rośnie jedzenie. Roby nie są
+     * kopiowane.
+     */
+    public Board copy(boolean sparse) {
+        int[] squares = new int[this.sizeX * this.sizeY];
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = foodRipeness(i);
+        }
+        if (sparse)
+            return SparseBoard.of(this.sizeX, this.sizeY, squares, this.ripeningTime, this.energyFromFood);
+        return new Board(this.sizeX, this.sizeY, squares, this.ripeningTime, this.energyFromFood);
+    }
+
     /**
      * Zwraca współrzędne losowej pozycji na planszy.
      * @see Coordinates
@@ -119,6 +256,28 @@ public class Board {
         return Coordinates.getRandomCoordinates(this.sizeX, this.sizeY);
     }
 
+    /**
+     * Zwraca współrzędne losowej pozycji na planszy wylosowanej za pomocą generatora {@code random}.
+     * @see Coordinates
+     */
+    public Coordinates getRandomPosition(Random random) {
+        return Coordinates.getRandomCoordinates(this.sizeX, this.sizeY, random);
+    }
+
+    /**
+     * Zwraca współrzędną {@code x} pola na planszy odpowiadającą pozycji {@code posX} w wierszu.
+     */
+    public int wrapX(int posX) {
+        return Math.floorMod(posX, this.sizeX);
+    }
+
+    /**
+     * Zwraca współrzędną {@code y} pola na planszy odpowiadającą pozycji {@code posY} w kolumnie.
+     */
+    public int wrapY(int posY) {
+        return Math.floorMod(posY, this.sizeY);
+    }
+
     /**
      * Oblicza współrzędne sąsiedniego pola, na które wskazuje {@code direction}.
      *
@@ -150,7 +309,23 @@ public class Board {
      * @return prawda wtedy i tylko wtedy, gdy na polu znajduje się jedzenie
      */
     public boolean foodAtCoordinates(Coordinates coordinates) {
-        return this.squares[coordinates.Y()][coordinates.X()].containsFood();
+        return foodAt(coordinates.X(), coordinates.Y());
+    }
+
+    /**
+     * Sprawdza, czy na polu o współrzędnych ({@code x}, {@code y}) znajduje się jedzenie.
+     */
+    public boolean foodAt(int x, int y) {
+        int foodIndex = foodIndex(y * this.sizeX + x);
+        return foodIndex >= 0 && this.foodRipeness[foodIndex] == this.ripeningTime;
+    }
+
+    /**
+     * Zwraca indeks stanu pola o numerze {@code squareIndex} (równym {@code y * sizeX + x}) w tablicy stanów pól lub
+     * -1, jeśli stan tego pola nie jest przechowywany, ponieważ nigdy nie rośnie na nim jedzenie.
+     */
+    int foodIndex(int squareIndex) {
+        return squareIndex;
     }
 
     /**
@@ -158,15 +333,7 @@ public class Board {
      * Aktualizuje {@code liczbaPólZJedzeniem} o liczbę pól, na których zregenerowało się jedzenie.
      */
     public void nextRound() {
-        for (int i = 0; i < this.squares.length; i++) {
-            for (int j = 0; j < this.squares[i].length; j++) {
-                boolean previousState = this.squares[i][j].containsFood();
-                this.squares[i][j].nextRound();
-                if (this.squares[i][j].containsFood() != previousState) {
-                    this.foodSquaresNumber++;
-                }
-            }
-        }
+        this.foodSquaresNumber += this.regrowth.regrow(this.foodRipeness, this.ripeningTime);
     }
 
     /**
@@ -176,13 +343,201 @@ public class Board {
      * @return wartość energii, którą daje zjedzone jedzenie
      */
     public int eatFoodFromSquare(Coordinates squareCoordinates) {
-        if (this.squares[squareCoordinates.Y()][squareCoordinates.X()].containsFood()) {
-            this.foodSquaresNumber--;
-            return ((FoodSquare) this.squares[squareCoordinates.Y()][squareCoordinates.X()]).eatFood();
+        return eatFoodFromSquare(squareCoordinates.X(), squareCoordinates.Y());
+    }
+
+    /**
+     * Przeprowadza procedurę spożycia jedzenia na polu o współrzędnych ({@code x}, {@code y}).
+     *
+     * @return wartość energii, którą daje zjedzone jedzenie
+     */
+    public int eatFoodFromSquare(int x, int y) {
+        int squareIndex = y * this.sizeX + x;
+        int foodIndex = foodIndex(squareIndex);
+        if (foodIndex >= 0 && this.foodRipeness[foodIndex] == this.ripeningTime) {
+            eatFood(foodIndex);
+            if (this.eatenTiles != null)
+                markEatenTile(tileIndex(x, y));
+            if (this.eatenSquaresObserver != null)
+                this.eatenSquaresObserver.accept(squareIndex);
+            return this.energyFromFood;
         }
         else return 0;
     }
 
+    /**
+     * Zjada jedzenie z pola o numerze {@code squareIndex} (równym {@code y * sizeX + x}), jeśli się na nim znajduje.
+     * Służy do odtworzenia na tej planszy zmian dokonanych na innej kopii planszy, dlatego nie powiadamia
+     * obserwatora zjedzonych pól.
+     *
+     * @param squareIndex numer pola
+     */
+    public void applyEatenSquare(int squareIndex) {
+        int foodIndex = foodIndex(squareIndex);
+        if (foodIndex >= 0 && this.foodRipeness[foodIndex] == this.ripeningTime) {
+            eatFood(foodIndex);
+            if (this.eatenTiles != null)
+                markEatenTile(tileIndex(squareIndex % this.sizeX, squareIndex / this.sizeX));
+        }
+    }
+
+    private void eatFood(int foodIndex) {
+        this.foodSquaresNumber--;
+        // Przy zerowym czasie wzrostu zjedzone jedzenie nigdy nie odrasta.
+        this.foodRipeness[foodIndex] = this.ripeningTime == 0 ? NO_FOOD : 0;
+    }
+
+    /**
+     * Ustawia obserwatora, który otrzymuje numer ({@code y * sizeX + x}) każdego pola, z którego rob zjadł jedzenie.
+     *
+     * @param observer obserwator lub {@code null}, aby go usunąć
+     */
+    public void observeEatenSquares(IntConsumer observer) {
+        this.eatenSquaresObserver = observer;
+    }
+
+    /**
+     * Włącza śledzenie obszarów planszy o boku {@link #tileSize()} pól, z których zjedzono jedzenie
+     * ({@link #drainEatenTiles}).
+     */
+    public void trackEatenTiles() {
+        if (this.eatenTiles == null)
+            this.eatenTiles = new long[(this.tileRobs.length + Long.SIZE - 1) / Long.SIZE];
+    }
+
+    private void markEatenTile(int tile) {
+        this.eatenTiles[tile / Long.SIZE] |= 1L << tile;
+    }
+
+    /**
+     * Przekazuje {@code consumer} numer ({@code ty * tilesX() + tx}) każdego obszaru, z którego zjedzono jedzenie od
+     * poprzedniego wywołania, i zapomina te obszary. Wymaga włączenia śledzenia ({@link #trackEatenTiles()}).
+     */
+    public void drainEatenTiles(IntConsumer consumer) {
+        for (int word = 0; word < this.eatenTiles.length; word++) {
+            for (long bits = this.eatenTiles[word]; bits != 0; bits &= bits - 1) {
+                consumer.accept(word * Long.SIZE + Long.numberOfTrailingZeros(bits));
+            }
+            this.eatenTiles[word] = 0;
+        }
+    }
+
+    /**
+     * Bok kwadratowego obszaru planszy, w którym zliczane są roby i śledzone zjedzone jedzenie.
+     */
+    public static int tileSize() {
+        return 1 << TILE_SHIFT;
+    }
+
+    public int tilesX() {
+        return this.tilesX;
+    }
+
+    public int tilesY() {
+        return this.tileRobs.length / this.tilesX;
+    }
+
+    /**
+     * Umieszcza roba na polu ({@code x}, {@code y}), np. po jego narodzinach lub przybyciu na planszę.
+     */
+    public void addRob(int x, int y) {
+        this.squareRobs[y * this.sizeX + x]++;
+        this.tileRobs[tileIndex(x, y)]++;
+    }
+
+    /**
+     * Usuwa roba z pola ({@code x}, {@code y}), np. po jego śmierci lub opuszczeniu planszy.
+     */
+    public void removeRob(int x, int y) {
+        this.squareRobs[y * this.sizeX + x]--;
+        this.tileRobs[tileIndex(x, y)]--;
+    }
+
+    /**
+     * Przenosi roba z pola ({@code fromX}, {@code fromY}) na pole ({@code toX}, {@code toY}).
+     */
+    public void moveRob(int fromX, int fromY, int toX, int toY) {
+        this.squareRobs[fromY * this.sizeX + fromX]--;
+        this.squareRobs[toY * this.sizeX + toX]++;
+        int fromTile = tileIndex(fromX, fromY), toTile = tileIndex(toX, toY);
+        if (fromTile != toTile) {
+            this.tileRobs[fromTile]--;
+            this.tileRobs[toTile]++;
+        }
+    }
+
+    int tileIndex(int x, int y) {
+        return (y >> TILE_SHIFT) * this.tilesX + (x >> TILE_SHIFT);
+    }
+
+    /**
+     * Liczba robów na polu ({@code x}, {@code y}).
+     */
+    public int robsAt(int x, int y) {
+        return this.squareRobs[y * this.sizeX + x];
+    }
+
+    /**
+     * Liczba robów w prostokącie pól o współrzędnych {@code x} od {@code fromX} do {@code toX} i {@code y} od
+     * {@code fromY} do {@code toY} (bez {@code toX} i {@code toY}). Obszary całkowicie zawarte w prostokącie nie są
+     * przeglądane pole po polu, więc koszt zależy głównie od obwodu prostokąta.
+     */
+    public int robsInRegion(int fromX, int fromY, int toX, int toY) {
+        if (fromX < 0 || fromY < 0 || toX > this.sizeX || toY > this.sizeY)
+            throw new IllegalArgumentException("Prostokąt wykracza poza planszę.");
+        int robs = 0;
+        for (int tileY = fromY >> TILE_SHIFT; (tileY << TILE_SHIFT) < toY; tileY++) {
+            int tileTop = tileY << TILE_SHIFT;
+            int top = Math.max(fromY, tileTop), bottom = Math.min(toY, tileTop + (1 << TILE_SHIFT));
+            boolean wholeRows = top == tileTop && bottom == Math.min(this.sizeY, tileTop + (1 << TILE_SHIFT));
+            for (int tileX = fromX >> TILE_SHIFT; (tileX << TILE_SHIFT) < toX; tileX++) {
+                int tileLeft = tileX << TILE_SHIFT;
+                int left = Math.max(fromX, tileLeft), right = Math.min(toX, tileLeft + (1 << TILE_SHIFT));
+                if (wholeRows && left == tileLeft && right == Math.min(this.sizeX, tileLeft + (1 << TILE_SHIFT))) {
+                    robs += this.tileRobs[tileY * this.tilesX + tileX];
+                    continue;
+                }
+                for (int y = top; y < bottom; y++) {
+                    for (int x = left; x < right; x++) {
+                        robs += this.squareRobs[y * this.sizeX + x];
+                    }
+                }
+            }
+        }
+        return robs;
+    }
+
+    public int sizeX() {
+        return this.sizeX;
+    }
+
+    public int sizeY() {
+        return this.sizeY;
+    }
+
+    /**
+     * Liczba tur, po której zjedzone jedzenie odrasta.
+     */
+    public int ripeningTime() {
+        return this.ripeningTime;
+    }
+
+    /**
+     * Energia, którą daje zjedzenie jedzenia z jednego pola.
+     */
+    public int energyFromFood() {
+        return this.energyFromFood;
+    }
+
+    /**
+     * Stan pola o numerze {@code squareIndex} (równym {@code y * sizeX + x}): liczba tur od zjedzenia jedzenia
+     * (jedzenie jest dojrzałe, gdy równa się {@link #ripeningTime()}) lub {@link #NO_FOOD}.
+     */
+    public int foodRipeness(int squareIndex) {
+        int foodIndex = foodIndex(squareIndex);
+        return foodIndex < 0 ? NO_FOOD : this.foodRipeness[foodIndex];
+    }
+
     /**
      * Sprawdza liczbę pól z jedzeniem. Dla celów statystyczych.
      *
@@ -0,0 +1,108 @@
+package project.simulation.universe;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/**
+ * Plansza, na której roby mogą działać jednocześnie w wielu wątkach.
+ * <p>Stan pól i liczniki robów są zmieniane operacjami atomowymi. Jedzenie jest zjadane operacją
+ * compare-and-set, więc energię z jedzenia dostaje dokładnie jeden rob. Zjedzone pola są zliczane licznikiem
+ * rozproszonym ({@link LongAdder}), aby wątki nie rywalizowały o jedną zmienną, i odejmowane od liczby pól
+ * z jedzeniem na początku kolejnej tury.</p>
+ * <p>{@link #nextRound()} musi być wywoływane, gdy żaden rob nie działa na planszy.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+public class ConcurrentBoard extends Board {
+    private static final VarHandle SQUARES = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final LongAdder eatenSquares = new LongAdder();
+
+    /**
+     * Tworzy planszę współbieżną w stanie planszy {@code board}. Roby nie są kopiowane.
+     */
+    public ConcurrentBoard(Board board) {
+        super(board.sizeX(), board.sizeY(), squares(board), board.ripeningTime(), board.energyFromFood);
+    }
+
+    /**
+     * Zwraca stany wszystkich pól planszy {@code board}, także planszy przechowującej tylko pola z jedzeniem.
+     */
+    private static int[] squares(Board board) {
+        int[] squares = new int[board.sizeX() * board.sizeY()];
+        for (int i = 0; i < squares.length; i++) {
+            squares[i] = board.foodRipeness(i);
+        }
+        return squares;
+    }
+
+    @Override
+    public boolean foodAt(int x, int y) {
+        return (int) SQUARES.getOpaque(this.foodRipeness, y * sizeX() + x) == ripeningTime();
+    }
+
+    @Override
+    public int eatFoodFromSquare(int x, int y) {
+        return eat(y * sizeX() + x) ? this.energyFromFood : 0;
+    }
+
+    @Override
+    public void applyEatenSquare(int squareIndex) {
+        eat(squareIndex);
+    }
+
+    private boolean eat(int squareIndex) {
+        // Przy zerowym czasie wzrostu zjedzone jedzenie nigdy nie odrasta.
+        int eaten = ripeningTime() == 0 ? NO_FOOD : 0;
+        if (!SQUARES.compareAndSet(this.foodRipeness, squareIndex, ripeningTime(), eaten))
+            return false;
+        this.eatenSquares.increment();
+        return true;
+    }
+
+    @Override
+    public void nextRound() {
+        this.foodSquaresNumber -= (int) this.eatenSquares.sumThenReset();
+        super.nextRound();
+    }
+
+    @Override
+    public int foodSquaresNumber() {
+        return this.foodSquaresNumber - (int) this.eatenSquares.sum();
+    }
+
+    /**
+     * Obserwator zjedzonych pól nie jest obsługiwany, ponieważ byłby wywoływany jednocześnie z wielu wątków.
+     *
+     * @throws UnsupportedOperationException zawsze
+     */
+    @Override
+    public void observeEatenSquares(IntConsumer observer) {
+        throw new UnsupportedOperationException("Plansza współbieżna nie obsługuje obserwatora zjedzonych pól.");
+    }
+
+    @Override
+    public void addRob(int x, int y) {
+        SQUARES.getAndAdd(this.squareRobs, y * sizeX() + x, 1);
+        SQUARES.getAndAdd(this.tileRobs, tileIndex(x, y), 1);
+    }
+
+    @Override
+    public void removeRob(int x, int y) {
+        SQUARES.getAndAdd(this.squareRobs, y * sizeX() + x, -1);
+        SQUARES.getAndAdd(this.tileRobs, tileIndex(x, y), -1);
+    }
+
+    @Override
+    public void moveRob(int fromX, int fromY, int toX, int toY) {
+        SQUARES.getAndAdd(this.squareRobs, fromY * sizeX() + fromX, -1);
+        SQUARES.getAndAdd(this.squareRobs, toY * sizeX() + toX, 1);
+        int fromTile = tileIndex(fromX, fromY), toTile = tileIndex(toX, toY);
+        if (fromTile != toTile) {
+            SQUARES.getAndAdd(this.tileRobs, fromTile, -1);
+            SQUARES.getAndAdd(this.tileRobs, toTile, 1);
+        }
+    }
+}
@@ -1,11 +0,0 @@
-package project.simulation.universe;
-
-public class EmptySquare extends Square {
-
-    public void nextRound(){
-    }
-
-    public boolean containsFood(){
-        return false;
-    }
-}
@@ -0,0 +1,56 @@
+package project.simulation.universe;
+
+/**
+ * Procedura odrastania jedzenia na całej planszy w nowej turze.
+ * <p>Dla każdego pola, na którym jedzenie jeszcze nie dojrzało (stan między 0 a czasem wzrostu), zwiększa jego stan
+ * o jeden i zlicza pola, na których jedzenie właśnie dojrzało. Pola bez jedzenia mają stan {@link Board#NO_FOOD},
+ * który jako liczba bez znaku jest większy od każdego czasu wzrostu.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+interface RegrowthKernel {
+
+    /**
+     * Przeprowadza odrastanie jedzenia.
+     *
+     * @param foodRipeness stany pól planszy
+     * @param ripeningTime czas wzrostu jedzenia
+     * @return liczba pól, na których jedzenie dojrzało
+     */
+    int regrow(int[] foodRipeness, int ripeningTime);
+
+    /**
+     * Zwraca wektorową procedurę ({@code VectorRegrowth}), jeśli na danej platformie dostępny jest moduł
+     * {@code jdk.incubator.vector}, a w przeciwnym razie procedurę skalarną.
+     */
+    static RegrowthKernel best() {
+        return KernelHolder.BEST;
+    }
+
+    /**
+     * Wybór procedury wykonywany raz, przy pierwszym użyciu.
+     */
+    class KernelHolder {
+        private static final RegrowthKernel BEST = load();
+
+        private static RegrowthKernel load() {
+            try {
+                RegrowthKernel vector = (RegrowthKernel) Class.forName("project.simulation.universe.VectorRegrowth")
+                        .getDeclaredConstructor().newInstance();
+                if (vector.isSupported())
+                    return vector;
+            }
+            catch (ReflectiveOperationException | LinkageError e) {
+                // Brak modułu jdk.incubator.vector.
+            }
+            return new ScalarRegrowth();
+        }
+    }
+
+    /**
+     * Sprawdza, czy procedura może być efektywnie wykonywana na danej platformie.
+     */
+    default boolean isSupported() {
+        return true;
+    }
+}
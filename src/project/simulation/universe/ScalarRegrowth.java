@@ -0,0 +1,30 @@
+package project.simulation.universe;
+
+/**
+ * Skalarna procedura odrastania jedzenia, dostępna na każdej platformie.
+ *
+ * @author Katarzyna Mielnik
+ */
+class ScalarRegrowth implements RegrowthKernel {
+
+    @Override
+    public int regrow(int[] foodRipeness, int ripeningTime) {
+        return regrow(foodRipeness, 0, foodRipeness.length, ripeningTime);
+    }
+
+    /**
+     * Przeprowadza odrastanie jedzenia na polach od {@code from} (włącznie) do {@code to} (wyłącznie).
+     */
+    static int regrow(int[] foodRipeness, int from, int to, int ripeningTime) {
+        int ripened = 0;
+        for (int i = from; i < to; i++) {
+            int ripeness = foodRipeness[i];
+            if (Integer.compareUnsigned(ripeness, ripeningTime) < 0) {
+                foodRipeness[i] = ++ripeness;
+                if (ripeness == ripeningTime)
+                    ripened++;
+            }
+        }
+        return ripened;
+    }
+}
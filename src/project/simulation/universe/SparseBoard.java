@@ -0,0 +1,77 @@
+package project.simulation.universe;
+
+/**
+ * Plansza, która przechowuje stany tylko tych pól, na których rośnie jedzenie.
+ * <p>Stany pól z jedzeniem leżą obok siebie w tablicy stanów, w kolejności numerów pól, więc
+ * {@link #nextRound()} przegląda tylko te pola. Pola z jedzeniem są zaznaczone w zbiorze bitów, a dla każdego słowa
+ * zbioru pamiętana jest liczba pól z jedzeniem przed nim, więc indeks stanu pola to ta liczba powiększona o liczbę
+ * bitów ustawionych w słowie przed bitem pola. Sprawdzenie pola kosztuje tyle, co odczyt jednego słowa i jednej
+ * liczby, niezależnie od tego, czy rośnie na nim jedzenie.</p>
+ * <p>Liczba robów jest przechowywana dla wszystkich pól, tak jak na zwykłej planszy. Zbiór bitów i liczby pól
+ * z jedzeniem przed słowami zajmują około 0,2 bajta na pole, więc cała plansza zajmuje około połowy pamięci zwykłej
+ * planszy.</p>
+ * <p>Tworzona przez {@link Board#createBoard}, gdy jedzenie rośnie na niewielkiej części pól.</p>
+ *
+ * @author Katarzyna Mielnik
+ */
+final class SparseBoard extends Board {
+    /**
+     * Zbiór pól z jedzeniem: bit {@code i % 64} słowa {@code i / 64} odpowiada polu o numerze
+     * {@code i = y * sizeX + x}.
+     */
+    private final long[] foodSquares;
+    /**
+     * Liczba pól z jedzeniem w słowach {@link #foodSquares} przed danym słowem.
+     */
+    private final int[] foodBefore;
+
+    private SparseBoard(int sizeX, int sizeY, long[] foodSquares, int[] foodBefore, int[] foodRipeness,
+                        int ripeningTime, int energyFromFood) {
+        super(sizeX, sizeY, foodRipeness, ripeningTime, energyFromFood);
+        this.foodSquares = foodSquares;
+        this.foodBefore = foodBefore;
+    }
+
+    /**
+     * Tworzy planszę o stanach wszystkich pól {@code allSquares} (w układzie {@code y * sizeX + x}).
+     */
+    static SparseBoard of(int sizeX, int sizeY, int[] allSquares, int ripeningTime, int energyFromFood) {
+        long[] foodSquares = new long[(allSquares.length + Long.SIZE - 1) / Long.SIZE];
+        int count = 0;
+        for (int square = 0; square < allSquares.length; square++) {
+            if (allSquares[square] != NO_FOOD) {
+                foodSquares[square / Long.SIZE] |= 1L << square;
+                count++;
+            }
+        }
+        int[] foodBefore = new int[foodSquares.length];
+        int[] foodRipeness = new int[count];
+        for (int word = 0, i = 0; word < foodSquares.length; word++) {
+            foodBefore[word] = i;
+            for (long bits = foodSquares[word]; bits != 0; bits &= bits - 1) {
+                foodRipeness[i++] = allSquares[word * Long.SIZE + Long.numberOfTrailingZeros(bits)];
+            }
+        }
+        return new SparseBoard(sizeX, sizeY, foodSquares, foodBefore, foodRipeness, ripeningTime, energyFromFood);
+    }
+
+    @Override
+    int foodIndex(int squareIndex) {
+        int word = squareIndex / Long.SIZE;
+        long bits = this.foodSquares[word];
+        long bit = 1L << squareIndex;
+        if ((bits & bit) == 0)
+            return -1;
+        return this.foodBefore[word] + Long.bitCount(bits & (bit - 1));
+    }
+
+    /**
+     * Tworzy niezależną kopię planszy w obecnym stanie. Zbiór pól z jedzeniem nie zmienia się, więc jest wspólny dla
+     * kopii.
+     */
+    @Override
+    public Board copy() {
+        return new SparseBoard(sizeX(), sizeY(), this.foodSquares, this.foodBefore, this.foodRipeness.clone(),
+                ripeningTime(), this.energyFromFood);
+    }
+}
@@ -30,7 +30,15 @@ public class Coordinates {
      * @param limY wartość, której współrzędna {@code y} nie może przekroczyć
      */
     public static Coordinates getRandomCoordinates(int limX, int limY) {
-        Random random= new Random();
+        return getRandomCoordinates(limX, limY, new Random());
+    }
+
+    /**
+     * Zwraca losowe współrzędne wylosowane za pomocą generatora {@code random}.
+     * @param limX wartość, której współrzędna {@code x} nie może przekroczyć
+     * @param limY wartość, której współrzędna {@code y} nie może przekroczyć
+     */
+    public static Coordinates getRandomCoordinates(int limX, int limY, Random random) {
         int x = random.nextInt(limX);
         int y = random.nextInt(limY);
         return new Coordinates(x, y);
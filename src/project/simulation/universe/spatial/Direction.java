@@ -13,6 +13,9 @@ public enum Direction {
     RIGHT(1, 0),
     LEFT(-1, 0);
 
+    // Kopia Direction.values(), aby nie tworzyć nowej tablicy przy każdym obrocie.
+    private static final Direction[] DIRECTIONS = Direction.values();
+
     private final int xDirection;
     private final int yDirection;
 
@@ -30,7 +33,7 @@ public enum Direction {
     }
 
     private Direction directionFromCoordinates(int x, int y) {
-        for (Direction k : Direction.values()) {
+        for (Direction k : DIRECTIONS) {
             if (k.xCoordinate() == x && k.yCoordinate() == y)
                 return k;
         }
@@ -50,8 +53,11 @@ public enum Direction {
     }
 
     public static Direction getRandomDirection() {
-        Random random = new Random();
-        return Direction.values()[random.nextInt(4)];
+        return getRandomDirection(new Random());
+    }
+
+    public static Direction getRandomDirection(Random random) {
+        return DIRECTIONS[random.nextInt(4)];
     }
 
 }